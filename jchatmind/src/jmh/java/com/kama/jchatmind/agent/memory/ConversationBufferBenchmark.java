@@ -0,0 +1,107 @@
+package com.kama.jchatmind.agent.memory;
+
+import com.kama.jchatmind.config.AgentMemoryProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.messages.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对话记忆单步开销基准测试
+ * 模拟 Agent 的一步: 追加一组工具调用和结果, 再取出上下文并遍历一遍,
+ * 对比 MessageWindowChatMemory（每次 add/get 都复制整个记忆）和 TokenBudgetChatMemory（只追加 + 视图）
+ * 在不同历史长度下的耗时。每次调用执行 STEPS 步, 结果为单步耗时
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConversationBufferBenchmark {
+
+    private static final String SESSION = "benchmark";
+
+    private static final int STEPS = 2000;
+
+    @Param({"100", "1000", "5000", "20000"})
+    private int historyLength;
+
+    private ChatMemory windowMemory;
+    private ChatMemory budgetMemory;
+
+    private List<List<Message>> steps;
+
+    @Setup(Level.Trial)
+    public void setUpSteps() {
+        steps = new ArrayList<>(STEPS);
+        for (int step = 0; step < STEPS; step++) {
+            String id = String.valueOf(step);
+            steps.add(List.of(
+                    AssistantMessage.builder()
+                            .content("")
+                            .toolCalls(List.of(new AssistantMessage.ToolCall(id, "function", "databaseQuery", "{}")))
+                            .build(),
+                    ToolResponseMessage.builder()
+                            .responses(List.of(new ToolResponseMessage.ToolResponse(id, "databaseQuery", "ok")))
+                            .build()
+            ));
+        }
+    }
+
+    // 每次调用前重新填充历史, 保证每次调用都从相同的历史长度开始
+    @Setup(Level.Invocation)
+    public void setUpMemory() {
+        List<Message> history = new ArrayList<>(historyLength + 1);
+        history.add(new SystemMessage("你是一个智能助手"));
+        for (int i = 0; i < historyLength; i++) {
+            history.add(i % 2 == 0 ? new UserMessage("问题 " + i) : new AssistantMessage("回答 " + i));
+        }
+
+        // 窗口足够大, 不因为条数限制而丢弃
+        windowMemory = MessageWindowChatMemory.builder()
+                .maxMessages(historyLength + STEPS * 2 + 1)
+                .build();
+        windowMemory.add(SESSION, history);
+
+        AgentMemoryProperties properties = new AgentMemoryProperties();
+        properties.setMaxPromptTokens(Integer.MAX_VALUE);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        budgetMemory = new TokenBudgetChatMemory(historyLength + STEPS * 2 + 1, properties, new TokenBudgetChatMemory.Metrics(
+                DistributionSummary.builder("tokens").register(registry),
+                DistributionSummary.builder("messages").register(registry),
+                Counter.builder("truncated").register(registry)
+        ));
+        budgetMemory.add(SESSION, history);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public void messageWindowChatMemory(Blackhole blackhole) {
+        runSteps(windowMemory, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public void tokenBudgetChatMemory(Blackhole blackhole) {
+        runSteps(budgetMemory, blackhole);
+    }
+
+    private void runSteps(ChatMemory memory, Blackhole blackhole) {
+        for (List<Message> step : steps) {
+            memory.add(SESSION, step);
+            // 模拟构造 Prompt 时遍历消息
+            for (Message message : memory.get(SESSION)) {
+                blackhole.consume(message.getMessageType());
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.kama.jchatmind.agent.tools;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DataBaseTools 查询结果格式化基准测试, 不包含数据库查询本身
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataBaseToolsBenchmark {
+
+    @Param({"10", "1000"})
+    private int rows;
+
+    private List<String> columnNames;
+    private List<List<String>> dataRows;
+
+    @Setup
+    public void setUp() {
+        columnNames = List.of("id", "name", "description", "model", "created_at");
+        dataRows = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            dataRows.add(List.of(
+                    UUID.randomUUID().toString(),
+                    "agent-" + i,
+                    "第 " + i + " 个 Agent 的描述",
+                    i % 2 == 0 ? "deepseek-chat" : "glm-4.6",
+                    "2025-01-01T00:00:" + String.format("%02d", i % 60)
+            ));
+        }
+    }
+
+    @Benchmark
+    public List<String> formatTable() {
+        return DataBaseTools.formatTable(columnNames, dataRows);
+    }
+}
@@ -0,0 +1,121 @@
+package com.kama.jchatmind.converter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.kama.jchatmind.model.dto.AgentDTO;
+import com.kama.jchatmind.model.dto.ChatMessageDTO;
+import com.kama.jchatmind.model.entity.Agent;
+import com.kama.jchatmind.model.entity.ChatMessage;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ChatMessageConverter、AgentConverter 基准测试
+ * 每条聊天记录读写都要做 metadata 的 JSON 序列化, Agent 配置在模板缓存未命中时反序列化
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConverterBenchmark {
+
+    private ChatMessageConverter chatMessageConverter;
+    private AgentConverter agentConverter;
+
+    private ChatMessageDTO toolCallMessage;
+    private ChatMessageDTO toolResponseMessage;
+    private ChatMessage toolCallEntity;
+    private ChatMessage toolResponseEntity;
+    private Agent agent;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        // 与 Spring Boot 自动配置的 ObjectMapper 一样注册 JavaTimeModule 等模块
+        ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+        chatMessageConverter = new ChatMessageConverter(objectMapper);
+        agentConverter = new AgentConverter(objectMapper);
+
+        LocalDateTime now = LocalDateTime.now();
+        String sessionId = UUID.randomUUID().toString();
+        toolCallMessage = ChatMessageDTO.builder()
+                .id(UUID.randomUUID().toString())
+                .sessionId(sessionId)
+                .role(ChatMessageDTO.RoleType.ASSISTANT)
+                .content("")
+                .metadata(ChatMessageDTO.MetaData.builder()
+                        .toolCalls(List.of(
+                                new AssistantMessage.ToolCall("call_1", "function", "knowledgeQuery",
+                                        "{\"kbId\":\"" + UUID.randomUUID() + "\",\"query\":\"如何配置 pgvector 索引\"}"),
+                                new AssistantMessage.ToolCall("call_2", "function", "databaseQuery",
+                                        "{\"sql\":\"SELECT id, name FROM agent LIMIT 10\"}")))
+                        .build())
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+        toolResponseMessage = ChatMessageDTO.builder()
+                .id(UUID.randomUUID().toString())
+                .sessionId(sessionId)
+                .role(ChatMessageDTO.RoleType.TOOL)
+                .content("")
+                .metadata(ChatMessageDTO.MetaData.builder()
+                        .toolResponse(new ToolResponseMessage.ToolResponse("call_1", "knowledgeQuery",
+                                "pgvector 支持 ivfflat 和 hnsw 两种索引。".repeat(50)))
+                        .build())
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+        toolCallEntity = chatMessageConverter.toEntity(toolCallMessage);
+        toolResponseEntity = chatMessageConverter.toEntity(toolResponseMessage);
+
+        agent = agentConverter.toEntity(AgentDTO.builder()
+                .id(UUID.randomUUID().toString())
+                .name("知识库助手")
+                .description("根据知识库回答问题")
+                .systemPrompt("你是一个知识库助手, 回答问题前先检索知识库。")
+                .model(AgentDTO.ModelType.DEEPSEEK_CHAT)
+                .allowedTools(List.of("knowledgeQuery", "databaseQuery", "sendEmail"))
+                .allowedKbs(List.of(UUID.randomUUID().toString(), UUID.randomUUID().toString()))
+                .chatOptions(AgentDTO.ChatOptions.builder()
+                        .temperature(0.7)
+                        .topP(1.0)
+                        .messageLength(10)
+                        .build())
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+    }
+
+    @Benchmark
+    public ChatMessage chatMessageToolCallToEntity() throws JsonProcessingException {
+        return chatMessageConverter.toEntity(toolCallMessage);
+    }
+
+    @Benchmark
+    public ChatMessageDTO chatMessageToolCallToDTO() throws JsonProcessingException {
+        return chatMessageConverter.toDTO(toolCallEntity);
+    }
+
+    @Benchmark
+    public ChatMessage chatMessageToolResponseToEntity() throws JsonProcessingException {
+        return chatMessageConverter.toEntity(toolResponseMessage);
+    }
+
+    @Benchmark
+    public ChatMessageDTO chatMessageToolResponseToDTO() throws JsonProcessingException {
+        return chatMessageConverter.toDTO(toolResponseEntity);
+    }
+
+    @Benchmark
+    public AgentDTO agentToDTO() throws JsonProcessingException {
+        return agentConverter.toDTO(agent);
+    }
+}
@@ -0,0 +1,79 @@
+package com.kama.jchatmind.message;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.kama.jchatmind.model.dto.ChatMessageDTO;
+import com.kama.jchatmind.model.vo.ChatMessageVO;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SseMessage 序列化基准测试
+ * 流式输出时每个片段都要序列化一次, 工具结果消息带完整的返回内容
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SseMessageBenchmark {
+
+    private ObjectMapper objectMapper;
+
+    private SseMessage delta;
+    private SseMessage toolResponse;
+
+    @Setup
+    public void setUp() {
+        objectMapper = JsonMapper.builder().findAndAddModules().build();
+        String sessionId = UUID.randomUUID().toString();
+        delta = SseMessage.builder()
+                .type(SseMessage.Type.AI_GENERATED_CONTENT)
+                .payload(SseMessage.Payload.builder()
+                        .message(ChatMessageVO.builder()
+                                .sessionId(sessionId)
+                                .role(ChatMessageDTO.RoleType.ASSISTANT)
+                                .content("根据知识库中的")
+                                .build())
+                        .done(false)
+                        .build())
+                .metadata(SseMessage.Metadata.builder()
+                        .streamId(UUID.randomUUID().toString())
+                        .build())
+                .build();
+        toolResponse = SseMessage.builder()
+                .type(SseMessage.Type.AI_GENERATED_CONTENT)
+                .payload(SseMessage.Payload.builder()
+                        .message(ChatMessageVO.builder()
+                                .id(UUID.randomUUID().toString())
+                                .sessionId(sessionId)
+                                .role(ChatMessageDTO.RoleType.TOOL)
+                                .content("")
+                                .metadata(ChatMessageDTO.MetaData.builder()
+                                        .toolResponse(new ToolResponseMessage.ToolResponse("call_1", "knowledgeQuery",
+                                                "pgvector 支持 ivfflat 和 hnsw 两种索引。".repeat(100)))
+                                        .build())
+                                .build())
+                        .done(false)
+                        .build())
+                .metadata(SseMessage.Metadata.builder()
+                        .chatMessageId(UUID.randomUUID().toString())
+                        .build())
+                .build();
+    }
+
+    @Benchmark
+    public String serializeDelta() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(delta);
+    }
+
+    @Benchmark
+    public String serializeToolResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(toolResponse);
+    }
+}
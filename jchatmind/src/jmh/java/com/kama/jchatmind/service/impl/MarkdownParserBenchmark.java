@@ -0,0 +1,58 @@
+package com.kama.jchatmind.service.impl;
+
+import com.kama.jchatmind.service.MarkdownParserService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MarkdownParserServiceImpl.parseMarkdown 基准测试
+ * small 为一篇短文档, large 为包含多级标题、列表、代码块和表格的长文档
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarkdownParserBenchmark {
+
+    @Param({"small", "large"})
+    private String size;
+
+    private MarkdownParserServiceImpl parser;
+    private byte[] document;
+
+    @Setup
+    public void setUp() {
+        // 解析器在一次解析中保存原文, 每个线程使用自己的实例
+        parser = new MarkdownParserServiceImpl();
+        document = ("small".equals(size) ? document(3) : document(200)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String document(int chapters) {
+        StringBuilder markdown = new StringBuilder("# JChatMind 使用手册\n\n这是一份用于基准测试的文档。\n\n");
+        for (int chapter = 1; chapter <= chapters; chapter++) {
+            markdown.append("## 第 ").append(chapter).append(" 章\n\n");
+            markdown.append("本章介绍 Agent 的配置方式。Agent 由系统提示词、模型、工具和知识库组成, ")
+                    .append("每次对话都会根据聊天记录决定下一步动作。\n\n");
+            markdown.append("### 配置项\n\n");
+            markdown.append("- 模型: deepseek-chat 或 glm-4.6\n- 温度: 0.7\n- 聊天记录窗口: 10 条\n\n");
+            markdown.append("| 参数 | 类型 | 默认值 | 说明 |\n|------|------|--------|------|\n");
+            for (int row = 0; row < 5; row++) {
+                markdown.append("| option").append(row).append(" | int | ").append(row * 10)
+                        .append(" | 第 ").append(row).append(" 个参数 |\n");
+            }
+            markdown.append("\n```java\nJChatMind agent = factory.create(agentId, sessionId);\nagent.run();\n```\n\n");
+        }
+        return markdown.toString();
+    }
+
+    @Benchmark
+    public List<MarkdownParserService.MarkdownSection> parseMarkdown() {
+        return parser.parseMarkdown(new ByteArrayInputStream(document));
+    }
+}
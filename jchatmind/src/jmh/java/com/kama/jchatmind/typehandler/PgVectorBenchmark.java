@@ -0,0 +1,61 @@
+package com.kama.jchatmind.typehandler;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PgVector 编解码基准测试, 向量维度与 bge-m3 一致
+ * PgVectorTypeHandler 读写参数时使用的就是这里的文本 / 二进制编解码
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PgVectorBenchmark {
+
+    @Param({"1024"})
+    private int dimensions;
+
+    private float[] vector;
+    private byte[] text;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = random.nextFloat() * 2 - 1;
+        }
+        text = PgVector.toText(vector).getBytes(StandardCharsets.US_ASCII);
+        binary = new byte[new PgVector(vector).lengthInBytes()];
+        PgVector.writeBinary(vector, binary, 0);
+    }
+
+    @Benchmark
+    public String formatText() {
+        return PgVector.toText(vector);
+    }
+
+    @Benchmark
+    public float[] parseText() {
+        return PgVector.parseText(text);
+    }
+
+    @Benchmark
+    public byte[] writeBinary() {
+        byte[] bytes = new byte[binary.length];
+        PgVector.writeBinary(vector, bytes, 0);
+        return bytes;
+    }
+
+    @Benchmark
+    public float[] readBinary() {
+        return PgVector.readBinary(binary, 0);
+    }
+}
@@ -0,0 +1,94 @@
+package com.kama.jchatmind.agent;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Agent 循环的指标
+ * 1. jchatmind.agent.step: 每一步 think（调用模型）、execute（执行工具）的耗时, 按模型区分
+ * 2. jchatmind.agent.run: 一次运行的总耗时和结果
+ * 3. jchatmind.agent.runs.active: 正在运行的 Agent 数量
+ */
+@Component
+public class AgentMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicInteger activeRuns = new AtomicInteger();
+
+    private final ConcurrentMap<String, ModelMetrics> modelMetrics = new ConcurrentHashMap<>();
+
+    public AgentMetrics(ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.meterRegistry = meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        Gauge.builder("jchatmind.agent.runs.active", activeRuns, AtomicInteger::get)
+                .description("正在运行的 Agent 数量")
+                .register(meterRegistry);
+    }
+
+    public ModelMetrics forModel(String model) {
+        return modelMetrics.computeIfAbsent(model, ModelMetrics::new);
+    }
+
+    /**
+     * 单个模型的 Agent 指标, 由 JChatMind 在运行过程中记录
+     */
+    public class ModelMetrics {
+        private final String model;
+        private final Timer thinkTimer;
+        private final Timer executeTimer;
+
+        private ModelMetrics(String model) {
+            this.model = model;
+            this.thinkTimer = stepTimer("think");
+            this.executeTimer = stepTimer("execute");
+        }
+
+        private Timer stepTimer(String phase) {
+            return Timer.builder("jchatmind.agent.step")
+                    .description("Agent 单个步骤的耗时, think 为调用模型, execute 为执行工具")
+                    .tags("model", model, "phase", phase)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+
+        public void recordThink(long nanos) {
+            thinkTimer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void recordExecute(long nanos) {
+            executeTimer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void runStarted() {
+            activeRuns.incrementAndGet();
+        }
+
+        /**
+         * @param state 运行结束时的状态
+         * @param steps 执行的步骤数, 命中缓存时为 0
+         */
+        public void runFinished(AgentState state, int steps, long nanos) {
+            activeRuns.decrementAndGet();
+            Timer.builder("jchatmind.agent.run")
+                    .description("一次 Agent 运行的总耗时")
+                    .tags("model", model, "state", state.name())
+                    .register(meterRegistry)
+                    .record(nanos, TimeUnit.NANOSECONDS);
+            DistributionSummary.builder("jchatmind.agent.run.steps")
+                    .description("一次 Agent 运行执行的步骤数")
+                    .tag("model", model)
+                    .register(meterRegistry)
+                    .record(steps);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.kama.jchatmind.agent;
+
+import com.kama.jchatmind.config.AgentExecutionProperties;
+import com.kama.jchatmind.message.SseMessage;
+import com.kama.jchatmind.service.SseService;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Agent 运行引擎
+ * JChatMind.run() 的大部分时间都在等待 LLM 和工具的 I/O, 在支持虚拟线程的 JVM 上每次运行使用一个虚拟线程,
+ * 并发度由节点级和模型级的信号量控制, 而不是由线程池大小决定。
+ * 拿不到许可或者线程池已满时不会抛到调用方, 而是通过 SSE 告诉前端本次请求被拒绝。
+ * 提交时的 trace 上下文会传递到运行线程, Agent 运行的 span 挂在发起请求的 span 下面
+ */
+@Slf4j
+@Component
+public class AgentRunExecutor implements DisposableBean {
+
+    private final AgentExecutionProperties properties;
+    private final SseService sseService;
+    private final Tracer tracer;
+
+    private final ExecutorService executor;
+
+    // 节点级并发许可
+    private final Semaphore globalPermits;
+
+    // 模型级并发许可, 按需创建
+    private final ConcurrentMap<String, Semaphore> modelPermits = new ConcurrentHashMap<>();
+
+    public AgentRunExecutor(AgentExecutionProperties properties,
+                            SseService sseService,
+                            ObjectProvider<Tracer> tracerProvider) {
+        this.properties = properties;
+        this.sseService = sseService;
+        this.tracer = tracerProvider.getIfAvailable(() -> Tracer.NOOP);
+        this.executor = createExecutor(properties);
+        this.globalPermits = new Semaphore(properties.getMaxConcurrentRuns(), true);
+    }
+
+    private static ExecutorService createExecutor(AgentExecutionProperties properties) {
+        AgentExecutionProperties.Mode mode = properties.getMode();
+        if (mode != AgentExecutionProperties.Mode.PLATFORM) {
+            ExecutorService virtualExecutor = newVirtualThreadExecutor();
+            if (virtualExecutor != null) {
+                log.info("Agent 运行引擎使用虚拟线程");
+                return virtualExecutor;
+            }
+            if (mode == AgentExecutionProperties.Mode.VIRTUAL) {
+                throw new IllegalStateException("当前 JVM 不支持虚拟线程, Java 版本: " + Runtime.version());
+            }
+        }
+        log.info("Agent 运行引擎使用平台线程池: core={}, max={}, queue={}",
+                properties.getCorePoolSize(), properties.getMaxPoolSize(), properties.getQueueCapacity());
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(
+                properties.getCorePoolSize(),
+                properties.getMaxPoolSize(),
+                60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(properties.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable);
+                    thread.setName("agent-run-" + thread.getId());
+                    return thread;
+                }
+        );
+        threadPool.allowCoreThreadTimeOut(true);
+        return threadPool;
+    }
+
+    // 项目以 Java 17 编译, 运行在 Java 21+ 时通过反射创建虚拟线程执行器
+    private static ExecutorService newVirtualThreadExecutor() {
+        if (Runtime.version().feature() < 21) {
+            return null;
+        }
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("创建虚拟线程执行器失败, 回退到平台线程池", e);
+            return null;
+        }
+    }
+
+    /**
+     * 提交一次 Agent 运行
+     *
+     * @param chatSessionId 用于拒绝时通知前端
+     * @param modelResolver 解析 Agent 使用的模型, 用于模型级并发控制; 可能需要查库, 在运行线程上执行
+     * @param task          Agent 运行逻辑
+     */
+    public void submit(String chatSessionId, Supplier<String> modelResolver, Runnable task) {
+        try {
+            executor.execute(tracer.currentTraceContext().wrap(() -> run(chatSessionId, modelResolver, task)));
+        } catch (RejectedExecutionException e) {
+            log.warn("Agent 运行队列已满, 拒绝本次运行: chatSessionId={}", chatSessionId);
+            notifyRejected(chatSessionId, "当前请求过多，请稍后重试");
+        }
+    }
+
+    private void run(String chatSessionId, Supplier<String> modelResolver, Runnable task) {
+        String model;
+        try {
+            model = modelResolver.get();
+        } catch (Exception e) {
+            log.error("解析 Agent 模型失败: chatSessionId={}", chatSessionId, e);
+            notifyRejected(chatSessionId, "Agent 加载失败: " + e.getMessage());
+            return;
+        }
+        runWithPermits(chatSessionId, model, task);
+    }
+
+    private void runWithPermits(String chatSessionId, String model, Runnable task) {
+        Semaphore modelSemaphore = modelPermits.computeIfAbsent(
+                model, key -> new Semaphore(properties.getModelConcurrency(key), true));
+        long timeoutNanos = properties.getAcquireTimeout().toNanos();
+        long deadline = System.nanoTime() + timeoutNanos;
+        boolean globalAcquired = false;
+        boolean modelAcquired = false;
+        // 包含等待许可的时间, 许可获取完成时记录一个事件
+        Span span = tracer.nextSpan()
+                .name("agent.run")
+                .tag("chat.session.id", chatSessionId)
+                .tag("model", model)
+                .start();
+        try (Tracer.SpanInScope ignored = tracer.withSpan(span)) {
+            globalAcquired = globalPermits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+            if (globalAcquired) {
+                modelAcquired = modelSemaphore.tryAcquire(
+                        Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+            }
+            if (!modelAcquired) {
+                log.warn("Agent 并发已达上限, 拒绝本次运行: chatSessionId={}, model={}", chatSessionId, model);
+                notifyRejected(chatSessionId, "模型 " + model + " 当前繁忙，请稍后重试");
+                span.tag("rejected", "true");
+                return;
+            }
+            span.event("permits.acquired");
+            task.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            notifyRejected(chatSessionId, "请求已取消");
+        } catch (Exception e) {
+            span.error(e);
+            log.error("Agent 运行失败: chatSessionId={}", chatSessionId, e);
+        } finally {
+            span.end();
+            if (modelAcquired) {
+                modelSemaphore.release();
+            }
+            if (globalAcquired) {
+                globalPermits.release();
+            }
+        }
+    }
+
+    private void notifyRejected(String chatSessionId, String statusText) {
+        try {
+            sseService.send(chatSessionId, SseMessage.builder()
+                    .type(SseMessage.Type.AI_ERROR)
+                    .payload(SseMessage.Payload.builder()
+                            .statusText(statusText)
+                            .done(true)
+                            .build())
+                    .build());
+        } catch (Exception e) {
+            // 前端可能已经断开, 拒绝通知失败不影响其他请求
+            log.warn("发送拒绝通知失败: chatSessionId={}, error={}", chatSessionId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,60 @@
+package com.kama.jchatmind.agent;
+
+import com.kama.jchatmind.model.dto.AgentDTO;
+import com.kama.jchatmind.model.dto.KnowledgeBaseDTO;
+import lombok.Getter;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.tool.ToolCallback;
+
+import java.util.List;
+
+/**
+ * Agent 运行时模板
+ * 保存一个 Agent 与会话无关的、创建后不再变化的运行时配置：
+ * 解析后的 AgentDTO、可访问的知识库、构建好的 ToolCallback 以及对应的 ChatClient。
+ * 每条消息创建 JChatMind 时直接复用，不再重复查库、解析 JSON 和反射构建工具
+ */
+@Getter
+public class AgentRuntimeTemplate {
+
+    private final AgentDTO agentConfig;
+
+    private final List<KnowledgeBaseDTO> knowledgeBases;
+
+    private final List<ToolCallback> toolCallbacks;
+
+    private final ChatClient chatClient;
+
+    // 所有工具都没有副作用、结果也不随实时数据变化, 可以使用语义缓存
+    private final boolean cacheable;
+
+    public AgentRuntimeTemplate(AgentDTO agentConfig,
+                                List<KnowledgeBaseDTO> knowledgeBases,
+                                List<ToolCallback> toolCallbacks,
+                                ChatClient chatClient,
+                                boolean cacheable) {
+        this.agentConfig = agentConfig;
+        this.knowledgeBases = List.copyOf(knowledgeBases);
+        this.toolCallbacks = List.copyOf(toolCallbacks);
+        this.chatClient = chatClient;
+        this.cacheable = cacheable;
+    }
+
+    public String getAgentId() {
+        return agentConfig.getId();
+    }
+
+    public String getModelName() {
+        return agentConfig.getModel().getModelName();
+    }
+
+    public int getMessageLength() {
+        return agentConfig.getChatOptions().getMessageLength();
+    }
+
+    // 模板是否引用了指定的知识库
+    public boolean usesKnowledgeBase(String kbId) {
+        List<String> allowedKbs = agentConfig.getAllowedKbs();
+        return allowedKbs != null && allowedKbs.contains(kbId);
+    }
+}
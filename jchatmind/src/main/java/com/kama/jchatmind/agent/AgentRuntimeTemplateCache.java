@@ -0,0 +1,47 @@
+package com.kama.jchatmind.agent;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Agent 运行时模板缓存
+ * 容量有限的 LRU 缓存, Agent 或知识库被修改、删除时由对应的 FacadeService 主动失效
+ */
+@Slf4j
+@Component
+public class AgentRuntimeTemplateCache {
+
+    private final Cache<String, AgentRuntimeTemplate> cache;
+
+    public AgentRuntimeTemplateCache(
+            @Value("${jchatmind.agent.template-cache.max-size:256}") long maxSize,
+            @Value("${jchatmind.agent.template-cache.expire-after-write:10m}") Duration expireAfterWrite
+    ) {
+        // 过期时间用于兜底, 防止绕过 FacadeService 直接修改数据库后一直使用旧配置
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .build();
+    }
+
+    public AgentRuntimeTemplate get(String agentId, Function<String, AgentRuntimeTemplate> loader) {
+        return cache.get(agentId, loader);
+    }
+
+    public void invalidateAgent(String agentId) {
+        cache.invalidate(agentId);
+        log.debug("Agent 运行时模板已失效: agentId={}", agentId);
+    }
+
+    // 知识库名称、描述变化或被删除时, 所有引用它的模板都要失效
+    public void invalidateKnowledgeBase(String kbId) {
+        cache.asMap().values().removeIf(template -> template.usesKnowledgeBase(kbId));
+        log.debug("引用知识库的 Agent 运行时模板已失效: kbId={}", kbId);
+    }
+}
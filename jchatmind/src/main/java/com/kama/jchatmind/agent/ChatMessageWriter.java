@@ -0,0 +1,222 @@
+package com.kama.jchatmind.agent;
+
+import com.kama.jchatmind.config.ChatPersistenceProperties;
+import com.kama.jchatmind.converter.ChatMessageConverter;
+import com.kama.jchatmind.mapper.ChatMessageMapper;
+import com.kama.jchatmind.model.dto.ChatMessageDTO;
+import com.kama.jchatmind.model.entity.ChatMessage;
+import com.kama.jchatmind.util.UuidV7;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Agent 消息异步持久化
+ * Agent 生成的 AssistantMessage 和 ToolResponse 在提交时就分配好 UUIDv7 ID 和创建时间,
+ * 可以立即通过 SSE 推送给前端; 序列化和插入由后台线程在很短的时间窗口内合并成一次批量插入。
+ * 调用方持有返回的 Future, 在一次运行结束前等待全部完成, 保证下一轮对话加载记忆时消息已经落库
+ */
+@Slf4j
+@Component
+public class ChatMessageWriter implements DisposableBean {
+
+    private final ChatMessageMapper chatMessageMapper;
+    private final ChatMessageConverter chatMessageConverter;
+    private final ChatPersistenceProperties properties;
+
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+
+    private final Thread dispatcher;
+
+    private volatile boolean running = true;
+
+    private final DistributionSummary batchSizeSummary;
+    private final Timer writeTimer;
+
+    public ChatMessageWriter(ChatMessageMapper chatMessageMapper,
+                             ChatMessageConverter chatMessageConverter,
+                             ChatPersistenceProperties properties,
+                             ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.chatMessageMapper = chatMessageMapper;
+        this.chatMessageConverter = chatMessageConverter;
+        this.properties = properties;
+
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        this.batchSizeSummary = DistributionSummary.builder("jchatmind.chat.message.batch.size")
+                .description("每次批量写入 chat_message 的消息数量")
+                .register(meterRegistry);
+        this.writeTimer = Timer.builder("jchatmind.chat.message.write")
+                .description("批量写入 chat_message 的耗时")
+                .register(meterRegistry);
+
+        this.dispatcher = new Thread(this::dispatchLoop, "chat-message-writer");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    private record PendingWrite(ChatMessageDTO message, CompletableFuture<Void> future) {
+    }
+
+    /**
+     * 提交一条消息, 立即为它分配 ID 和创建时间, 返回的 Future 在消息落库后完成
+     */
+    public CompletableFuture<Void> submit(ChatMessageDTO message) {
+        if (message.getId() == null) {
+            message.setId(UuidV7.randomId());
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (message.getCreatedAt() == null) {
+            message.setCreatedAt(now);
+        }
+        message.setUpdatedAt(now);
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!running) {
+            // 关闭过程中直接同步写入, 不丢消息
+            insertOne(new PendingWrite(message, future));
+            return future;
+        }
+        PendingWrite pending = new PendingWrite(message, future);
+        queue.add(pending);
+        // 入队前写入线程可能已经在队列为空时退出, 这条消息没人处理; 能从队列中取回就同步写入
+        if (!running && queue.remove(pending)) {
+            insertOne(pending);
+        }
+        return future;
+    }
+
+    /**
+     * 等待一组消息全部落库
+     *
+     * @throws IllegalStateException 超时或写入失败
+     */
+    public void await(List<CompletableFuture<Void>> futures) {
+        if (futures.isEmpty()) {
+            return;
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .get(properties.getFlushTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待聊天消息落库被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("聊天消息持久化失败", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("等待聊天消息落库超时: " + properties.getFlushTimeout(), e);
+        }
+    }
+
+    private void dispatchLoop() {
+        while (running || !queue.isEmpty()) {
+            try {
+                List<PendingWrite> batch = collectBatch();
+                if (!batch.isEmpty()) {
+                    write(batch);
+                }
+            } catch (InterruptedException e) {
+                // 关闭时继续把队列中剩余的消息写完
+                running = false;
+            } catch (Exception e) {
+                log.error("聊天消息写入线程异常", e);
+            }
+        }
+    }
+
+    // 阻塞等待第一条消息, 然后在 maxWait 时间窗口内继续收集, 最多 maxBatchSize 条
+    private List<PendingWrite> collectBatch() throws InterruptedException {
+        List<PendingWrite> batch = new ArrayList<>();
+        PendingWrite first = running ? queue.poll(1, TimeUnit.SECONDS) : queue.poll();
+        if (first == null) {
+            return batch;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + properties.getMaxWait().toNanos();
+        while (batch.size() < properties.getMaxBatchSize()) {
+            long remaining = deadline - System.nanoTime();
+            PendingWrite next = remaining > 0 && running
+                    ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                    : queue.poll();
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private void write(List<PendingWrite> batch) {
+        List<PendingWrite> accepted = new ArrayList<>();
+        List<ChatMessage> entities = new ArrayList<>();
+        for (PendingWrite pending : batch) {
+            try {
+                entities.add(chatMessageConverter.toEntity(pending.message()));
+                accepted.add(pending);
+            } catch (Exception e) {
+                pending.future().completeExceptionally(e);
+            }
+        }
+        if (entities.isEmpty()) {
+            return;
+        }
+        batchSizeSummary.record(entities.size());
+
+        for (int attempt = 1; attempt <= properties.getMaxAttempts(); attempt++) {
+            Timer.Sample sample = Timer.start();
+            try {
+                chatMessageMapper.insertBatch(entities);
+                accepted.forEach(pending -> pending.future().complete(null));
+                return;
+            } catch (Exception e) {
+                log.warn("批量写入聊天消息失败: size={}, attempt={}, error={}",
+                        entities.size(), attempt, e.getMessage());
+                if (attempt < properties.getMaxAttempts() && !sleepBackoff(attempt)) {
+                    break;
+                }
+            } finally {
+                sample.stop(writeTimer);
+            }
+        }
+        // 整批失败时逐条写入, 避免一条坏数据（例如会话已被删除）拖累同批的其他消息
+        accepted.forEach(this::insertOne);
+    }
+
+    private void insertOne(PendingWrite pending) {
+        try {
+            chatMessageMapper.insertBatch(List.of(chatMessageConverter.toEntity(pending.message())));
+            pending.future().complete(null);
+        } catch (Exception e) {
+            log.error("写入聊天消息失败: id={}, sessionId={}",
+                    pending.message().getId(), pending.message().getSessionId(), e);
+            pending.future().completeExceptionally(e);
+        }
+    }
+
+    private boolean sleepBackoff(int attempt) {
+        try {
+            Thread.sleep(properties.getRetryBackoff().toMillis() * attempt);
+            return true;
+        } catch (InterruptedException e) {
+            running = false;
+            return false;
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        dispatcher.interrupt();
+        // 等待队列中剩余的消息写完
+        dispatcher.join(properties.getFlushTimeout().toMillis());
+    }
+}
@@ -0,0 +1,163 @@
+package com.kama.jchatmind.agent;
+
+import com.kama.jchatmind.config.ToolExecutionProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * 并发工具调用执行器
+ * 同一轮中模型返回的多个工具调用彼此独立, 并发执行后按原始顺序组装 ToolResponseMessage,
+ * 一轮的耗时从所有调用耗时之和降为最慢的那一个
+ */
+@Slf4j
+@Component
+public class ConcurrentToolExecutor {
+
+    // ToolResponseMessage metadata 中记录每个工具调用耗时（毫秒）的 key
+    public static final String METADATA_TOOL_LATENCIES = "toolLatencies";
+
+    private final AsyncTaskExecutor toolTaskExecutor;
+    private final ToolExecutionProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Tracer tracer;
+
+    public ConcurrentToolExecutor(@Qualifier("toolTaskExecutor") AsyncTaskExecutor toolTaskExecutor,
+                                  ToolExecutionProperties properties,
+                                  ObjectProvider<MeterRegistry> meterRegistryProvider,
+                                  ObjectProvider<Tracer> tracerProvider) {
+        this.toolTaskExecutor = toolTaskExecutor;
+        this.properties = properties;
+        this.meterRegistry = meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        this.tracer = tracerProvider.getIfAvailable(() -> Tracer.NOOP);
+    }
+
+    /**
+     * 执行 AssistantMessage 中的所有工具调用
+     *
+     * @return 工具响应, 顺序与 toolCalls 保持一致
+     */
+    public ToolResponseMessage execute(List<AssistantMessage.ToolCall> toolCalls, List<ToolCallback> toolCallbacks) {
+        Map<String, ToolCallback> callbackMap = toolCallbacks.stream()
+                .collect(Collectors.toMap(
+                        callback -> callback.getToolDefinition().name(),
+                        callback -> callback,
+                        (first, second) -> first
+                ));
+
+        // 先全部提交, 再按顺序等待结果
+        List<Future<String>> futures = new ArrayList<>(toolCalls.size());
+        List<Long> startTimes = new ArrayList<>(toolCalls.size());
+        for (AssistantMessage.ToolCall toolCall : toolCalls) {
+            ToolCallback callback = callbackMap.get(toolCall.name());
+            startTimes.add(System.nanoTime());
+            if (callback == null) {
+                record(toolCall.name(), "not_found", 0);
+                futures.add(CompletableFuture.completedFuture("错误：未找到工具 " + toolCall.name()));
+                continue;
+            }
+            // span 在当前线程创建, 父 span 为本轮的 execute; 在工具线程中开始, 工具内部的检索、SQL 挂在它下面
+            Span span = tracer.nextSpan()
+                    .name("tool " + toolCall.name())
+                    .tag("tool.name", toolCall.name())
+                    .tag("tool.call.id", toolCall.id());
+            Callable<String> task = () -> {
+                // 在工具线程中计时, 不包含等待前面结果的时间
+                long start = System.nanoTime();
+                span.start();
+                try (Tracer.SpanInScope ignored = tracer.withSpan(span)) {
+                    String result = callback.call(toolCall.arguments());
+                    // 被中断说明已经按超时记录过
+                    if (!Thread.currentThread().isInterrupted()) {
+                        record(toolCall.name(), "success", System.nanoTime() - start);
+                    }
+                    return result;
+                } catch (RuntimeException e) {
+                    record(toolCall.name(), "error", System.nanoTime() - start);
+                    span.error(e);
+                    throw e;
+                } finally {
+                    span.end();
+                }
+            };
+            try {
+                futures.add(toolTaskExecutor.submit(task));
+            } catch (RejectedExecutionException e) {
+                // 线程池和队列都已满, 直接返回错误, 不占用 Agent 线程执行; 与超时区分, 告知模型工具并未执行
+                record(toolCall.name(), "rejected", 0);
+                log.warn("工具线程池已满, 拒绝执行工具调用: name = {}", toolCall.name());
+                futures.add(CompletableFuture.completedFuture(
+                        "错误：工具 " + toolCall.name() + " 繁忙，本次调用未执行，请稍后重试"));
+            }
+        }
+
+        List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>(toolCalls.size());
+        Map<String, Long> latencies = new LinkedHashMap<>();
+        for (int i = 0; i < toolCalls.size(); i++) {
+            AssistantMessage.ToolCall toolCall = toolCalls.get(i);
+            String responseData = await(toolCall, futures.get(i), startTimes.get(i));
+            long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimes.get(i));
+            latencies.put(toolCall.id(), latencyMillis);
+            log.info("[ToolCalling] name = {}, id = {}, 耗时 {} ms", toolCall.name(), toolCall.id(), latencyMillis);
+            responses.add(new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(), responseData));
+        }
+
+        return ToolResponseMessage.builder()
+                .responses(responses)
+                .metadata(Map.of(METADATA_TOOL_LATENCIES, latencies))
+                .build();
+    }
+
+    private String await(AssistantMessage.ToolCall toolCall, Future<String> future, long startNanos) {
+        Duration timeout = properties.getTimeout(toolCall.name());
+        // 前面的调用已经等待过的时间也算在超时时间内
+        long remainingNanos = timeout.toNanos() - (System.nanoTime() - startNanos);
+        try {
+            String result = future.get(Math.max(remainingNanos, 0), TimeUnit.NANOSECONDS);
+            return result != null ? result : "";
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            record(toolCall.name(), "timeout", System.nanoTime() - startNanos);
+            log.warn("工具调用超时: name = {}, timeout = {}", toolCall.name(), timeout);
+            return timeoutMessage(toolCall);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            log.error("工具调用失败: name = {}", toolCall.name(), cause);
+            return "错误：工具 " + toolCall.name() + " 调用失败 - " + cause.getMessage();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待工具调用结果时被中断: " + toolCall.name(), e);
+        }
+    }
+
+    private String timeoutMessage(AssistantMessage.ToolCall toolCall) {
+        return "错误：工具 " + toolCall.name() + " 调用超时（" + properties.getTimeout(toolCall.name()).toSeconds() + " 秒）";
+    }
+
+    /**
+     * @param outcome success、error、timeout、rejected 或 not_found
+     */
+    private void record(String tool, String outcome, long nanos) {
+        Timer.builder("jchatmind.tool.call")
+                .description("工具调用耗时, 按工具名称和结果区分")
+                .tags("tool", tool, "outcome", outcome)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -1,30 +1,32 @@
 package com.kama.jchatmind.agent;
 
 import com.kama.jchatmind.converter.ChatMessageConverter;
+import com.kama.jchatmind.llm.ModelRouter;
+import com.kama.jchatmind.llm.RateLimitedException;
 import com.kama.jchatmind.message.SseMessage;
 import com.kama.jchatmind.model.dto.ChatMessageDTO;
 import com.kama.jchatmind.model.dto.KnowledgeBaseDTO;
-import com.kama.jchatmind.model.response.CreateChatMessageResponse;
 import com.kama.jchatmind.model.vo.ChatMessageVO;
-import com.kama.jchatmind.service.ChatMessageFacadeService;
 import com.kama.jchatmind.service.SseService;
+import com.kama.jchatmind.tracing.Spans;
+import io.micrometer.tracing.Tracer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.MessageWindowChatMemory;
 import org.springframework.ai.chat.messages.*;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.ChatOptions;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.model.tool.DefaultToolCallingChatOptions;
-import org.springframework.ai.model.tool.ToolCallingManager;
-import org.springframework.ai.model.tool.ToolExecutionResult;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -54,8 +56,8 @@ public class JChatMind {
     // 可访问的知识库
     private List<KnowledgeBaseDTO> availableKbs;
 
-    // 工具调用管理器
-    private ToolCallingManager toolCallingManager;
+    // 工具调用执行器, 同一轮的多个工具调用并发执行
+    private ConcurrentToolExecutor toolExecutor;
 
     // 模型的聊天记录
     private ChatMemory chatMemory;
@@ -66,7 +68,7 @@ public class JChatMind {
     // 最多循环次数
     private static final Integer MAX_STEPS = 20;
 
-    private static final Integer DEFAULT_MAX_MESSAGES = 20;
+    private static final String RATE_LIMITED_REPLY = "当前请求较多, 请稍后再试。";
 
     // SpringAI 自带的 ChatOptions, 不是 AgentDTO.ChatOptions
     private ChatOptions chatOptions;
@@ -76,14 +78,44 @@ public class JChatMind {
 
     private ChatMessageConverter chatMessageConverter;
 
-    private ChatMessageFacadeService chatMessageFacadeService;
+    // Agent 消息异步批量落库
+    private ChatMessageWriter chatMessageWriter;
 
     // 最后一次的 ChatResponse
     private ChatResponse lastChatResponse;
 
-    // AI 返回的，已经持久化，但是需要 sse 发给前端的消息
+    // AI 返回的，已经分配 ID 并提交落库，但是需要 sse 发给前端的消息
     private final List<ChatMessageDTO> pendingChatMessages = new ArrayList<>();
 
+    // 本次运行提交的消息写入, 运行结束前等待全部完成
+    private final List<CompletableFuture<Void>> pendingWrites = new ArrayList<>();
+
+    // 是否使用流式输出, 开启后模型生成的内容会逐段推送给前端
+    private boolean streaming;
+
+    // 步骤耗时、运行结果等指标
+    private AgentMetrics.ModelMetrics metrics;
+
+    // 本次运行执行的步骤数
+    private int steps;
+
+    // think、execute 各一个 span
+    private Tracer tracer;
+
+    // 语义缓存, 本次运行不能使用缓存时为 null
+    private SemanticResponseCache responseCache;
+
+    // 本次运行要回答的问题（最后一条用户消息）及其 embedding
+    private String question;
+
+    private float[] questionEmbedding;
+
+    // 运行开始时知识库的版本, 写入语义缓存时使用
+    private String knowledgeVersion;
+
+    // 本次运行的最终回答, 用于写入语义缓存
+    private String finalAnswer;
+
     public JChatMind() {
     }
 
@@ -92,14 +124,19 @@ public class JChatMind {
                      String description,
                      String systemPrompt,
                      ChatClient chatClient,
-                     Integer maxMessages,
+                     ChatMemory chatMemory,
                      List<Message> memory,
                      List<ToolCallback> availableTools,
                      List<KnowledgeBaseDTO> availableKbs,
                      String chatSessionId,
                      SseService sseService,
-                     ChatMessageFacadeService chatMessageFacadeService,
-                     ChatMessageConverter chatMessageConverter
+                     ChatMessageWriter chatMessageWriter,
+                     ChatMessageConverter chatMessageConverter,
+                     ConcurrentToolExecutor toolExecutor,
+                     SemanticResponseCache responseCache,
+                     AgentMetrics.ModelMetrics metrics,
+                     Tracer tracer,
+                     boolean streaming
     ) {
         this.agentId = agentId;
         this.name = name;
@@ -114,15 +151,27 @@ public class JChatMind {
         this.chatSessionId = chatSessionId;
         this.sseService = sseService;
 
-        this.chatMessageFacadeService = chatMessageFacadeService;
+        this.chatMessageWriter = chatMessageWriter;
         this.chatMessageConverter = chatMessageConverter;
 
+        this.toolExecutor = toolExecutor;
+
+        this.responseCache = responseCache;
+        for (Message message : memory) {
+            if (message instanceof UserMessage userMessage) {
+                this.question = userMessage.getText();
+            }
+        }
+
+        this.metrics = metrics;
+        this.tracer = tracer;
+
+        this.streaming = streaming;
+
         this.agentState = AgentState.IDLE;
 
         // 保存聊天记录
-        this.chatMemory = MessageWindowChatMemory.builder()
-                .maxMessages(maxMessages == null ? DEFAULT_MAX_MESSAGES : maxMessages)
-                .build();
+        this.chatMemory = chatMemory;
         this.chatMemory.add(chatSessionId, memory);
 
         // 添加系统提示
@@ -133,10 +182,9 @@ public class JChatMind {
         // 关闭 SpringAI 自带的内部的工具调用自动执行功能
         this.chatOptions = DefaultToolCallingChatOptions.builder()
                 .internalToolExecutionEnabled(false)
+                // 模型路由按 agentId 公平分配各模型的配额
+                .toolContext(agentId != null ? Map.of(ModelRouter.AGENT_ID_KEY, agentId) : Map.of())
                 .build();
-
-        // 工具调用管理器
-        this.toolCallingManager = ToolCallingManager.builder().build();
     }
 
     // 打印工具调用信息
@@ -159,7 +207,7 @@ public class JChatMind {
         log.info("\n\n========== Tool Calling ==========\n{}\n=================================\n", logMessage);
     }
 
-    // 持久化 Message, 返回 chatMessageId
+    // 持久化 Message, ID 在提交时分配, 写库由 ChatMessageWriter 在后台批量完成
     // 需要 Agent 持久化的 Message 子类有以下两类
     // AssistantMessage
     // ToolResponseMessage
@@ -176,8 +224,7 @@ public class JChatMind {
                             .toolCalls(assistantMessage.getToolCalls())
                             .build())
                     .build();
-            CreateChatMessageResponse chatMessage = chatMessageFacadeService.createChatMessage(chatMessageDTO);
-            chatMessageDTO.setId(chatMessage.getChatMessageId());
+            pendingWrites.add(chatMessageWriter.submit(chatMessageDTO));
             pendingChatMessages.add(chatMessageDTO);
         } else if (message instanceof ToolResponseMessage toolResponseMessage) {
             // 持久化 ToolResponseMessage
@@ -189,8 +236,7 @@ public class JChatMind {
                                 .toolResponse(toolResponse)
                                 .build())
                         .build();
-                CreateChatMessageResponse chatMessage = chatMessageFacadeService.createChatMessage(chatMessageDTO);
-                chatMessageDTO.setId(chatMessage.getChatMessageId());
+                pendingWrites.add(chatMessageWriter.submit(chatMessageDTO));
                 pendingChatMessages.add(chatMessageDTO);
             }
         } else {
@@ -200,15 +246,22 @@ public class JChatMind {
 
     // 刷新 pendingMessages, 将数据通过 sse 发送给前端
     private void refreshPendingMessages() {
+        refreshPendingMessages(null);
+    }
+
+    // streamId 不为空时, 前端会用完整的消息替换掉之前流式推送的片段
+    private void refreshPendingMessages(String streamId) {
         for (ChatMessageDTO message : pendingChatMessages) {
             ChatMessageVO vo = chatMessageConverter.toVO(message);
             SseMessage sseMessage = SseMessage.builder()
                     .type(SseMessage.Type.AI_GENERATED_CONTENT)
                     .payload(SseMessage.Payload.builder()
                             .message(vo)
+                            .done(streamId != null ? Boolean.TRUE : null)
                             .build())
                     .metadata(SseMessage.Metadata.builder()
                             .chatMessageId(message.getId())
+                            .streamId(message.getRole() == ChatMessageDTO.RoleType.ASSISTANT ? streamId : null)
                             .build())
                     .build();
             sseService.send(this.chatSessionId, sseMessage);
@@ -216,6 +269,41 @@ public class JChatMind {
         pendingChatMessages.clear();
     }
 
+    // 将流式输出的文本片段推送给前端, 片段不做持久化
+    private void sendDelta(String streamId, String delta) {
+        SseMessage sseMessage = SseMessage.builder()
+                .type(SseMessage.Type.AI_GENERATED_CONTENT)
+                .payload(SseMessage.Payload.builder()
+                        .message(ChatMessageVO.builder()
+                                .sessionId(this.chatSessionId)
+                                .role(ChatMessageDTO.RoleType.ASSISTANT)
+                                .content(delta)
+                                .build())
+                        .done(false)
+                        .build())
+                .metadata(SseMessage.Metadata.builder()
+                        .streamId(streamId)
+                        .build())
+                .build();
+        sseService.send(this.chatSessionId, sseMessage);
+    }
+
+    // 流式调用模型, 边生成边推送, 结束后拼装成完整的 ChatResponse
+    private ChatResponse streamChatResponse(ChatClient.ChatClientRequestSpec requestSpec, String streamId) {
+        StreamingResponseAssembler assembler = new StreamingResponseAssembler();
+        Iterable<ChatResponse> chunks = requestSpec
+                .stream()
+                .chatResponse()
+                .toIterable();
+        for (ChatResponse chunk : chunks) {
+            String delta = assembler.append(chunk);
+            if (!delta.isEmpty()) {
+                sendDelta(streamId, delta);
+            }
+        }
+        return assembler.build();
+    }
+
     // thinkPrompt 应该放到 system 中还是
     private boolean think() {
         String thinkPrompt = """
@@ -235,13 +323,21 @@ public class JChatMind {
                 .messages(this.chatMemory.get(this.chatSessionId))
                 .build();
 
-        this.lastChatResponse = this.chatClient
+        ChatClient.ChatClientRequestSpec requestSpec = this.chatClient
                 .prompt(prompt)
                 .system(thinkPrompt)
-                .toolCallbacks(this.availableTools.toArray(new ToolCallback[0]))
-                .call()
-                .chatClientResponse()
-                .chatResponse();
+                .toolCallbacks(this.availableTools.toArray(new ToolCallback[0]));
+
+        String streamId = null;
+        if (this.streaming) {
+            streamId = UUID.randomUUID().toString();
+            this.lastChatResponse = streamChatResponse(requestSpec, streamId);
+        } else {
+            this.lastChatResponse = requestSpec
+                    .call()
+                    .chatClientResponse()
+                    .chatResponse();
+        }
 
         Assert.notNull(lastChatResponse, "Last chat client response cannot be null");
 
@@ -250,10 +346,13 @@ public class JChatMind {
                 .getOutput();
 
         List<AssistantMessage.ToolCall> toolCalls = output.getToolCalls();
+        if (toolCalls.isEmpty() && StringUtils.hasText(output.getText())) {
+            this.finalAnswer = output.getText();
+        }
 
         // 保存
         saveMessage(output);
-        refreshPendingMessages();
+        refreshPendingMessages(streamId);
 
         // 打印工具调用
         logToolCalls(toolCalls);
@@ -270,19 +369,16 @@ public class JChatMind {
             return;
         }
 
-        Prompt prompt = Prompt.builder()
-                .messages(this.chatMemory.get(this.chatSessionId))
-                .chatOptions(this.chatOptions)
-                .build();
-
-        ToolExecutionResult toolExecutionResult = toolCallingManager.executeToolCalls(prompt, this.lastChatResponse);
+        AssistantMessage assistantMessage = this.lastChatResponse.getResult().getOutput();
 
-        this.chatMemory.clear(this.chatSessionId);
-        this.chatMemory.add(this.chatSessionId, toolExecutionResult.conversationHistory());
+        // 并发执行本轮所有工具调用, 结果顺序与 toolCalls 一致
+        ToolResponseMessage toolResponseMessage = toolExecutor.execute(
+                assistantMessage.getToolCalls(),
+                this.availableTools
+        );
 
-        ToolResponseMessage toolResponseMessage = (ToolResponseMessage) toolExecutionResult
-                .conversationHistory()
-                .get(toolExecutionResult.conversationHistory().size() - 1);
+        // 带有 tool_calls 的 AssistantMessage 后面一定紧跟对应的 ToolResponseMessage
+        this.chatMemory.add(this.chatSessionId, List.of(assistantMessage, toolResponseMessage));
 
         String collect = toolResponseMessage.getResponses()
                 .stream()
@@ -305,20 +401,62 @@ public class JChatMind {
 
     // 单个步骤模板
     private void step() {
-        if (think()) {
-            execute();
+        steps++;
+        long start = System.nanoTime();
+        boolean hasToolCalls = Spans.inSpan(tracer, tracer.nextSpan()
+                .name("agent.think")
+                .tag("agent.id", agentId)
+                .tag("agent.step", steps), this::think);
+        long thought = System.nanoTime();
+        metrics.recordThink(thought - start);
+        if (hasToolCalls) {
+            Spans.inSpan(tracer, tracer.nextSpan()
+                    .name("agent.execute")
+                    .tag("agent.id", agentId)
+                    .tag("agent.step", steps), this::execute);
+            metrics.recordExecute(System.nanoTime() - thought);
         } else { // 没有工具调用
             agentState = AgentState.FINISHED;
         }
     }
 
+    // 相似的问题已经回答过, 直接返回缓存的回答
+    private boolean replyFromCache() {
+        if (this.responseCache == null || !StringUtils.hasText(this.question)) {
+            return false;
+        }
+        try {
+            this.questionEmbedding = this.responseCache.embed(this.question);
+        } catch (Exception e) {
+            // embedding 失败不影响正常回答
+            log.warn("语义缓存计算 embedding 失败: {}", e.getMessage());
+            this.responseCache = null;
+            return false;
+        }
+        this.knowledgeVersion = this.responseCache.knowledgeVersion(this.availableKbs);
+        String answer = this.responseCache.lookup(this.agentId, this.knowledgeVersion, this.questionEmbedding);
+        if (answer == null) {
+            return false;
+        }
+        saveMessage(new AssistantMessage(answer));
+        refreshPendingMessages();
+        return true;
+    }
+
     // 运行
     public void run() {
         if (agentState != AgentState.IDLE) {
             throw new IllegalStateException("Agent is not idle");
         }
 
+        long start = System.nanoTime();
+        metrics.runStarted();
+        RuntimeException failure = null;
         try {
+            if (replyFromCache()) {
+                agentState = AgentState.FINISHED;
+                return;
+            }
             for (int i = 0; i < MAX_STEPS && agentState != AgentState.FINISHED; i++) {
                 // 当前步骤，用于实现 Agent Loop
                 int currentStep = i + 1;
@@ -329,10 +467,37 @@ public class JChatMind {
                 }
             }
             agentState = AgentState.FINISHED;
+            if (this.responseCache != null && this.questionEmbedding != null && this.finalAnswer != null) {
+                this.responseCache.put(this.agentId, this.knowledgeVersion, this.question,
+                        this.questionEmbedding, this.finalAnswer);
+            }
+        } catch (RateLimitedException e) {
+            // 所有模型的配额都已用完, 回复提示而不是进入错误状态
+            log.warn("模型请求排队超时: agentId={}, {}", agentId, e.getMessage());
+            saveMessage(new AssistantMessage(RATE_LIMITED_REPLY));
+            refreshPendingMessages();
+            agentState = AgentState.FINISHED;
         } catch (Exception e) {
             agentState = AgentState.ERROR;
             log.error("Error running agent", e);
-            throw new RuntimeException("Error running agent", e);
+            failure = new RuntimeException("Error running agent", e);
+            throw failure;
+        } finally {
+            try {
+                // 运行结束前保证本次生成的消息全部落库
+                chatMessageWriter.await(pendingWrites);
+            } catch (RuntimeException e) {
+                // 落库失败不能掩盖运行本身的异常, 运行成功时向上抛出
+                agentState = AgentState.ERROR;
+                log.error("等待聊天消息落库失败: agentId={}, chatSessionId={}", agentId, chatSessionId, e);
+                if (failure == null) {
+                    throw e;
+                }
+                failure.addSuppressed(e);
+            } finally {
+                pendingWrites.clear();
+                metrics.runFinished(agentState, steps, System.nanoTime() - start);
+            }
         }
     }
 
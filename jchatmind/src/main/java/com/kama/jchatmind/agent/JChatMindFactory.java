@@ -1,7 +1,9 @@
 package com.kama.jchatmind.agent;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.kama.jchatmind.agent.memory.TokenBudgetChatMemory;
 import com.kama.jchatmind.agent.tools.Tool;
+import com.kama.jchatmind.config.AgentMemoryProperties;
 import com.kama.jchatmind.config.ChatClientRegistry;
 import com.kama.jchatmind.converter.AgentConverter;
 import com.kama.jchatmind.converter.ChatMessageConverter;
@@ -16,6 +18,11 @@ import com.kama.jchatmind.model.entity.KnowledgeBase;
 import com.kama.jchatmind.service.ChatMessageFacadeService;
 import com.kama.jchatmind.service.SseService;
 import com.kama.jchatmind.service.ToolFacadeService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
@@ -23,6 +30,8 @@ import org.springframework.ai.chat.messages.*;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.method.MethodToolCallbackProvider;
 import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
@@ -42,10 +51,19 @@ public class JChatMindFactory {
     private final KnowledgeBaseConverter knowledgeBaseConverter;
     private final ToolFacadeService toolFacadeService;
     private final ChatMessageFacadeService chatMessageFacadeService;
+    private final ChatMessageWriter chatMessageWriter;
     private final ChatMessageConverter chatMessageConverter;
+    private final ConcurrentToolExecutor toolExecutor;
+    private final AgentRuntimeTemplateCache templateCache;
+    private final AgentMemoryProperties memoryProperties;
+    private final SemanticResponseCache responseCache;
+    private final AgentMetrics agentMetrics;
+    private final MeterRegistry meterRegistry;
+    private final Tracer tracer;
 
-    // 运行时 Agent 配置
-    private AgentDTO agentConfig;
+    // 是否开启流式输出
+    @Value("${jchatmind.agent.streaming:false}")
+    private boolean streaming;
 
     public JChatMindFactory(
             ChatClientRegistry chatClientRegistry,
@@ -56,7 +74,15 @@ public class JChatMindFactory {
             KnowledgeBaseConverter knowledgeBaseConverter,
             ToolFacadeService toolFacadeService,
             ChatMessageFacadeService chatMessageFacadeService,
-            ChatMessageConverter chatMessageConverter
+            ChatMessageWriter chatMessageWriter,
+            ChatMessageConverter chatMessageConverter,
+            ConcurrentToolExecutor toolExecutor,
+            AgentRuntimeTemplateCache templateCache,
+            AgentMemoryProperties memoryProperties,
+            SemanticResponseCache responseCache,
+            AgentMetrics agentMetrics,
+            ObjectProvider<MeterRegistry> meterRegistryProvider,
+            ObjectProvider<Tracer> tracerProvider
     ) {
         this.chatClientRegistry = chatClientRegistry;
         this.sseService = sseService;
@@ -66,21 +92,37 @@ public class JChatMindFactory {
         this.knowledgeBaseConverter = knowledgeBaseConverter;
         this.toolFacadeService = toolFacadeService;
         this.chatMessageFacadeService = chatMessageFacadeService;
+        this.chatMessageWriter = chatMessageWriter;
         this.chatMessageConverter = chatMessageConverter;
+        this.toolExecutor = toolExecutor;
+        this.templateCache = templateCache;
+        this.memoryProperties = memoryProperties;
+        this.responseCache = responseCache;
+        this.agentMetrics = agentMetrics;
+        this.meterRegistry = meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        this.tracer = tracerProvider.getIfAvailable(() -> Tracer.NOOP);
     }
 
     private Agent loadAgent(String agentId) {
-        return agentMapper.selectById(agentId);
+        Agent agent = agentMapper.selectById(agentId);
+        if (agent == null) {
+            throw new IllegalStateException("Agent 不存在: " + agentId);
+        }
+        return agent;
     }
 
     /**
      * 将数据库中存储的记忆恢复成 List<Message> 结构
      */
-    private List<Message> loadMemory(String chatSessionId) {
-        int messageLength = agentConfig.getChatOptions().getMessageLength();
+    private List<Message> loadMemory(String chatSessionId, int messageLength) {
         List<ChatMessageDTO> chatMessages = chatMessageFacadeService.getChatMessagesBySessionIdRecently(chatSessionId, messageLength);
         List<Message> memory = new ArrayList<>();
-        for (ChatMessageDTO chatMessageDTO : chatMessages) {
+        // 窗口的开头可能截断在一组工具调用中间, 没有对应 tool_calls 的工具结果不能发给模型
+        int start = 0;
+        while (start < chatMessages.size() && chatMessages.get(start).getRole() == ChatMessageDTO.RoleType.TOOL) {
+            start++;
+        }
+        for (ChatMessageDTO chatMessageDTO : chatMessages.subList(start, chatMessages.size())) {
             switch (chatMessageDTO.getRole()) {
                 case SYSTEM:
                     if (!StringUtils.hasLength(chatMessageDTO.getContent())) continue;
@@ -117,8 +159,7 @@ public class JChatMindFactory {
 
     private AgentDTO toAgentConfig(Agent agent) {
         try {
-            agentConfig = agentConverter.toDTO(agent);
-            return agentConfig;
+            return agentConverter.toDTO(agent);
         } catch (JsonProcessingException e) {
             throw new IllegalStateException("解析 Agent 配置失败", e);
         }
@@ -193,41 +234,21 @@ public class JChatMindFactory {
         }
     }
 
-    private JChatMind buildAgentRuntime(
-            Agent agent,
-            List<Message> memory,
-            List<KnowledgeBaseDTO> knowledgeBases,
-            List<ToolCallback> toolCallbacks,
-            String chatSessionId
-    ) {
-        ChatClient chatClient = chatClientRegistry.get(agent.getModel());
+    private ChatClient resolveChatClient(AgentDTO agentConfig) {
+        String model = agentConfig.getModel().getModelName();
+        ChatClient chatClient = chatClientRegistry.get(model);
         if (Objects.isNull(chatClient)) {
-            throw new IllegalStateException("未找到对应的 ChatClient: " + agent.getModel());
+            throw new IllegalStateException("未找到对应的 ChatClient: " + model);
         }
-        return new JChatMind(
-                agent.getId(),
-                agent.getName(),
-                agent.getDescription(),
-                agent.getSystemPrompt(),
-                chatClient,
-                agentConfig.getChatOptions().getMessageLength(),
-                memory,
-                toolCallbacks,
-                knowledgeBases,
-                chatSessionId,
-                sseService,
-                chatMessageFacadeService,
-                chatMessageConverter
-        );
+        return chatClient;
     }
 
     /**
-     * 创建一个 JChatMind 实例
+     * 构建 Agent 运行时模板, 只在缓存未命中时执行
      */
-    public JChatMind create(String agentId, String chatSessionId) {
+    private AgentRuntimeTemplate buildTemplate(String agentId) {
         Agent agent = loadAgent(agentId);
         AgentDTO agentConfig = toAgentConfig(agent);
-        List<Message> memory = loadMemory(chatSessionId);
 
         // 解析 agent 的支持的知识库
         List<KnowledgeBaseDTO> knowledgeBases = resolveRuntimeKnowledgeBases(agentConfig);
@@ -236,12 +257,81 @@ public class JChatMindFactory {
         // 将工具调用转换成 ToolCallback 的形式
         List<ToolCallback> toolCallbacks = buildToolCallbacks(runtimeTools);
 
-        return buildAgentRuntime(
-                agent,
-                memory,
+        log.info("构建 Agent 运行时模板: agentId={}, tools={}, kbs={}",
+                agentId, toolCallbacks.size(), knowledgeBases.size());
+        return new AgentRuntimeTemplate(
+                agentConfig,
                 knowledgeBases,
                 toolCallbacks,
-                chatSessionId
+                resolveChatClient(agentConfig),
+                runtimeTools.stream().noneMatch(tool -> tool.hasSideEffects() || tool.isTimeSensitive())
+        );
+    }
+
+    private JChatMind buildAgentRuntime(
+            AgentRuntimeTemplate template,
+            List<Message> memory,
+            String chatSessionId
+    ) {
+        AgentDTO agentConfig = template.getAgentConfig();
+        return new JChatMind(
+                agentConfig.getId(),
+                agentConfig.getName(),
+                agentConfig.getDescription(),
+                agentConfig.getSystemPrompt(),
+                template.getChatClient(),
+                createChatMemory(template),
+                memory,
+                template.getToolCallbacks(),
+                template.getKnowledgeBases(),
+                chatSessionId,
+                sseService,
+                chatMessageWriter,
+                chatMessageConverter,
+                toolExecutor,
+                responseCache.isApplicable(template, memory) ? responseCache : null,
+                agentMetrics.forModel(template.getModelName()),
+                tracer,
+                streaming
+        );
+    }
+
+    /**
+     * 按 Agent 的消息条数限制和全局 token 预算创建聊天记忆, 指标按模型区分
+     */
+    private TokenBudgetChatMemory createChatMemory(AgentRuntimeTemplate template) {
+        String model = template.getModelName();
+        TokenBudgetChatMemory.Metrics metrics = new TokenBudgetChatMemory.Metrics(
+                DistributionSummary.builder("jchatmind.agent.prompt.tokens")
+                        .description("每一步发送给模型的聊天记录估算 token 数（不含工具定义）")
+                        .tag("model", model)
+                        .register(meterRegistry),
+                DistributionSummary.builder("jchatmind.agent.prompt.messages")
+                        .description("每一步发送给模型的消息条数")
+                        .tag("model", model)
+                        .register(meterRegistry),
+                Counter.builder("jchatmind.agent.tool.response.truncated")
+                        .description("超出 token 上限被截断的工具返回结果数量")
+                        .tag("model", model)
+                        .register(meterRegistry)
         );
+        return new TokenBudgetChatMemory(template.getMessageLength(), memoryProperties, metrics);
+    }
+
+    /**
+     * 获取 Agent 使用的模型名称
+     */
+    public String resolveModel(String agentId) {
+        return templateCache.get(agentId, this::buildTemplate).getModelName();
+    }
+
+    /**
+     * 创建一个 JChatMind 实例
+     * Agent 的配置、知识库和工具从运行时模板缓存中获取, 只有会话记忆需要每次加载
+     */
+    public JChatMind create(String agentId, String chatSessionId) {
+        AgentRuntimeTemplate template = templateCache.get(agentId, this::buildTemplate);
+        List<Message> memory = loadMemory(chatSessionId, template.getMessageLength());
+        return buildAgentRuntime(template, memory, chatSessionId);
     }
 }
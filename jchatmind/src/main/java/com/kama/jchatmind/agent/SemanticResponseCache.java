@@ -0,0 +1,184 @@
+package com.kama.jchatmind.agent;
+
+import com.kama.jchatmind.config.SemanticCacheProperties;
+import com.kama.jchatmind.model.dto.KnowledgeBaseDTO;
+import com.kama.jchatmind.rag.RagCache;
+import com.kama.jchatmind.service.RagService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Agent 语义缓存
+ * 以 Agent 为单位缓存"问题 embedding -> 最终回答", 新问题和缓存中的问题余弦相似度达到阈值时直接返回之前的回答,
+ * 整个 Agent 循环（包括多次 LLM 调用和工具调用）都不再执行。
+ * 只对没有副作用工具的 Agent 生效, 否则命中缓存会跳过本应执行的操作（如发送邮件、写文件）;
+ * 带有实时数据工具（如数据库查询）的 Agent 也不使用, 否则数据变化后仍返回旧的回答。
+ * 每条缓存记录带有写入时 Agent 所用知识库的版本（knowledge_base.chunk_version, 见 RagCache）,
+ * 任何节点的文档入库完成或被删除后版本变化, 之前基于旧知识库得出的回答不再命中
+ */
+@Slf4j
+@Component
+public class SemanticResponseCache {
+
+    private final RagService ragService;
+    private final RagCache ragCache;
+    private final SemanticCacheProperties properties;
+
+    private final ConcurrentMap<String, Deque<Entry>> entriesByAgent = new ConcurrentHashMap<>();
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    public SemanticResponseCache(RagService ragService,
+                                 RagCache ragCache,
+                                 SemanticCacheProperties properties,
+                                 ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.ragService = ragService;
+        this.ragCache = ragCache;
+        this.properties = properties;
+
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        this.hitCounter = Counter.builder("jchatmind.agent.semantic.cache")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("jchatmind.agent.semantic.cache")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param embedding        已归一化, 相似度直接用点积计算
+     * @param knowledgeVersion 写入时各知识库的版本
+     */
+    private record Entry(String question, float[] embedding, String answer, String knowledgeVersion, long expiresAt) {
+    }
+
+    /**
+     * 本次运行能否使用缓存
+     *
+     * @param memory 本次运行加载的聊天记录
+     */
+    public boolean isApplicable(AgentRuntimeTemplate template, List<Message> memory) {
+        if (!properties.isEnabled(template.getAgentId()) || !template.isCacheable()) {
+            return false;
+        }
+        return !properties.isFirstTurnOnly()
+                || memory.stream().noneMatch(message -> message instanceof AssistantMessage);
+    }
+
+    public float[] embed(String question) {
+        return normalize(ragService.embed(question));
+    }
+
+    /**
+     * Agent 可访问的知识库当前的版本, 在运行开始时获取, 查找和写入缓存时使用同一个值,
+     * 运行期间知识库发生变化时写入的回答不会被命中
+     */
+    public String knowledgeVersion(List<KnowledgeBaseDTO> knowledgeBases) {
+        if (knowledgeBases == null || knowledgeBases.isEmpty()) {
+            return "";
+        }
+        return knowledgeBases.stream()
+                .map(KnowledgeBaseDTO::getId)
+                .sorted()
+                .map(kbId -> kbId + ":" + ragCache.currentVersion(kbId))
+                .collect(Collectors.joining(","));
+    }
+
+    /**
+     * 查找相似问题的回答, 没有命中时返回 null
+     */
+    public String lookup(String agentId, String knowledgeVersion, float[] embedding) {
+        Deque<Entry> entries = entriesByAgent.get(agentId);
+        if (entries == null) {
+            missCounter.increment();
+            return null;
+        }
+        double threshold = properties.getSimilarityThreshold(agentId);
+        long now = System.currentTimeMillis();
+        Entry best = null;
+        double bestScore = threshold;
+        synchronized (entries) {
+            Iterator<Entry> iterator = entries.iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                // 过期或者知识库已经变化
+                if (entry.expiresAt() < now || !entry.knowledgeVersion().equals(knowledgeVersion)) {
+                    iterator.remove();
+                    continue;
+                }
+                double score = dot(embedding, entry.embedding());
+                if (score >= bestScore) {
+                    best = entry;
+                    bestScore = score;
+                }
+            }
+        }
+        if (best == null) {
+            missCounter.increment();
+            return null;
+        }
+        hitCounter.increment();
+        log.info("命中语义缓存: agentId={}, question={}, similarity={}", agentId, best.question(), bestScore);
+        return best.answer();
+    }
+
+    public void put(String agentId, String knowledgeVersion, String question, float[] embedding, String answer) {
+        long expiresAt = System.currentTimeMillis() + properties.getTtl(agentId).toMillis();
+        Deque<Entry> entries = entriesByAgent.computeIfAbsent(agentId, key -> new ArrayDeque<>());
+        synchronized (entries) {
+            entries.addLast(new Entry(question, embedding, answer, knowledgeVersion, expiresAt));
+            while (entries.size() > properties.getMaxEntriesPerAgent()) {
+                entries.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * Agent 配置变化后之前的回答不再可信
+     */
+    public void invalidateAgent(String agentId) {
+        entriesByAgent.remove(agentId);
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        float[] result = new float[vector.length];
+        if (norm == 0) {
+            return result;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            result[i] = (float) (vector[i] / norm);
+        }
+        return result;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
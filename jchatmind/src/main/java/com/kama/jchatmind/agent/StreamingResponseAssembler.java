@@ -0,0 +1,124 @@
+package com.kama.jchatmind.agent;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式响应拼装器
+ * 将 ChatClient.stream() 返回的多个 ChatResponse 片段逐个合并，
+ * 最终还原成一个与 call() 等价的 ChatResponse
+ */
+public class StreamingResponseAssembler {
+
+    // 已经收到的文本内容
+    private final StringBuilder content = new StringBuilder();
+
+    // 按出现顺序保存的工具调用片段, key 为工具调用 ID
+    private final Map<String, ToolCallFragment> toolCalls = new LinkedHashMap<>();
+
+    // 最后一个工具调用片段, 用于拼接没有携带 ID 的后续参数片段
+    private ToolCallFragment lastToolCall;
+
+    // 最后一次收到的响应元数据（包含 token 用量等信息）
+    private ChatResponseMetadata metadata;
+
+    /**
+     * 合并一个流式片段
+     *
+     * @return 本片段中新增的文本内容, 没有时返回空字符串
+     */
+    public String append(ChatResponse chunk) {
+        if (chunk == null) {
+            return "";
+        }
+        if (chunk.getMetadata() != null) {
+            metadata = chunk.getMetadata();
+        }
+        Generation generation = chunk.getResult();
+        if (generation == null || generation.getOutput() == null) {
+            return "";
+        }
+
+        AssistantMessage output = generation.getOutput();
+        for (AssistantMessage.ToolCall toolCall : output.getToolCalls()) {
+            appendToolCall(toolCall);
+        }
+
+        String delta = output.getText();
+        if (!StringUtils.hasLength(delta)) {
+            return "";
+        }
+        content.append(delta);
+        return delta;
+    }
+
+    private void appendToolCall(AssistantMessage.ToolCall toolCall) {
+        // 没有 ID 的片段属于上一个工具调用的参数续传
+        if (!StringUtils.hasLength(toolCall.id())) {
+            if (lastToolCall != null) {
+                lastToolCall.merge(toolCall);
+            }
+            return;
+        }
+        lastToolCall = toolCalls.computeIfAbsent(toolCall.id(), ToolCallFragment::new);
+        lastToolCall.merge(toolCall);
+    }
+
+    /**
+     * 拼装最终的 ChatResponse
+     */
+    public ChatResponse build() {
+        List<AssistantMessage.ToolCall> calls = new ArrayList<>();
+        for (ToolCallFragment fragment : toolCalls.values()) {
+            calls.add(fragment.toToolCall());
+        }
+        AssistantMessage assistantMessage = AssistantMessage.builder()
+                .content(content.toString())
+                .toolCalls(calls)
+                .build();
+        return ChatResponse.builder()
+                .generations(List.of(new Generation(assistantMessage)))
+                .metadata(metadata != null ? metadata : new ChatResponseMetadata())
+                .build();
+    }
+
+    private static class ToolCallFragment {
+        private final String id;
+        private String type;
+        private String name;
+        private final StringBuilder arguments = new StringBuilder();
+
+        private ToolCallFragment(String id) {
+            this.id = id;
+        }
+
+        private void merge(AssistantMessage.ToolCall toolCall) {
+            if (StringUtils.hasLength(toolCall.type())) {
+                type = toolCall.type();
+            }
+            if (StringUtils.hasLength(toolCall.name())) {
+                name = toolCall.name();
+            }
+            if (toolCall.arguments() != null) {
+                arguments.append(toolCall.arguments());
+            }
+        }
+
+        private AssistantMessage.ToolCall toToolCall() {
+            return new AssistantMessage.ToolCall(
+                    id,
+                    type != null ? type : "function",
+                    name,
+                    arguments.length() > 0 ? arguments.toString() : "{}"
+            );
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.kama.jchatmind.agent.memory;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * 只追加的对话缓冲区
+ * 消息只会追加到末尾, 已有位置的内容不再变化, 因此任意 [from, to) 区间都可以直接作为只读视图返回,
+ * 多次取上下文窗口共享同一份底层数组, 不需要复制消息列表。
+ * 同时维护 token 前缀和以及工具调用组的起始位置, 选取窗口的开销只和窗口本身有关, 和历史长度无关
+ */
+public class ConversationBuffer {
+
+    private Message[] messages = new Message[16];
+
+    // prefixTokens[i] 为 [0, i) 的 token 数之和
+    private long[] prefixTokens = new long[17];
+
+    // 该位置能否作为窗口的起点: 工具结果必须和发起调用的 AssistantMessage 在同一个窗口中
+    private boolean[] groupStarts = new boolean[16];
+
+    private int size;
+
+    // 最后一条消息是否处于一组工具调用中（带 tool_calls 的 AssistantMessage 或其后的工具结果）
+    private boolean inToolCallGroup;
+
+    /**
+     * 追加一条消息
+     *
+     * @return false 表示这是一条找不到对应 tool_calls 的工具结果, 已被丢弃
+     */
+    public synchronized boolean append(Message message, int tokens) {
+        boolean toolResponse = message instanceof ToolResponseMessage;
+        if (toolResponse && !inToolCallGroup) {
+            return false;
+        }
+        if (size == messages.length) {
+            int capacity = size * 2;
+            messages = Arrays.copyOf(messages, capacity);
+            prefixTokens = Arrays.copyOf(prefixTokens, capacity + 1);
+            groupStarts = Arrays.copyOf(groupStarts, capacity);
+        }
+        messages[size] = message;
+        prefixTokens[size + 1] = prefixTokens[size] + tokens;
+        groupStarts[size] = !toolResponse;
+        inToolCallGroup = toolResponse
+                || (message instanceof AssistantMessage assistantMessage && assistantMessage.hasToolCalls());
+        size++;
+        return true;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * [from, to) 区间的 token 数
+     */
+    public synchronized long tokens(int from, int to) {
+        return prefixTokens[to] - prefixTokens[from];
+    }
+
+    /**
+     * 以最后一条消息结尾、不超过 maxMessages 条和 maxTokens 的最长窗口的起点,
+     * 起点总是落在工具调用组的边界上; 最后一组消息即使超出限制也会保留
+     */
+    public synchronized int windowStart(int maxMessages, long maxTokens) {
+        if (size == 0) {
+            return 0;
+        }
+        int start = Math.max(0, size - maxMessages);
+        // 二分查找满足 token 预算的最小起点
+        int low = start;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prefixTokens[size] - prefixTokens[mid] <= maxTokens) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        start = low;
+        // 向后对齐到组的起点
+        while (start < size && !groupStarts[start]) {
+            start++;
+        }
+        if (start == size) {
+            // 最后一组本身就超出限制, 向前找到它的起点
+            start = size - 1;
+            while (start > 0 && !groupStarts[start]) {
+                start--;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * [from, to) 区间的只读视图, 不复制消息; 之后追加的消息不会出现在视图中
+     */
+    public List<Message> view(int from, int to) {
+        return view(null, from, to);
+    }
+
+    /**
+     * 在视图前面加上一条消息（系统提示词）, 同样不复制
+     */
+    public synchronized List<Message> view(Message head, int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("from=" + from + ", to=" + to + ", size=" + size);
+        }
+        return new View(head, from, to);
+    }
+
+    private class View extends AbstractList<Message> implements RandomAccess {
+        private final Message head;
+        private final int from;
+        private final int to;
+        private final int offset;
+
+        View(Message head, int from, int to) {
+            this.head = head;
+            this.from = from;
+            this.to = to;
+            this.offset = head == null ? 0 : 1;
+        }
+
+        @Override
+        public Message get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("index=" + index + ", size=" + size());
+            }
+            if (index < offset) {
+                return head;
+            }
+            return message(from + index - offset);
+        }
+
+        @Override
+        public int size() {
+            return to - from + offset;
+        }
+    }
+
+    private synchronized Message message(int index) {
+        return messages[index];
+    }
+}
@@ -0,0 +1,133 @@
+package com.kama.jchatmind.agent.memory;
+
+import com.kama.jchatmind.config.AgentMemoryProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按 token 预算裁剪的聊天记忆
+ * 1. 系统提示词始终保留在最前面, 新的系统提示词替换旧的
+ * 2. 工具返回结果在加入记忆时按 maxToolResponseTokens 截断（只影响发给模型的上下文, 数据库中保存的是完整结果）
+ * 3. 带 tool_calls 的 AssistantMessage 和紧随其后的 ToolResponseMessage 作为一个整体保留或丢弃,
+ * 从最新的消息往前取, 直到超出消息条数或 token 预算; 最新的一组消息即使超出预算也会保留
+ * 4. 消息保存在只追加的 {@link ConversationBuffer} 中, 每一步取上下文时返回共享底层数组的视图
+ */
+public class TokenBudgetChatMemory implements ChatMemory {
+
+    private final int maxMessages;
+    private final AgentMemoryProperties properties;
+    private final Metrics metrics;
+
+    private final Map<String, Conversation> conversations = new ConcurrentHashMap<>();
+
+    /**
+     * @param promptTokens   每次 get 返回的上下文估算 token 数
+     * @param promptMessages 每次 get 返回的消息条数
+     * @param truncated      被截断的工具返回结果数量
+     */
+    public record Metrics(DistributionSummary promptTokens, DistributionSummary promptMessages, Counter truncated) {
+    }
+
+    private static class Conversation {
+        private Message system;
+        private int systemTokens;
+        private final ConversationBuffer buffer = new ConversationBuffer();
+    }
+
+    public TokenBudgetChatMemory(int maxMessages, AgentMemoryProperties properties, Metrics metrics) {
+        this.maxMessages = maxMessages;
+        this.properties = properties;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        Conversation conversation = conversations.computeIfAbsent(conversationId, key -> new Conversation());
+        synchronized (conversation) {
+            for (Message message : messages) {
+                if (message instanceof SystemMessage) {
+                    conversation.system = message;
+                    conversation.systemTokens = TokenEstimator.estimate(message);
+                    continue;
+                }
+                Message compacted = message instanceof ToolResponseMessage toolResponseMessage
+                        ? truncate(toolResponseMessage)
+                        : message;
+                // 找不到对应 tool_calls 的工具结果（例如历史窗口截断在一组工具调用中间）不会加入缓冲区
+                conversation.buffer.append(compacted, TokenEstimator.estimate(compacted));
+            }
+        }
+    }
+
+    /**
+     * 返回缓冲区的只读视图, 每一步的开销只和窗口大小有关, 不会复制整个历史
+     */
+    @Override
+    public List<Message> get(String conversationId) {
+        Conversation conversation = conversations.get(conversationId);
+        if (conversation == null) {
+            return Collections.emptyList();
+        }
+        synchronized (conversation) {
+            ConversationBuffer buffer = conversation.buffer;
+            int end = buffer.size();
+            long budget = Math.max(0, properties.getMaxPromptTokens() - conversation.systemTokens);
+            int start = buffer.windowStart(maxMessages, budget);
+
+            List<Message> window = buffer.view(conversation.system, start, end);
+            metrics.promptTokens().record(conversation.systemTokens + buffer.tokens(start, end));
+            metrics.promptMessages().record(window.size());
+            return window;
+        }
+    }
+
+    private ToolResponseMessage truncate(ToolResponseMessage message) {
+        boolean changed = false;
+        List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>(message.getResponses().size());
+        for (ToolResponseMessage.ToolResponse response : message.getResponses()) {
+            String data = truncate(response.responseData());
+            if (data != response.responseData()) {
+                changed = true;
+                metrics.truncated().increment();
+            }
+            responses.add(new ToolResponseMessage.ToolResponse(response.id(), response.name(), data));
+        }
+        if (!changed) {
+            return message;
+        }
+        return ToolResponseMessage.builder()
+                .responses(responses)
+                .metadata(message.getMetadata())
+                .build();
+    }
+
+    // 按估算的字符/token 比例换算出保留的字符数, 保留开头和结尾
+    private String truncate(String data) {
+        int tokens = TokenEstimator.estimate(data);
+        int maxTokens = properties.getMaxToolResponseTokens();
+        if (tokens <= maxTokens) {
+            return data;
+        }
+        int keepChars = (int) ((long) data.length() * maxTokens / tokens);
+        int headChars = (int) (keepChars * properties.getTruncateHeadRatio());
+        int tailChars = keepChars - headChars;
+        return data.substring(0, headChars)
+                + "\n...[内容过长, 已省略 " + (data.length() - keepChars) + " 个字符]...\n"
+                + data.substring(data.length() - tailChars);
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        conversations.remove(conversationId);
+    }
+}
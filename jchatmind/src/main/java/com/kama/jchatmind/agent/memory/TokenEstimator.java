@@ -0,0 +1,61 @@
+package com.kama.jchatmind.agent.memory;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+
+/**
+ * 本地 token 数估算
+ * 不依赖具体模型的分词器: 中日韩字符按每个字 1 个 token 计算,
+ * 其余字符（英文、数字、标点、JSON）按平均 3.5 个字符 1 个 token 计算, 结果略偏保守
+ */
+public final class TokenEstimator {
+
+    // 每条消息的角色、分隔符等固定开销
+    private static final int MESSAGE_OVERHEAD = 4;
+
+    private static final double CHARS_PER_TOKEN = 3.5;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            if (isCjk(codePoint)) {
+                cjk++;
+            } else {
+                other++;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return cjk + (int) Math.ceil(other / CHARS_PER_TOKEN);
+    }
+
+    public static int estimate(Message message) {
+        int tokens = MESSAGE_OVERHEAD + estimate(message.getText());
+        if (message instanceof AssistantMessage assistantMessage && assistantMessage.hasToolCalls()) {
+            for (AssistantMessage.ToolCall toolCall : assistantMessage.getToolCalls()) {
+                tokens += MESSAGE_OVERHEAD + estimate(toolCall.name()) + estimate(toolCall.arguments());
+            }
+        } else if (message instanceof ToolResponseMessage toolResponseMessage) {
+            for (ToolResponseMessage.ToolResponse response : toolResponseMessage.getResponses()) {
+                tokens += MESSAGE_OVERHEAD + estimate(response.name()) + estimate(response.responseData());
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
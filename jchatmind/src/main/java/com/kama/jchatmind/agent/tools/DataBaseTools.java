@@ -34,6 +34,12 @@ public class DataBaseTools implements Tool {
         return ToolType.OPTIONAL;
     }
 
+    // 查询的是实时数据, 缓存的回答在数据变化后就是错的
+    @Override
+    public boolean isTimeSensitive() {
+        return true;
+    }
+
     /**
      * 执行一条 SQL 查询，从数据库中进行查询数据
      *
@@ -61,72 +67,24 @@ public class DataBaseTools implements Tool {
                     return resultRows;
                 }
 
-                // 获取列名和计算每列的最大宽度
+                // 获取列名
                 List<String> columnNames = new ArrayList<>();
-                List<Integer> columnWidths = new ArrayList<>();
                 for (int i = 1; i <= columnCount; i++) {
-                    String columnName = metaData.getColumnName(i);
-                    columnNames.add(columnName);
-                    columnWidths.add(columnName.length());
+                    columnNames.add(metaData.getColumnName(i));
                 }
 
-                // 收集所有行数据并计算列宽
+                // 收集所有行数据
                 List<List<String>> dataRows = new ArrayList<>();
                 while (rs.next()) {
                     List<String> rowData = new ArrayList<>();
                     for (int i = 1; i <= columnCount; i++) {
                         Object value = rs.getObject(i);
-                        String valueStr = value == null ? "NULL" : value.toString();
-                        rowData.add(valueStr);
-                        // 更新列宽
-                        int currentWidth = columnWidths.get(i - 1);
-                        if (valueStr.length() > currentWidth) {
-                            columnWidths.set(i - 1, valueStr.length());
-                        }
+                        rowData.add(value == null ? "NULL" : value.toString());
                     }
                     dataRows.add(rowData);
                 }
 
-                // 格式化表头
-                StringBuilder header = new StringBuilder();
-                header.append("| ");
-                for (int i = 0; i < columnCount; i++) {
-                    String columnName = columnNames.get(i);
-                    int width = columnWidths.get(i);
-                    header.append(String.format("%-" + width + "s", columnName)).append(" | ");
-                }
-                resultRows.add(header.toString());
-
-                // 添加分隔线
-                StringBuilder separator = new StringBuilder();
-                separator.append("|");
-                for (int i = 0; i < columnCount; i++) {
-                    int width = columnWidths.get(i);
-                    separator.append("-".repeat(width + 2)).append("|");
-                }
-                resultRows.add(separator.toString());
-
-                // 格式化数据行
-                if (dataRows.isEmpty()) {
-                    StringBuilder emptyRow = new StringBuilder();
-                    emptyRow.append("| ");
-                    int totalWidth = columnWidths.stream().mapToInt(w -> w + 3).sum() - 1;
-                    emptyRow.append(String.format("%-" + (totalWidth - 2) + "s", "(无数据)"));
-                    emptyRow.append(" |");
-                    resultRows.add(emptyRow.toString());
-                } else {
-                    for (List<String> rowData : dataRows) {
-                        StringBuilder row = new StringBuilder();
-                        row.append("| ");
-                        for (int i = 0; i < columnCount; i++) {
-                            String value = rowData.get(i);
-                            int width = columnWidths.get(i);
-                            row.append(String.format("%-" + width + "s", value)).append(" | ");
-                        }
-                        resultRows.add(row.toString());
-                    }
-                }
-
+                resultRows.addAll(formatTable(columnNames, dataRows));
                 return resultRows;
             });
 
@@ -143,4 +101,70 @@ public class DataBaseTools implements Tool {
             return "错误：操作失败 - " + e.getMessage() + "\nSQL: " + sql;
         }
     }
+
+    /**
+     * 将查询结果格式化为文本表格: 表头、分隔线和数据行, 每列按最长的值对齐
+     */
+    static List<String> formatTable(List<String> columnNames, List<List<String>> dataRows) {
+        List<String> resultRows = new ArrayList<>();
+        int columnCount = columnNames.size();
+
+        // 计算每列的最大宽度
+        List<Integer> columnWidths = new ArrayList<>();
+        for (String columnName : columnNames) {
+            columnWidths.add(columnName.length());
+        }
+        for (List<String> rowData : dataRows) {
+            for (int i = 0; i < columnCount; i++) {
+                String valueStr = rowData.get(i);
+                // 更新列宽
+                int currentWidth = columnWidths.get(i);
+                if (valueStr.length() > currentWidth) {
+                    columnWidths.set(i, valueStr.length());
+                }
+            }
+        }
+
+        // 格式化表头
+        StringBuilder header = new StringBuilder();
+        header.append("| ");
+        for (int i = 0; i < columnCount; i++) {
+            String columnName = columnNames.get(i);
+            int width = columnWidths.get(i);
+            header.append(String.format("%-" + width + "s", columnName)).append(" | ");
+        }
+        resultRows.add(header.toString());
+
+        // 添加分隔线
+        StringBuilder separator = new StringBuilder();
+        separator.append("|");
+        for (int i = 0; i < columnCount; i++) {
+            int width = columnWidths.get(i);
+            separator.append("-".repeat(width + 2)).append("|");
+        }
+        resultRows.add(separator.toString());
+
+        // 格式化数据行
+        if (dataRows.isEmpty()) {
+            StringBuilder emptyRow = new StringBuilder();
+            emptyRow.append("| ");
+            int totalWidth = columnWidths.stream().mapToInt(w -> w + 3).sum() - 1;
+            emptyRow.append(String.format("%-" + (totalWidth - 2) + "s", "(无数据)"));
+            emptyRow.append(" |");
+            resultRows.add(emptyRow.toString());
+        } else {
+            for (List<String> rowData : dataRows) {
+                StringBuilder row = new StringBuilder();
+                row.append("| ");
+                for (int i = 0; i < columnCount; i++) {
+                    String value = rowData.get(i);
+                    int width = columnWidths.get(i);
+                    row.append(String.format("%-" + width + "s", value)).append(" | ");
+                }
+                resultRows.add(row.toString());
+            }
+        }
+
+        return resultRows;
+    }
 }
@@ -29,6 +29,11 @@ public class EmailTools implements Tool {
         return ToolType.OPTIONAL;
     }
 
+    @Override
+    public boolean hasSideEffects() {
+        return true;
+    }
+
     /**
      * 发送邮件（异步执行）
      *
@@ -33,6 +33,11 @@ public class FileSystemTools implements Tool {
         return ToolType.OPTIONAL;
     }
 
+    @Override
+    public boolean hasSideEffects() {
+        return true;
+    }
+
     /**
      * 读取文件内容
      *
@@ -6,4 +6,14 @@ public interface Tool {
     String getDescription();
 
     ToolType getType();
+
+    // 是否会改变外部状态（发送邮件、写文件等）, 有副作用工具的 Agent 不能使用语义缓存
+    default boolean hasSideEffects() {
+        return false;
+    }
+
+    // 返回结果是否随外部数据实时变化（如查询业务数据库）, 这类工具的 Agent 同样不能使用语义缓存
+    default boolean isTimeSensitive() {
+        return false;
+    }
 }
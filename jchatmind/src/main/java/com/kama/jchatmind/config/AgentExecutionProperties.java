@@ -0,0 +1,49 @@
+package com.kama.jchatmind.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Agent 运行引擎配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "jchatmind.agent.execution")
+public class AgentExecutionProperties {
+
+    public enum Mode {
+        AUTO,     // 运行在 Java 21+ 时使用虚拟线程, 否则使用平台线程池
+        VIRTUAL,  // 强制使用虚拟线程, 当前 JVM 不支持时启动失败
+        PLATFORM  // 使用固定大小的平台线程池
+    }
+
+    private Mode mode = Mode.AUTO;
+
+    // 平台线程池配置, 仅在平台线程模式下生效
+    private int corePoolSize = 16;
+
+    private int maxPoolSize = 64;
+
+    private int queueCapacity = 1000;
+
+    // 整个节点同时运行的 Agent 数量上限
+    private int maxConcurrentRuns = 2000;
+
+    // 未单独配置的模型允许同时运行的 Agent 数量
+    private int defaultModelConcurrency = 200;
+
+    // 按模型名称单独配置的并发上限, 例如 deepseek-chat: 500
+    private Map<String, Integer> modelConcurrency = new HashMap<>();
+
+    // 等待并发许可的最长时间, 超时后拒绝本次运行并通知前端
+    private Duration acquireTimeout = Duration.ofSeconds(30);
+
+    public int getModelConcurrency(String model) {
+        return modelConcurrency.getOrDefault(model, defaultModelConcurrency);
+    }
+}
@@ -0,0 +1,24 @@
+package com.kama.jchatmind.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Agent 上下文记忆配置
+ * 在 Agent 自身的消息条数限制（messageLength）之外, 再按 token 预算裁剪发送给模型的上下文
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "jchatmind.agent.memory")
+public class AgentMemoryProperties {
+
+    // 发送给模型的聊天记录（含系统提示词）的 token 预算, 超出时从最早的消息开始丢弃
+    private int maxPromptTokens = 24000;
+
+    // 单个工具返回结果的 token 上限, 超出时保留开头和结尾, 中间截断
+    private int maxToolResponseTokens = 4000;
+
+    // 截断时保留开头部分的比例
+    private double truncateHeadRatio = 0.7;
+}
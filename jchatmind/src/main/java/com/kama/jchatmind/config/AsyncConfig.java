@@ -6,6 +6,7 @@ import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableAsync
@@ -21,4 +22,18 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
+
+    // 并发执行工具调用的线程池, 队列满时拒绝提交, 由 ConcurrentToolExecutor 按超时返回错误,
+    // 不在 Agent 线程上直接执行, 避免绕过超时控制
+    @Bean
+    public ThreadPoolTaskExecutor toolTaskExecutor(ToolExecutionProperties properties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getCorePoolSize());
+        executor.setMaxPoolSize(properties.getMaxPoolSize());
+        executor.setQueueCapacity(properties.getQueueCapacity());
+        executor.setThreadNamePrefix("tool-call-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
 }
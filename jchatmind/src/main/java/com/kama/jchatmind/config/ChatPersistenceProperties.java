@@ -0,0 +1,31 @@
+package com.kama.jchatmind.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Agent 消息异步持久化配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "jchatmind.agent.persistence")
+public class ChatPersistenceProperties {
+
+    // 一次批量插入最多包含的消息数
+    private int maxBatchSize = 100;
+
+    // 收到第一条消息后最多再等待多久凑批
+    private Duration maxWait = Duration.ofMillis(20);
+
+    // 批量插入失败后的重试次数
+    private int maxAttempts = 3;
+
+    // 重试间隔, 按次数线性增加
+    private Duration retryBackoff = Duration.ofMillis(200);
+
+    // 一次运行结束时等待本次运行的消息全部落库的最长时间
+    private Duration flushTimeout = Duration.ofSeconds(30);
+}
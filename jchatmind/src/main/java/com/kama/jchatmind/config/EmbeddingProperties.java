@@ -0,0 +1,35 @@
+package com.kama.jchatmind.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 本地 Embedding 模型（Ollama）调用配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "jchatmind.embedding")
+public class EmbeddingProperties {
+
+    private String baseUrl = "http://localhost:11434";
+
+    private String model = "bge-m3";
+
+    // 一次批量请求最多包含的文本数量
+    private int maxBatchSize = 32;
+
+    // 收集一批文本的最长等待时间
+    private Duration maxWait = Duration.ofMillis(10);
+
+    // 同时在途的批量请求数量
+    private int maxInFlightBatches = 4;
+
+    // 单次 Embedding 请求的超时时间
+    private Duration requestTimeout = Duration.ofSeconds(60);
+
+    // 调用方等待结果的最长时间, 包含排队和等待在途批次的时间
+    private Duration awaitTimeout = Duration.ofSeconds(90);
+}
@@ -0,0 +1,40 @@
+package com.kama.jchatmind.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 进程内 HNSW 向量索引配置, 仅在 jchatmind.rag.vector-index=hnsw 时生效
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "jchatmind.rag.hnsw")
+public class HnswIndexProperties {
+
+    // 向量维度, bge-m3 为 1024
+    private int dimensions = 1024;
+
+    // 每个节点的邻居数量, 越大召回越高, 内存占用也越大
+    private int m = 16;
+
+    // 构建索引时的候选集大小
+    private int efConstruction = 200;
+
+    // 检索时的候选集大小
+    private int ef = 100;
+
+    // 每个知识库索引的初始容量, 写满后自动翻倍
+    private int initialCapacity = 10000;
+
+    // 启动时从数据库分页加载向量的每页条数
+    private int loadPageSize = 2000;
+
+    // 检查各知识库 chunk 版本号的间隔, 其他节点写入或删除 chunk 后, 本节点在一个间隔内与数据库对账
+    private Duration syncInterval = Duration.ofSeconds(5);
+
+    // 索引快照目录, 为空时不保存快照
+    private String snapshotDir = "./data/hnsw";
+}
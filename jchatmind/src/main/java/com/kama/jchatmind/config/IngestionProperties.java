@@ -0,0 +1,56 @@
+package com.kama.jchatmind.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 文档入库流水线配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "jchatmind.ingestion")
+public class IngestionProperties {
+
+    // 同时处理的文档数量
+    private int workerThreads = 4;
+
+    // 各阶段的并发上限
+    private int parseConcurrency = 2;
+    private int embedConcurrency = 2;
+    private int writeConcurrency = 2;
+
+    // 每次提交给 Embedding 模型的 chunk 数量, 每完成一批推送一次进度
+    private int embedBatchSize = 64;
+
+    // 多行 INSERT 每批包含的 chunk 数量
+    private int writeBatchSize = 200;
+
+    // 单个阶段的最大尝试次数
+    private int maxAttempts = 3;
+
+    // 重试间隔, 按尝试次数线性增长
+    private Duration retryBackoff = Duration.ofSeconds(2);
+
+    // 任务租约时长, 执行期间每 1/3 租约续租一次; 同时也是扫描过期任务的间隔
+    private Duration leaseDuration = Duration.ofSeconds(60);
+
+    private Chunking chunking = new Chunking();
+
+    /**
+     * Markdown 切分配置, token 数按 TokenEstimator 估算
+     */
+    @Data
+    public static class Chunking {
+        // 每个 chunk 的目标大小, 超过时按段落、句子拆分; 表格和代码块即使超过也不拆分
+        private int targetTokens = 512;
+
+        // 同一章节拆分出的相邻 chunk 之间重叠的大小
+        private int overlapTokens = 64;
+
+        // 小于该大小的 chunk 与后面同一父标题下的章节合并
+        private int minTokens = 100;
+    }
+}
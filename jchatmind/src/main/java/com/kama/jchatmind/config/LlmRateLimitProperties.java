@@ -0,0 +1,43 @@
+package com.kama.jchatmind.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 模型调用限流配置: 按模型限制每分钟请求数、每分钟 token 数和同时进行的请求数
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "jchatmind.llm.rate-limit")
+public class LlmRateLimitProperties {
+
+    // 请求在本地排队的最长时间, 超时后尝试备用模型
+    private Duration maxQueueTime = Duration.ofSeconds(60);
+
+    // 预估 token 数时为模型输出预留的 token 数, 请求结束后按实际用量修正
+    private int expectedCompletionTokens = 1000;
+
+    // 按模型名称配置配额, 没有配置的模型不限流
+    private Map<String, Quota> providers = new HashMap<>();
+
+    @Data
+    public static class Quota {
+        // 每分钟请求数, 0 表示不限制
+        private int requestsPerMinute = 0;
+
+        // 每分钟 token 数（输入 + 输出）, 0 表示不限制
+        private int tokensPerMinute = 0;
+
+        // 同时进行的请求数, 0 表示不限制
+        private int maxInFlight = 0;
+    }
+
+    public Quota getQuota(String model) {
+        return providers.getOrDefault(model, new Quota());
+    }
+}
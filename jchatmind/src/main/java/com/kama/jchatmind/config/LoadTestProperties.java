@@ -0,0 +1,57 @@
+package com.kama.jchatmind.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 压测模式配置, 只在 loadtest profile 下生效
+ * 模型和 Embedding 服务都替换为本地桩, 不消耗真实的模型配额
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "jchatmind.load-test")
+public class LoadTestProperties {
+
+    private Chat chat = new Chat();
+
+    private Embedding embedding = new Embedding();
+
+    @Data
+    public static class Chat {
+        // 首个 token 返回前的延迟
+        private Duration firstTokenLatency = Duration.ofMillis(300);
+
+        // 在延迟上叠加 [0, latencyJitter) 的随机抖动
+        private Duration latencyJitter = Duration.ZERO;
+
+        // 每秒生成的 token 数
+        private int tokensPerSecond = 50;
+
+        // 最终回答的 token 数
+        private int responseTokens = 200;
+
+        // 每轮对话按顺序执行的工具调用, 每一项占用一个 Agent 步骤, Agent 没有该工具时跳过
+        private List<ScriptedToolCall> toolCalls = new ArrayList<>();
+    }
+
+    @Data
+    public static class ScriptedToolCall {
+        private String name;
+
+        // JSON 格式的工具参数
+        private String arguments = "{}";
+    }
+
+    @Data
+    public static class Embedding {
+        // 单次 /api/embed 请求的延迟
+        private Duration latency = Duration.ofMillis(20);
+
+        private int dimensions = 1024;
+    }
+}
@@ -0,0 +1,54 @@
+package com.kama.jchatmind.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 模型路由配置: 故障转移和对冲请求
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "jchatmind.llm.routing")
+public class ModelRoutingProperties {
+
+    // 延迟、错误率 EWMA 的平滑系数, 越大越看重最近的请求
+    private double ewmaAlpha = 0.2;
+
+    // 错误率 EWMA 超过该值时认为模型不健康, 优先使用备用模型
+    private double unhealthyErrorRate = 0.5;
+
+    // 不健康的模型在最后一次失败之后多久内不作为首选
+    private Duration cooldown = Duration.ofSeconds(30);
+
+    // 每个模型保留最近多少次请求的耗时, 用于计算 p95
+    private int latencyWindowSize = 200;
+
+    // 样本数少于该值时不发起对冲请求
+    private int hedgeMinSamples = 20;
+
+    // 对冲请求的最小等待时间
+    private Duration minHedgeDelay = Duration.ofMillis(500);
+
+    // 按模型名称配置路由
+    private Map<String, Route> routes = new HashMap<>();
+
+    @Data
+    public static class Route {
+        // 按顺序尝试的备用模型
+        private List<String> fallbacks = new ArrayList<>();
+
+        // 首选模型超过 p95 耗时仍未返回时, 向备用模型（没有备用模型时向自身）再发一次请求, 取先返回的结果
+        private boolean hedge = false;
+    }
+
+    public Route getRoute(String model) {
+        return routes.getOrDefault(model, new Route());
+    }
+}
@@ -1,22 +1,53 @@
 package com.kama.jchatmind.config;
 
+import com.kama.jchatmind.llm.ModelRouter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.deepseek.DeepSeekChatModel;
 import org.springframework.ai.zhipuai.ZhiPuAiChatModel;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.util.Map;
 
 @Configuration
 public class MultiChatClientConfig {
+    // 所有模型统一注册到路由中, 按配置限流、故障转移和对冲
+    // 压测模式下由 LoadTestConfig 注册桩模型
+    @Bean
+    @Profile("!loadtest")
+    public ModelRouter modelRouter(DeepSeekChatModel deepSeekChatModel,
+                                   ZhiPuAiChatModel zhiPuAiChatModel,
+                                   ModelRoutingProperties properties,
+                                   LlmRateLimitProperties rateLimitProperties,
+                                   ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        return new ModelRouter(
+                Map.of(
+                        "deepseek-chat", deepSeekChatModel,
+                        "glm-4.6", zhiPuAiChatModel
+                ),
+                properties,
+                rateLimitProperties,
+                meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new)
+        );
+    }
+
+    // ChatClient 的 observation 会为每次模型调用创建 span, 挂在 Agent 当前步骤的 span 下面
     // deepseek
     @Bean("deepseek-chat")
-    public ChatClient deepSeekChatClient(DeepSeekChatModel deepSeekChatModel) {
-        return ChatClient.create(deepSeekChatModel);
+    public ChatClient deepSeekChatClient(ModelRouter modelRouter, ObjectProvider<ObservationRegistry> observationRegistry) {
+        return ChatClient.create(modelRouter.chatModel("deepseek-chat"),
+                observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP));
     }
 
     // zhipuai
     @Bean("glm-4.6")
-    public ChatClient zhiPuAiChatClient(ZhiPuAiChatModel zhiPuAiChatModel) {
-        return ChatClient.create(zhiPuAiChatModel);
+    public ChatClient zhiPuAiChatClient(ModelRouter modelRouter, ObjectProvider<ObservationRegistry> observationRegistry) {
+        return ChatClient.create(modelRouter.chatModel("glm-4.6"),
+                observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP));
     }
 }
@@ -0,0 +1,61 @@
+package com.kama.jchatmind.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Agent 语义缓存配置
+ * 相似度阈值、过期时间可以按 Agent ID 单独配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "jchatmind.agent.semantic-cache")
+public class SemanticCacheProperties {
+
+    // 未单独配置的 Agent 是否开启
+    private boolean enabled = false;
+
+    // 余弦相似度达到该值才认为是同一个问题
+    private double similarityThreshold = 0.95;
+
+    // 缓存的回答多久之后过期
+    private Duration ttl = Duration.ofHours(1);
+
+    // 每个 Agent 最多缓存的问答数量, 超出时淘汰最早的
+    private int maxEntriesPerAgent = 1000;
+
+    // 只对会话中的第一个问题使用缓存, 后续问题往往依赖上下文, 不能只按问题本身匹配
+    private boolean firstTurnOnly = true;
+
+    // 按 Agent ID 单独配置, 未配置的字段使用上面的默认值
+    private Map<String, AgentOptions> agents = new HashMap<>();
+
+    @Data
+    public static class AgentOptions {
+        private Boolean enabled;
+        private Double similarityThreshold;
+        private Duration ttl;
+    }
+
+    public boolean isEnabled(String agentId) {
+        AgentOptions options = agents.get(agentId);
+        return options != null && options.getEnabled() != null ? options.getEnabled() : enabled;
+    }
+
+    public double getSimilarityThreshold(String agentId) {
+        AgentOptions options = agents.get(agentId);
+        return options != null && options.getSimilarityThreshold() != null
+                ? options.getSimilarityThreshold()
+                : similarityThreshold;
+    }
+
+    public Duration getTtl(String agentId) {
+        AgentOptions options = agents.get(agentId);
+        return options != null && options.getTtl() != null ? options.getTtl() : ttl;
+    }
+}
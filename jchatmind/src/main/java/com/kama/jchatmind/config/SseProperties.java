@@ -0,0 +1,73 @@
+package com.kama.jchatmind.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * SSE 连接配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "jchatmind.sse")
+public class SseProperties {
+
+    // 单个 SseEmitter 的超时时间
+    private Duration emitterTimeout = Duration.ofMinutes(30);
+
+    // 每个会话保留的最近事件数量, 用于断线重连时按 Last-Event-ID 补发
+    private int replayBufferSize = 256;
+
+    // 没有订阅者的会话在空闲多久之后被清理
+    private Duration sessionIdleTtl = Duration.ofMinutes(30);
+
+    // 每个订阅者待发送队列的容量
+    private int clientQueueCapacity = 1024;
+
+    // 负责写 socket 的线程数量
+    private int writerThreads = 8;
+
+    // 订阅者队列写满时的处理策略
+    private OverflowPolicy overflowPolicy = OverflowPolicy.COALESCE;
+
+    // 多节点部署时通过 PostgreSQL LISTEN/NOTIFY 转发事件
+    private Cluster cluster = new Cluster();
+
+    @Data
+    public static class Cluster {
+        // 是否开启跨节点推送, 单节点部署不需要
+        private boolean enabled = false;
+
+        // NOTIFY 使用的频道名称, 只能包含小写字母、数字和下划线
+        private String channel = "jchatmind_sse";
+
+        // NOTIFY 负载的上限（PostgreSQL 默认 8000 字节）, 超过时先写入 sse_spill 表, 只通知行 ID
+        private int inlineMaxBytes = 7500;
+
+        // 待转发事件队列的容量, 写满时只推送给本节点的订阅者
+        private int outboxCapacity = 10000;
+
+        // 每次 NOTIFY 最多合并的事件数
+        private int publishBatchSize = 100;
+
+        // 监听连接等待通知的超时时间
+        private Duration listenPollInterval = Duration.ofMillis(500);
+
+        // 监听连接断开后的重连间隔
+        private Duration reconnectBackoff = Duration.ofSeconds(2);
+
+        // sse_spill 表中的数据保留多久
+        private Duration spillRetention = Duration.ofMinutes(10);
+    }
+
+    public enum OverflowPolicy {
+        // 丢弃队列中最旧的事件
+        DROP_OLDEST,
+        // 用新事件替换队列中可合并的同类事件（如状态、进度）, 没有可合并的事件时断开连接
+        COALESCE,
+        // 断开连接, 客户端重连后按 Last-Event-ID 补发
+        DISCONNECT,
+    }
+}
@@ -0,0 +1,35 @@
+package com.kama.jchatmind.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 工具调用执行配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "jchatmind.tool")
+public class ToolExecutionProperties {
+
+    // 并发执行工具调用的线程数
+    private int corePoolSize = 4;
+
+    private int maxPoolSize = 16;
+
+    private int queueCapacity = 200;
+
+    // 默认的单个工具调用超时时间
+    private Duration defaultTimeout = Duration.ofSeconds(60);
+
+    // 按工具名称单独配置的超时时间, 例如 databaseQuery: 30s
+    private Map<String, Duration> timeouts = new HashMap<>();
+
+    public Duration getTimeout(String toolName) {
+        return timeouts.getOrDefault(toolName, defaultTimeout);
+    }
+}
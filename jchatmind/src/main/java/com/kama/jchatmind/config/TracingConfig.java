@@ -0,0 +1,31 @@
+package com.kama.jchatmind.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kama.jchatmind.tracing.FileSpanExporter;
+import com.kama.jchatmind.tracing.MybatisTracingInterceptor;
+import io.micrometer.tracing.Tracer;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+@Configuration
+public class TracingConfig {
+
+    // 和 OTLP exporter 同时生效, 由 Spring Boot 统一加入 BatchSpanProcessor
+    @Bean
+    @ConditionalOnProperty(name = "jchatmind.tracing.file.enabled", havingValue = "true")
+    public SpanExporter fileSpanExporter(TracingProperties properties, ObjectMapper objectMapper) throws IOException {
+        return new FileSpanExporter(Paths.get(properties.getFile().getPath()), objectMapper);
+    }
+
+    // MyBatis 自动配置会注册容器中所有的 Interceptor
+    @Bean
+    public MybatisTracingInterceptor mybatisTracingInterceptor(ObjectProvider<Tracer> tracerProvider) {
+        return new MybatisTracingInterceptor(tracerProvider.getIfAvailable(() -> Tracer.NOOP));
+    }
+}
@@ -0,0 +1,26 @@
+package com.kama.jchatmind.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 链路追踪配置
+ * 采样率和 OTLP 地址使用 Spring Boot 的 management.tracing / management.otlp.tracing 配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "jchatmind.tracing")
+public class TracingProperties {
+
+    private File file = new File();
+
+    @Data
+    public static class File {
+        // 是否把 span 写入本地文件
+        private boolean enabled = false;
+
+        // JSON Lines 文件路径
+        private String path = "./data/traces/spans.jsonl";
+    }
+}
@@ -16,10 +16,14 @@ public class ChatMessageController {
 
     private final ChatMessageFacadeService chatMessageFacadeService;
 
-    // 根据 sessionId 查询聊天消息
+    // 根据 sessionId 分页查询聊天消息, 默认返回最新的一页
     @GetMapping("/chat-messages/session/{sessionId}")
-    public ApiResponse<GetChatMessagesResponse> getChatMessagesBySessionId(@PathVariable String sessionId) {
-        return ApiResponse.success(chatMessageFacadeService.getChatMessagesBySessionId(sessionId));
+    public ApiResponse<GetChatMessagesResponse> getChatMessagesBySessionId(
+            @PathVariable String sessionId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit) {
+        return ApiResponse.success(chatMessageFacadeService.getChatMessagesBySessionId(sessionId, before, after, limit));
     }
 
     // 创建聊天消息
@@ -50,6 +50,13 @@ public class DocumentController {
         return ApiResponse.success();
     }
 
+    // 重新索引入库失败的文档
+    @PostMapping("/documents/{documentId}/reindex")
+    public ApiResponse<Void> reindexDocument(@PathVariable String documentId) {
+        documentFacadeService.reindexDocument(documentId);
+        return ApiResponse.success();
+    }
+
     // 更新文档
     @PatchMapping("/documents/{documentId}")
     public ApiResponse<Void> updateDocument(@PathVariable String documentId, @RequestBody UpdateDocumentRequest request) {
@@ -1,9 +1,11 @@
 package com.kama.jchatmind.controller;
 
+import com.kama.jchatmind.rag.DocumentIngestionPipeline;
 import com.kama.jchatmind.service.SseService;
 import lombok.AllArgsConstructor;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
@@ -15,9 +17,17 @@ public class SseController {
 
     private final SseService sseService;
 
-    // 处理 sse 连接
+    // 处理 sse 连接, 浏览器自动重连时会带上 Last-Event-ID
     @RequestMapping(value = "/connect/{chatSessionId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter connect(@PathVariable String chatSessionId) {
-        return sseService.connect(chatSessionId);
+    public SseEmitter connect(@PathVariable String chatSessionId,
+                              @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return sseService.connect(chatSessionId, lastEventId);
+    }
+
+    // 订阅知识库的文档入库进度
+    @RequestMapping(value = "/knowledge-bases/{kbId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter connectKnowledgeBase(@PathVariable String kbId,
+                                           @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return sseService.connect(DocumentIngestionPipeline.progressChannel(kbId), lastEventId);
     }
 }
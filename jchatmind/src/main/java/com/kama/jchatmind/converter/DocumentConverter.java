@@ -29,6 +29,7 @@ public class DocumentConverter {
                 .metadata(documentDTO.getMetadata() != null 
                         ? objectMapper.writeValueAsString(documentDTO.getMetadata()) 
                         : null)
+                .status(documentDTO.getStatus() != null ? documentDTO.getStatus().name() : null)
                 .createdAt(documentDTO.getCreatedAt())
                 .updatedAt(documentDTO.getUpdatedAt())
                 .build();
@@ -46,6 +47,7 @@ public class DocumentConverter {
                 .metadata(document.getMetadata() != null 
                         ? objectMapper.readValue(document.getMetadata(), DocumentDTO.MetaData.class) 
                         : null)
+                .status(document.getStatus() != null ? DocumentDTO.Status.valueOf(document.getStatus()) : null)
                 .createdAt(document.getCreatedAt())
                 .updatedAt(document.getUpdatedAt())
                 .build();
@@ -58,6 +60,7 @@ public class DocumentConverter {
                 .filename(dto.getFilename())
                 .filetype(dto.getFiletype())
                 .size(dto.getSize())
+                .status(dto.getStatus())
                 .build();
     }
 
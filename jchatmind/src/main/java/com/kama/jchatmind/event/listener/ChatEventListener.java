@@ -1,11 +1,11 @@
 package com.kama.jchatmind.event.listener;
 
+import com.kama.jchatmind.agent.AgentRunExecutor;
 import com.kama.jchatmind.agent.JChatMind;
 import com.kama.jchatmind.agent.JChatMindFactory;
 import com.kama.jchatmind.event.ChatEvent;
 import lombok.AllArgsConstructor;
 import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -13,12 +13,15 @@ import org.springframework.stereotype.Component;
 public class ChatEventListener {
 
     private final JChatMindFactory jChatMindFactory;
+    private final AgentRunExecutor agentRunExecutor;
 
-    @Async
     @EventListener
     public void handle(ChatEvent event) {
-        // 创建一个 Agent 实例处理聊天事件
-        JChatMind jChatMind = jChatMindFactory.create(event.getAgentId(), event.getSessionId());
-        jChatMind.run();
+        // 交给 Agent 运行引擎异步执行, 并按模型做并发控制; 模型在运行线程上解析, 请求线程只负责入队
+        agentRunExecutor.submit(event.getSessionId(), () -> jChatMindFactory.resolveModel(event.getAgentId()), () -> {
+            // 创建一个 Agent 实例处理聊天事件
+            JChatMind jChatMind = jChatMindFactory.create(event.getAgentId(), event.getSessionId());
+            jChatMind.run();
+        });
     }
 }
@@ -0,0 +1,286 @@
+package com.kama.jchatmind.llm;
+
+import com.kama.jchatmind.agent.memory.TokenEstimator;
+import com.kama.jchatmind.config.LlmRateLimitProperties;
+import com.kama.jchatmind.config.ModelRoutingProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模型路由
+ * 持有所有已注册的 ChatModel 及其请求统计, 为每个模型名称创建 {@link RoutingChatModel}。
+ * 模型的错误率 EWMA 过高时先尝试备用模型, 首选模型在冷却时间之后重新作为首选。
+ * 每个模型的请求先经过 {@link ProviderLimiter} 限流, 在本地排队而不是触发服务端的 429
+ */
+@Slf4j
+public class ModelRouter implements DisposableBean {
+
+    /**
+     * 请求的 toolContext 中的 agentId, 用于按 Agent 公平排队
+     */
+    public static final String AGENT_ID_KEY = "agentId";
+
+    private static final String DEFAULT_QUEUE_KEY = "default";
+
+    private final Map<String, ChatModel> models;
+    private final ModelRoutingProperties properties;
+    private final LlmRateLimitProperties rateLimitProperties;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, ProviderStats> stats = new HashMap<>();
+    private final Map<String, ProviderLimiter> limiters = new HashMap<>();
+    private final Map<String, Timer> queueTimers = new HashMap<>();
+
+    // 执行对冲请求
+    private final ExecutorService hedgeExecutor;
+
+    public ModelRouter(Map<String, ChatModel> models,
+                       ModelRoutingProperties properties,
+                       LlmRateLimitProperties rateLimitProperties,
+                       MeterRegistry meterRegistry) {
+        this.models = Map.copyOf(models);
+        this.properties = properties;
+        this.rateLimitProperties = rateLimitProperties;
+        this.meterRegistry = meterRegistry;
+        this.hedgeExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setName("llm-hedge-" + thread.getId());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (String model : this.models.keySet()) {
+            ProviderStats providerStats = new ProviderStats(properties.getEwmaAlpha(), properties.getLatencyWindowSize());
+            stats.put(model, providerStats);
+            Gauge.builder("jchatmind.llm.error.rate", providerStats, ProviderStats::errorRate)
+                    .description("模型请求错误率 EWMA")
+                    .tag("model", model)
+                    .register(meterRegistry);
+            Gauge.builder("jchatmind.llm.latency.ewma", providerStats, s -> s.latencyEwma(false))
+                    .description("模型请求耗时 EWMA（毫秒）, stream 为首个片段的耗时")
+                    .tags("model", model, "mode", "call")
+                    .register(meterRegistry);
+            Gauge.builder("jchatmind.llm.latency.ewma", providerStats, s -> s.latencyEwma(true))
+                    .description("模型请求耗时 EWMA（毫秒）, stream 为首个片段的耗时")
+                    .tags("model", model, "mode", "stream")
+                    .register(meterRegistry);
+
+            ProviderLimiter limiter = new ProviderLimiter(rateLimitProperties.getQuota(model));
+            limiters.put(model, limiter);
+            queueTimers.put(model, Timer.builder("jchatmind.llm.queue.time")
+                    .description("模型请求在本地等待配额的时间")
+                    .tag("model", model)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+            Gauge.builder("jchatmind.llm.queue.size", limiter, ProviderLimiter::waiting)
+                    .description("等待配额的模型请求数")
+                    .tag("model", model)
+                    .register(meterRegistry);
+            Gauge.builder("jchatmind.llm.in.flight", limiter, ProviderLimiter::inFlight)
+                    .description("正在进行的模型请求数")
+                    .tag("model", model)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 以 model 为首选模型的路由 ChatModel
+     */
+    public ChatModel chatModel(String model) {
+        if (!models.containsKey(model)) {
+            throw new IllegalArgumentException("未注册的模型: " + model);
+        }
+        return new RoutingChatModel(model, this);
+    }
+
+    ChatModel model(String model) {
+        return models.get(model);
+    }
+
+    ProviderStats stats(String model) {
+        return stats.get(model);
+    }
+
+    ExecutorService hedgeExecutor() {
+        return hedgeExecutor;
+    }
+
+    /**
+     * 按顺序尝试的模型: 首选模型和已注册的备用模型, 不健康的模型排到最后
+     */
+    List<String> candidates(String model) {
+        List<String> candidates = new ArrayList<>();
+        candidates.add(model);
+        for (String fallback : properties.getRoute(model).getFallbacks()) {
+            if (models.containsKey(fallback) && !candidates.contains(fallback)) {
+                candidates.add(fallback);
+            }
+        }
+        if (candidates.size() > 1) {
+            List<String> healthy = new ArrayList<>();
+            List<String> unhealthy = new ArrayList<>();
+            for (String candidate : candidates) {
+                boolean isHealthy = stats.get(candidate).isHealthy(
+                        properties.getUnhealthyErrorRate(), properties.getCooldown().toMillis());
+                (isHealthy ? healthy : unhealthy).add(candidate);
+            }
+            healthy.addAll(unhealthy);
+            candidates = healthy;
+        }
+        return candidates;
+    }
+
+    boolean isHedgeEnabled(String model) {
+        return properties.getRoute(model).isHedge();
+    }
+
+    /**
+     * 等待首选模型多久之后发起对冲请求
+     *
+     * @return 样本不足时返回 -1, 不发起对冲
+     */
+    long hedgeDelayMillis(String model, boolean streaming) {
+        long p95 = stats.get(model).p95(streaming, properties.getHedgeMinSamples());
+        if (p95 < 0) {
+            return -1;
+        }
+        return Math.max(p95, properties.getMinHedgeDelay().toMillis());
+    }
+
+    /**
+     * 获取一次请求的配额, 同一个 Agent 的请求在同一个分组中排队
+     *
+     * @throws RateLimitedException 排队超过 maxQueueTime
+     */
+    ProviderLimiter.Permit acquire(String model, Prompt prompt) {
+        long start = System.nanoTime();
+        try {
+            return limiters.get(model).acquire(
+                    queueKey(prompt),
+                    estimateTokens(prompt),
+                    rateLimitProperties.getMaxQueueTime().toMillis(),
+                    TimeUnit.MILLISECONDS
+            );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待模型配额被中断", e);
+        } catch (RateLimitedException e) {
+            Counter.builder("jchatmind.llm.rate.limited")
+                    .tag("model", model)
+                    .register(meterRegistry)
+                    .increment();
+            throw e;
+        } finally {
+            queueTimers.get(model).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static String queueKey(Prompt prompt) {
+        if (prompt.getOptions() instanceof ToolCallingChatOptions options
+                && options.getToolContext() != null
+                && options.getToolContext().get(AGENT_ID_KEY) instanceof String agentId) {
+            return agentId;
+        }
+        return DEFAULT_QUEUE_KEY;
+    }
+
+    // 输入按估算的 token 数, 输出按 maxTokens 或配置的预留值
+    private int estimateTokens(Prompt prompt) {
+        int tokens = 0;
+        for (Message message : prompt.getInstructions()) {
+            tokens += TokenEstimator.estimate(message);
+        }
+        ChatOptions options = prompt.getOptions();
+        Integer maxTokens = options != null ? options.getMaxTokens() : null;
+        return tokens + (maxTokens != null ? maxTokens : rateLimitProperties.getExpectedCompletionTokens());
+    }
+
+    /**
+     * 响应中的 token 用量, 没有用量信息时返回 null
+     */
+    static Usage usage(ChatResponse response) {
+        if (response == null || response.getMetadata() == null) {
+            return null;
+        }
+        Usage usage = response.getMetadata().getUsage();
+        if (usage == null || usage.getTotalTokens() == null || usage.getTotalTokens() <= 0) {
+            return null;
+        }
+        return usage;
+    }
+
+    /**
+     * 响应中的实际 token 用量, 没有用量信息时返回 -1
+     */
+    static int usedTokens(Usage usage) {
+        return usage != null ? usage.getTotalTokens() : -1;
+    }
+
+    /**
+     * @param outcome success、error 或 cancelled（对冲请求中被取消的一方）
+     */
+    void recordRequest(String model, boolean streaming, long nanos, String outcome) {
+        Timer.builder("jchatmind.llm.request")
+                .description("模型请求耗时, 不含排队时间; stream 为整个流的耗时")
+                .tags("model", model, "mode", streaming ? "stream" : "call", "outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordUsage(String model, Usage usage) {
+        if (usage == null) {
+            return;
+        }
+        if (usage.getPromptTokens() != null) {
+            tokenCounter(model, "prompt").increment(usage.getPromptTokens());
+        }
+        if (usage.getCompletionTokens() != null) {
+            tokenCounter(model, "completion").increment(usage.getCompletionTokens());
+        }
+    }
+
+    private Counter tokenCounter(String model, String type) {
+        return Counter.builder("jchatmind.llm.tokens")
+                .description("模型返回的 token 用量")
+                .tags("model", model, "type", type)
+                .register(meterRegistry);
+    }
+
+    void recordFailover(String from, String to, Throwable error) {
+        log.warn("模型请求失败, 切换到备用模型: from={}, to={}, error={}", from, to, error.getMessage());
+        Counter.builder("jchatmind.llm.failover")
+                .tags("from", from, "to", to)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    void recordHedge(String model) {
+        log.debug("发起对冲请求: model={}", model);
+        Counter.builder("jchatmind.llm.hedge")
+                .tag("model", model)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    @Override
+    public void destroy() {
+        hedgeExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,221 @@
+package com.kama.jchatmind.llm;
+
+import com.kama.jchatmind.config.LlmRateLimitProperties;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 单个模型的客户端限流
+ * 1. 每分钟请求数和每分钟 token 数各用一个令牌桶, 同时进行的请求数用计数限制
+ * 2. 等待的请求按 key（Agent）分组排队, 各组轮流获得配额, 某个 Agent 的突发请求不会让其他 Agent 一直等待
+ * 3. token 数在请求前按预估值扣除, 请求结束后按实际用量修正
+ */
+public class ProviderLimiter {
+
+    private final TokenBucket requestBucket;
+    private final TokenBucket tokenBucket;
+    private final int maxInFlight;
+    private final boolean unlimited;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // 按 key 分组的等待队列, 顺序即轮转顺序; 只有排在最前面的请求会尝试获取配额
+    private final LinkedHashMap<String, ArrayDeque<Condition>> queues = new LinkedHashMap<>();
+
+    private int inFlight;
+    private int waiting;
+
+    public ProviderLimiter(LlmRateLimitProperties.Quota quota) {
+        this.requestBucket = quota.getRequestsPerMinute() > 0 ? new TokenBucket(quota.getRequestsPerMinute()) : null;
+        this.tokenBucket = quota.getTokensPerMinute() > 0 ? new TokenBucket(quota.getTokensPerMinute()) : null;
+        this.maxInFlight = quota.getMaxInFlight();
+        this.unlimited = requestBucket == null && tokenBucket == null && maxInFlight <= 0;
+    }
+
+    /**
+     * 获取一次请求的配额
+     *
+     * @param key             公平排队的分组, 一般为 agentId
+     * @param estimatedTokens 预估的 token 数
+     * @throws RateLimitedException 超过 timeout 仍未获得配额
+     */
+    public Permit acquire(String key, int estimatedTokens, long timeout, TimeUnit unit) throws InterruptedException {
+        if (unlimited) {
+            return new Permit(0);
+        }
+        int tokens = tokenBucket == null ? 0 : (int) Math.min(estimatedTokens, tokenBucket.capacity);
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        lock.lock();
+        try {
+            Condition condition = lock.newCondition();
+            queues.computeIfAbsent(key, k -> new ArrayDeque<>()).addLast(condition);
+            waiting++;
+            boolean acquired = false;
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    long waitNanos = Long.MAX_VALUE;
+                    if (head() == condition) {
+                        waitNanos = tryAcquire(tokens, now);
+                        if (waitNanos == 0) {
+                            acquired = true;
+                            return new Permit(tokens);
+                        }
+                    }
+                    long remaining = deadline - now;
+                    if (remaining <= 0) {
+                        throw new RateLimitedException("等待模型配额超时: " + unit.toMillis(timeout) + "ms");
+                    }
+                    condition.awaitNanos(Math.min(waitNanos, remaining));
+                }
+            } finally {
+                dequeue(key, condition, acquired);
+                waiting--;
+                signalHead();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int waiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 0 表示获取成功, 否则为需要等待的纳秒数; 受并发数限制时返回 Long.MAX_VALUE, 等待其他请求结束
+     */
+    private long tryAcquire(int tokens, long now) {
+        if (maxInFlight > 0 && inFlight >= maxInFlight) {
+            return Long.MAX_VALUE;
+        }
+        long waitNanos = 0;
+        if (requestBucket != null) {
+            waitNanos = Math.max(waitNanos, requestBucket.waitNanos(1, now));
+        }
+        if (tokenBucket != null) {
+            waitNanos = Math.max(waitNanos, tokenBucket.waitNanos(tokens, now));
+        }
+        if (waitNanos > 0) {
+            return waitNanos;
+        }
+        if (requestBucket != null) {
+            requestBucket.consume(1);
+        }
+        if (tokenBucket != null) {
+            tokenBucket.consume(tokens);
+        }
+        inFlight++;
+        return 0;
+    }
+
+    private Condition head() {
+        Iterator<ArrayDeque<Condition>> iterator = queues.values().iterator();
+        return iterator.hasNext() ? iterator.next().peekFirst() : null;
+    }
+
+    // 获得配额的分组移到队尾, 下一次轮到其他分组
+    private void dequeue(String key, Condition condition, boolean acquired) {
+        ArrayDeque<Condition> queue = queues.get(key);
+        queue.remove(condition);
+        if (queue.isEmpty()) {
+            queues.remove(key);
+        } else if (acquired) {
+            queues.remove(key);
+            queues.put(key, queue);
+        }
+    }
+
+    private void signalHead() {
+        Condition head = head();
+        if (head != null) {
+            head.signal();
+        }
+    }
+
+    private void release(int estimatedTokens, int actualTokens) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (tokenBucket != null && actualTokens >= 0) {
+                tokenBucket.consume(actualTokens - estimatedTokens);
+            }
+            signalHead();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 一次请求占用的配额, 请求结束后必须释放
+     */
+    public class Permit {
+        private final int estimatedTokens;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(int estimatedTokens) {
+            this.estimatedTokens = estimatedTokens;
+        }
+
+        /**
+         * @param actualTokens 实际使用的 token 数, 未知时传 -1; 多次调用只有第一次生效
+         */
+        public void release(int actualTokens) {
+            if (unlimited || !released.compareAndSet(false, true)) {
+                return;
+            }
+            ProviderLimiter.this.release(estimatedTokens, actualTokens);
+        }
+    }
+
+    /**
+     * 令牌桶, 容量为每分钟的配额, 匀速补充; 实际用量超过预估时允许欠账
+     */
+    private static class TokenBucket {
+        private final double capacity;
+        private final double refillPerNano;
+        private double available;
+        private long lastRefill;
+
+        TokenBucket(int perMinute) {
+            this.capacity = perMinute;
+            this.refillPerNano = perMinute / (double) TimeUnit.MINUTES.toNanos(1);
+            this.available = perMinute;
+            this.lastRefill = System.nanoTime();
+        }
+
+        long waitNanos(int amount, long now) {
+            available = Math.min(capacity, available + (now - lastRefill) * refillPerNano);
+            lastRefill = now;
+            if (available >= amount) {
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((amount - available) / refillPerNano));
+        }
+
+        void consume(int amount) {
+            available = Math.min(capacity, available - amount);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.kama.jchatmind.llm;
+
+import java.util.Arrays;
+
+/**
+ * 单个模型的请求统计
+ * 延迟和错误率使用 EWMA, 同时保留最近若干次请求的耗时用于计算 p95。
+ * 非流式调用记录完整耗时, 流式调用记录首个片段的耗时, 两者分开统计
+ */
+public class ProviderStats {
+
+    private final double alpha;
+
+    private final LatencyWindow callLatency;
+    private final LatencyWindow firstTokenLatency;
+
+    private double errorRate;
+    private long lastFailureAt;
+
+    public ProviderStats(double alpha, int windowSize) {
+        this.alpha = alpha;
+        this.callLatency = new LatencyWindow(windowSize);
+        this.firstTokenLatency = new LatencyWindow(windowSize);
+    }
+
+    public synchronized void recordSuccess(long latencyMillis, boolean streaming) {
+        (streaming ? firstTokenLatency : callLatency).record(latencyMillis, alpha);
+        errorRate = (1 - alpha) * errorRate;
+    }
+
+    public synchronized void recordFailure() {
+        errorRate = (1 - alpha) * errorRate + alpha;
+        lastFailureAt = System.currentTimeMillis();
+    }
+
+    public synchronized boolean isHealthy(double unhealthyErrorRate, long cooldownMillis) {
+        return errorRate < unhealthyErrorRate || System.currentTimeMillis() - lastFailureAt > cooldownMillis;
+    }
+
+    public synchronized double errorRate() {
+        return errorRate;
+    }
+
+    public synchronized double latencyEwma(boolean streaming) {
+        return (streaming ? firstTokenLatency : callLatency).ewma;
+    }
+
+    /**
+     * @return 样本不足时返回 -1
+     */
+    public synchronized long p95(boolean streaming, int minSamples) {
+        return (streaming ? firstTokenLatency : callLatency).percentile(0.95, minSamples);
+    }
+
+    private static class LatencyWindow {
+        private final long[] samples;
+        private int count;
+        private int next;
+        private double ewma;
+
+        LatencyWindow(int size) {
+            this.samples = new long[size];
+        }
+
+        void record(long latencyMillis, double alpha) {
+            ewma = count == 0 ? latencyMillis : (1 - alpha) * ewma + alpha * latencyMillis;
+            samples[next] = latencyMillis;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        long percentile(double percentile, int minSamples) {
+            if (count < minSamples || count == 0) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return sorted[Math.min(count - 1, (int) Math.ceil(percentile * count) - 1)];
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.kama.jchatmind.llm;
+
+/**
+ * 模型请求在本地排队超时
+ */
+public class RateLimitedException extends RuntimeException {
+    public RateLimitedException(String message) {
+        super(message);
+    }
+}
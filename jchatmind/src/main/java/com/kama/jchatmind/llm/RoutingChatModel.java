@@ -0,0 +1,225 @@
+package com.kama.jchatmind.llm;
+
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.DefaultToolCallingChatOptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 带故障转移和对冲请求的 ChatModel
+ * 1. 首选模型失败时按顺序尝试备用模型; 流式调用只在还没有输出任何片段时切换
+ * 2. 开启对冲时, 首选模型超过 p95 耗时（流式调用为首个片段的 p95 耗时）仍未返回,
+ * 向下一个模型再发一次相同的请求, 取先返回的结果
+ * 3. 每次请求先获取模型的配额, 排队超时（{@link RateLimitedException}）同样切换到备用模型
+ */
+public class RoutingChatModel implements ChatModel {
+
+    private final String name;
+    private final ModelRouter router;
+
+    RoutingChatModel(String name, ModelRouter router) {
+        this.name = name;
+        this.router = router;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        List<String> candidates = router.candidates(name);
+        RuntimeException lastError = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            String model = candidates.get(i);
+            try {
+                if (i == 0 && router.isHedgeEnabled(name)) {
+                    return callHedged(model, hedgeTarget(candidates), prompt);
+                }
+                return callTracked(model, prompt);
+            } catch (RuntimeException e) {
+                lastError = e;
+                if (i + 1 < candidates.size()) {
+                    router.recordFailover(model, candidates.get(i + 1), e);
+                }
+            }
+        }
+        throw lastError;
+    }
+
+    // 排队等待配额的时间不计入模型的耗时, 排队超时也不算模型的失败
+    private ChatResponse callTracked(String model, Prompt prompt) {
+        ProviderLimiter.Permit permit = router.acquire(model, prompt);
+        ProviderStats stats = router.stats(model);
+        long start = System.nanoTime();
+        try {
+            ChatResponse response = router.model(model).call(promptFor(model, prompt));
+            long elapsed = System.nanoTime() - start;
+            stats.recordSuccess(TimeUnit.NANOSECONDS.toMillis(elapsed), false);
+            router.recordRequest(model, false, elapsed, "success");
+            Usage usage = ModelRouter.usage(response);
+            router.recordUsage(model, usage);
+            permit.release(ModelRouter.usedTokens(usage));
+            return response;
+        } catch (RuntimeException e) {
+            stats.recordFailure();
+            router.recordRequest(model, false, System.nanoTime() - start, "error");
+            throw e;
+        } finally {
+            permit.release(-1);
+        }
+    }
+
+    private ChatResponse callHedged(String model, String hedgeModel, Prompt prompt) {
+        long delay = router.hedgeDelayMillis(model, false);
+        if (delay < 0) {
+            return callTracked(model, prompt);
+        }
+        ExecutorService executor = router.hedgeExecutor();
+        CompletableFuture<ChatResponse> primary = CompletableFuture.supplyAsync(() -> callTracked(model, prompt), executor);
+        try {
+            return primary.get(delay, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 首选模型超过 p95 仍未返回, 发起对冲请求
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            primary.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待模型响应被中断", e);
+        }
+
+        router.recordHedge(hedgeModel);
+        CompletableFuture<ChatResponse> hedge = CompletableFuture.supplyAsync(() -> callTracked(hedgeModel, prompt), executor);
+        try {
+            return firstSuccessful(primary, hedge).get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待模型响应被中断", e);
+        } finally {
+            primary.cancel(true);
+            hedge.cancel(true);
+        }
+    }
+
+    // 任意一个成功即完成, 全部失败时以最后一个错误结束
+    private static <T> CompletableFuture<T> firstSuccessful(CompletableFuture<T> first, CompletableFuture<T> second) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (CompletableFuture<T> future : List.of(first, second)) {
+            future.whenComplete((value, error) -> {
+                if (error == null) {
+                    result.complete(value);
+                } else if (failures.incrementAndGet() == 2) {
+                    result.completeExceptionally(error);
+                }
+            });
+        }
+        return result;
+    }
+
+    private static RuntimeException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null
+                ? e.getCause().getCause()
+                : e.getCause();
+        return cause instanceof RuntimeException runtimeException
+                ? runtimeException
+                : new IllegalStateException(cause);
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return Flux.defer(() -> streamFrom(router.candidates(name), 0, prompt));
+    }
+
+    private Flux<ChatResponse> streamFrom(List<String> candidates, int index, Prompt prompt) {
+        String model = candidates.get(index);
+        Flux<ChatResponse> flux = streamTracked(model, prompt);
+        if (index == 0 && router.isHedgeEnabled(name)) {
+            long delay = router.hedgeDelayMillis(model, true);
+            if (delay >= 0) {
+                String hedgeModel = hedgeTarget(candidates);
+                // 首选模型在 delay 内输出了第一个片段时, 对冲请求还没有发出就会被取消
+                Flux<ChatResponse> hedged = Mono.delay(Duration.ofMillis(delay))
+                        .doOnNext(tick -> router.recordHedge(hedgeModel))
+                        .thenMany(streamTracked(hedgeModel, prompt));
+                flux = Flux.firstWithValue(flux, hedged);
+            }
+        }
+        AtomicBoolean emitted = new AtomicBoolean();
+        return flux
+                .doOnNext(response -> emitted.set(true))
+                .onErrorResume(error -> {
+                    // 已经向前端输出了部分内容, 不能再切换模型
+                    if (emitted.get() || index + 1 >= candidates.size()) {
+                        return Flux.error(error);
+                    }
+                    router.recordFailover(model, candidates.get(index + 1), error);
+                    return streamFrom(candidates, index + 1, prompt);
+                });
+    }
+
+    // 获取配额可能阻塞, 放到 boundedElastic 线程中, 避免阻塞对冲请求所在的定时线程
+    private Flux<ChatResponse> streamTracked(String model, Prompt prompt) {
+        return Mono.fromCallable(() -> router.acquire(model, prompt))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(permit -> {
+                    ProviderStats stats = router.stats(model);
+                    long start = System.nanoTime();
+                    AtomicBoolean first = new AtomicBoolean(true);
+                    AtomicReference<Usage> usage = new AtomicReference<>();
+                    Runnable recordFirst = () -> {
+                        if (first.compareAndSet(true, false)) {
+                            stats.recordSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), true);
+                        }
+                    };
+                    return router.model(model).stream(promptFor(model, prompt))
+                            .doOnNext(response -> {
+                                recordFirst.run();
+                                // 用量一般在最后一个片段中
+                                Usage chunkUsage = ModelRouter.usage(response);
+                                if (chunkUsage != null) {
+                                    usage.set(chunkUsage);
+                                }
+                            })
+                            .doOnComplete(recordFirst)
+                            .doOnError(error -> stats.recordFailure())
+                            .doFinally(signal -> {
+                                String outcome = switch (signal) {
+                                    case ON_COMPLETE -> "success";
+                                    case ON_ERROR -> "error";
+                                    default -> "cancelled";
+                                };
+                                router.recordRequest(model, true, System.nanoTime() - start, outcome);
+                                router.recordUsage(model, usage.get());
+                                permit.release(ModelRouter.usedTokens(usage.get()));
+                            });
+                });
+    }
+
+    private static String hedgeTarget(List<String> candidates) {
+        return candidates.size() > 1 ? candidates.get(1) : candidates.get(0);
+    }
+
+    // 请求转给其他模型时去掉指定的模型名称, 使用目标模型自己的默认模型
+    private Prompt promptFor(String model, Prompt prompt) {
+        ChatOptions options = prompt.getOptions();
+        if (model.equals(name) || !(options instanceof DefaultToolCallingChatOptions toolCallingOptions)
+                || toolCallingOptions.getModel() == null) {
+            return prompt;
+        }
+        DefaultToolCallingChatOptions copy = toolCallingOptions.copy();
+        copy.setModel(null);
+        return new Prompt(prompt.getInstructions(), copy);
+    }
+}
@@ -0,0 +1,39 @@
+package com.kama.jchatmind.loadtest;
+
+import com.kama.jchatmind.config.LlmRateLimitProperties;
+import com.kama.jchatmind.config.LoadTestProperties;
+import com.kama.jchatmind.config.ModelRoutingProperties;
+import com.kama.jchatmind.llm.ModelRouter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.util.Map;
+
+/**
+ * 压测模式: 所有模型替换为 {@link StubChatModel}, 路由、限流和指标仍然走正常的 ModelRouter
+ * 启动: java -jar jchatmind.jar --spring.profiles.active=loadtest
+ */
+@Configuration
+@Profile("loadtest")
+public class LoadTestConfig {
+
+    @Bean
+    public ModelRouter modelRouter(LoadTestProperties loadTestProperties,
+                                   ModelRoutingProperties properties,
+                                   LlmRateLimitProperties rateLimitProperties,
+                                   ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        return new ModelRouter(
+                Map.of(
+                        "deepseek-chat", new StubChatModel("deepseek-chat", loadTestProperties.getChat()),
+                        "glm-4.6", new StubChatModel("glm-4.6", loadTestProperties.getChat())
+                ),
+                properties,
+                rateLimitProperties,
+                meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new)
+        );
+    }
+}
@@ -0,0 +1,147 @@
+package com.kama.jchatmind.loadtest;
+
+import com.kama.jchatmind.agent.memory.TokenEstimator;
+import com.kama.jchatmind.config.LoadTestProperties;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.tool.ToolCallback;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 压测用的桩模型, 按配置的延迟和 token 速率生成回答, 不访问外部服务
+ * 每轮对话（最后一条 UserMessage 之后）先按顺序执行脚本中的工具调用, 脚本执行完后返回最终回答
+ */
+public class StubChatModel implements ChatModel {
+
+    private static final String ANSWER = "这是压测桩模型生成的回答，内容只用于测量吞吐和延迟。";
+
+    private final String model;
+    private final LoadTestProperties.Chat properties;
+
+    public StubChatModel(String model, LoadTestProperties.Chat properties) {
+        this.model = model;
+        this.properties = properties;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        AssistantMessage.ToolCall toolCall = nextToolCall(prompt);
+        int completionTokens = toolCall != null ? TokenEstimator.estimate(toolCall.arguments()) : properties.getResponseTokens();
+        try {
+            Thread.sleep(firstTokenLatency().plus(generationTime(completionTokens)).toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("桩模型调用被中断", e);
+        }
+        AssistantMessage output = toolCall != null
+                ? AssistantMessage.builder().content("").toolCalls(List.of(toolCall)).build()
+                : new AssistantMessage(answer(properties.getResponseTokens()));
+        return response(output, usage(prompt, completionTokens));
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        AssistantMessage.ToolCall toolCall = nextToolCall(prompt);
+        if (toolCall != null) {
+            AssistantMessage output = AssistantMessage.builder().content("").toolCalls(List.of(toolCall)).build();
+            return Mono.delay(firstTokenLatency())
+                    .map(tick -> response(output, usage(prompt, TokenEstimator.estimate(toolCall.arguments()))))
+                    .flux();
+        }
+        int tokens = Math.max(1, properties.getResponseTokens());
+        Usage usage = usage(prompt, tokens);
+        // 首个 token 在 firstTokenLatency 之后立即返回, 之后按 token 速率逐个返回
+        return Flux.range(0, tokens)
+                .delayUntil(index -> index == 0 ? Mono.empty() : Mono.delay(generationTime(1)))
+                .map(index -> response(new AssistantMessage(token(index)), index == tokens - 1 ? usage : null))
+                .delaySubscription(firstTokenLatency());
+    }
+
+    // 本轮已经执行过的工具调用步数 = 最后一条 UserMessage 之后的 AssistantMessage 数量
+    private AssistantMessage.ToolCall nextToolCall(Prompt prompt) {
+        List<Message> messages = prompt.getInstructions();
+        int steps = 0;
+        for (int i = messages.size() - 1; i >= 0 && !(messages.get(i) instanceof UserMessage); i--) {
+            if (messages.get(i) instanceof AssistantMessage) {
+                steps++;
+            }
+        }
+        Set<String> availableTools = new HashSet<>();
+        if (prompt.getOptions() instanceof ToolCallingChatOptions options) {
+            for (ToolCallback callback : options.getToolCallbacks()) {
+                availableTools.add(callback.getToolDefinition().name());
+            }
+            availableTools.addAll(options.getToolNames());
+        }
+        List<LoadTestProperties.ScriptedToolCall> script = properties.getToolCalls()
+                .stream()
+                .filter(call -> availableTools.contains(call.getName()))
+                .toList();
+        if (steps >= script.size()) {
+            return null;
+        }
+        LoadTestProperties.ScriptedToolCall call = script.get(steps);
+        return new AssistantMessage.ToolCall("call_" + UUID.randomUUID(), "function", call.getName(), call.getArguments());
+    }
+
+    private Duration firstTokenLatency() {
+        long jitter = properties.getLatencyJitter().toNanos();
+        return properties.getFirstTokenLatency()
+                .plusNanos(jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter) : 0);
+    }
+
+    private Duration generationTime(int tokens) {
+        if (properties.getTokensPerSecond() <= 0) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(tokens * 1_000_000_000L / properties.getTokensPerSecond());
+    }
+
+    private static String token(int index) {
+        return String.valueOf(ANSWER.charAt(index % ANSWER.length()));
+    }
+
+    private static String answer(int tokens) {
+        StringBuilder answer = new StringBuilder(tokens);
+        for (int i = 0; i < tokens; i++) {
+            answer.append(token(i));
+        }
+        return answer.toString();
+    }
+
+    private Usage usage(Prompt prompt, int completionTokens) {
+        int promptTokens = 0;
+        for (Message message : prompt.getInstructions()) {
+            promptTokens += TokenEstimator.estimate(message);
+        }
+        return new DefaultUsage(promptTokens, completionTokens);
+    }
+
+    private ChatResponse response(AssistantMessage output, Usage usage) {
+        ChatResponseMetadata.Builder metadata = ChatResponseMetadata.builder().model(model);
+        if (usage != null) {
+            metadata.usage(usage);
+        }
+        return ChatResponse.builder()
+                .generations(List.of(new Generation(output)))
+                .metadata(metadata.build())
+                .build();
+    }
+}
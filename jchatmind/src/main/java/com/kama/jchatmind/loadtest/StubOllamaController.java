@@ -0,0 +1,73 @@
+package com.kama.jchatmind.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.kama.jchatmind.config.LoadTestProperties;
+import lombok.AllArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * 压测用的 Ollama Embedding 桩服务, 和应用运行在同一个进程中
+ * 相同的文本总是返回相同的归一化向量, 检索和语义缓存的行为是稳定的
+ */
+@RestController
+@Profile("loadtest")
+@RequestMapping("/stub/ollama")
+@AllArgsConstructor
+public class StubOllamaController {
+
+    private final LoadTestProperties properties;
+
+    // 批量接口, EmbeddingBatcher 使用
+    @PostMapping("/api/embed")
+    public Mono<Map<String, Object>> embed(@RequestBody JsonNode request) {
+        List<float[]> embeddings = new ArrayList<>();
+        JsonNode input = request.path("input");
+        if (input.isArray()) {
+            input.forEach(text -> embeddings.add(embedding(text.asText())));
+        } else {
+            embeddings.add(embedding(input.asText()));
+        }
+        return delayed(Map.of(
+                "model", request.path("model").asText(),
+                "embeddings", embeddings
+        ));
+    }
+
+    // 旧版单条接口
+    @PostMapping("/api/embeddings")
+    public Mono<Map<String, Object>> embeddings(@RequestBody JsonNode request) {
+        return delayed(Map.of("embedding", embedding(request.path("prompt").asText())));
+    }
+
+    // 延迟在响应式调度器上完成, 不占用 Servlet 线程
+    private Mono<Map<String, Object>> delayed(Map<String, Object> response) {
+        return Mono.delay(properties.getEmbedding().getLatency()).thenReturn(response);
+    }
+
+    private float[] embedding(String text) {
+        SplittableRandom random = new SplittableRandom(Arrays.hashCode(text.getBytes(StandardCharsets.UTF_8)));
+        float[] vector = new float[properties.getEmbedding().getDimensions()];
+        double norm = 0;
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = (float) (random.nextDouble() * 2 - 1);
+            norm += vector[i] * vector[i];
+        }
+        norm = Math.sqrt(norm);
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = (float) (vector[i] / norm);
+        }
+        return vector;
+    }
+}
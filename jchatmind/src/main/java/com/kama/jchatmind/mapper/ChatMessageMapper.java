@@ -2,7 +2,9 @@ package com.kama.jchatmind.mapper;
 
 import com.kama.jchatmind.model.entity.ChatMessage;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -15,12 +17,24 @@ import java.util.List;
 public interface ChatMessageMapper {
     int insert(ChatMessage chatMessage);
 
+    int insertBatch(@Param("messages") List<ChatMessage> messages);
+
     ChatMessage selectById(String id);
 
     List<ChatMessage> selectBySessionId(String sessionId);
 
     List<ChatMessage> selectBySessionIdRecently(String sessionId, int limit);
 
+    List<ChatMessage> selectBySessionIdBefore(@Param("sessionId") String sessionId,
+                                              @Param("createdAt") LocalDateTime createdAt,
+                                              @Param("id") String id,
+                                              @Param("limit") int limit);
+
+    List<ChatMessage> selectBySessionIdAfter(@Param("sessionId") String sessionId,
+                                             @Param("createdAt") LocalDateTime createdAt,
+                                             @Param("id") String id,
+                                             @Param("limit") int limit);
+
     int deleteById(String id);
 
     int updateById(ChatMessage chatMessage);
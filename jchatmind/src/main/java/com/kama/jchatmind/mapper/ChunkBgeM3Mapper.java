@@ -16,15 +16,38 @@ import java.util.List;
 public interface ChunkBgeM3Mapper {
     int insert(ChunkBgeM3 chunkBgeM3);
 
+    // 多行 VALUES 批量插入, 生成的 id 回填到每个 chunk
+    int insertBatch(@Param("chunks") List<ChunkBgeM3> chunks);
+
     ChunkBgeM3 selectById(String id);
 
     int deleteById(String id);
 
+    int deleteByDocId(String docId);
+
     int updateById(ChunkBgeM3 chunkBgeM3);
 
+    // 只返回 chunk 内容等字段, 不返回 embedding 列
     List<ChunkBgeM3> similaritySearch(
             @Param("kbId") String kbId,
-            @Param("vectorLiteral") String vectorLiteral,
+            @Param("embedding") float[] embedding,
+            @Param("limit") int limit
+    );
+
+    // 按 id 顺序分页读取知识库的向量, 用于构建进程内索引
+    List<ChunkBgeM3> selectVectorsByKbId(
+            @Param("kbId") String kbId,
+            @Param("afterId") String afterId,
             @Param("limit") int limit
     );
+
+    List<String> selectIdsByKbId(
+            @Param("kbId") String kbId,
+            @Param("afterId") String afterId,
+            @Param("limit") int limit
+    );
+
+    List<ChunkBgeM3> selectVectorsByIds(@Param("ids") List<String> ids);
+
+    List<ChunkBgeM3> selectContentByIds(@Param("ids") List<String> ids);
 }
@@ -2,6 +2,7 @@ package com.kama.jchatmind.mapper;
 
 import com.kama.jchatmind.model.entity.Document;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 
 import java.util.List;
 
@@ -17,6 +18,9 @@ public interface DocumentMapper {
 
     Document selectById(String id);
 
+    // 在当前事务中对文档加共享锁, 文档已删除时返回 null; 删除文档需要等待持锁事务结束
+    String lockById(String id);
+
     List<Document> selectAll();
 
     List<Document> selectByKbId(String kbId);
@@ -24,4 +28,6 @@ public interface DocumentMapper {
     int deleteById(String id);
 
     int updateById(Document document);
+
+    int updateStatus(@Param("id") String id, @Param("status") String status);
 }
@@ -0,0 +1,37 @@
+package com.kama.jchatmind.mapper;
+
+import com.kama.jchatmind.model.entity.IngestionJob;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 针对表【ingestion_job】的数据库操作Mapper
+ */
+@Mapper
+public interface IngestionJobMapper {
+    int insert(IngestionJob ingestionJob);
+
+    IngestionJob selectById(String id);
+
+    // 文档最近一次的入库任务
+    IngestionJob selectLatestByDocumentId(String documentId);
+
+    // 可以认领的任务: 在 staleBefore 之前登记的等待中任务, 以及租约已过期的执行中任务
+    List<IngestionJob> selectClaimable(@Param("staleBefore") LocalDateTime staleBefore);
+
+    // 原子地认领任务并设置租约, 任务已被其他节点持有时返回 null
+    IngestionJob claim(@Param("id") String id,
+                       @Param("owner") String owner,
+                       @Param("leaseSeconds") long leaseSeconds);
+
+    // 为节点正在执行的所有任务续租
+    int renewLeases(@Param("owner") String owner, @Param("leaseSeconds") long leaseSeconds);
+
+    // owner 不为空时只更新该节点持有的任务, 返回 0 说明租约已被其他节点接管
+    int updateById(IngestionJob ingestionJob);
+
+    int deleteByDocumentId(String documentId);
+}
@@ -24,4 +24,10 @@ public interface KnowledgeBaseMapper {
     int deleteById(String id);
 
     int updateById(KnowledgeBase knowledgeBase);
+
+    // 知识库的 chunk 版本号, 知识库不存在时返回 null
+    Long selectChunkVersion(String id);
+
+    // chunk 新增或删除后递增版本号, 需要与 chunk 的变更在同一事务中执行
+    int incrementChunkVersion(String id);
 }
@@ -1,6 +1,7 @@
 package com.kama.jchatmind.message;
 
 import com.kama.jchatmind.model.vo.ChatMessageVO;
+import com.kama.jchatmind.model.vo.DocumentProgressVO;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -21,6 +22,7 @@ public class SseMessage {
         private ChatMessageVO message;
         private String statusText;
         private Boolean done;
+        private DocumentProgressVO document;
     }
 
     @Data
@@ -28,6 +30,8 @@ public class SseMessage {
     @Builder
     public static class Metadata {
         private String chatMessageId;
+        // 流式输出时同一条消息的所有片段共享的标识
+        private String streamId;
     }
 
     // 自定义消息类型
@@ -36,11 +40,15 @@ public class SseMessage {
     // 3. AI 思考中
     // 4. AI 执行中
     // 5. AI 完成
+    // 6. AI 运行失败或被拒绝
+    // 7. 文档索引进度
     public enum Type {
         AI_GENERATED_CONTENT,
         AI_PLANNING,
         AI_THINKING,
         AI_EXECUTING,
         AI_DONE,
+        AI_ERROR,
+        DOCUMENT_PROGRESS,
     }
 }
@@ -1,9 +1,12 @@
 package com.kama.jchatmind.model.dto;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @Builder
@@ -25,6 +28,16 @@ public class ChunkBgeM3DTO {
     private LocalDateTime updatedAt;
 
     @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
     public static class MetaData {
+        // 从一级标题到 chunk 所在章节的标题路径
+        private List<String> headingPath;
+        // chunk 在原文中的字符偏移量 [startOffset, endOffset)
+        private Integer startOffset;
+        private Integer endOffset;
+        // 估算的 token 数
+        private Integer tokens;
     }
 }
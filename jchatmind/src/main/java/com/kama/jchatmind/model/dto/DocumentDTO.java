@@ -20,6 +20,8 @@ public class DocumentDTO {
 
     private MetaData metadata;
 
+    private Status status;
+
     private LocalDateTime createdAt;
 
     private LocalDateTime updatedAt;
@@ -28,4 +30,12 @@ public class DocumentDTO {
     public static class MetaData {
         private String filePath; // 文件存储路径
     }
+
+    // 文档索引状态
+    public enum Status {
+        PENDING,   // 已上传, 等待索引
+        INDEXING,  // 正在解析、向量化
+        READY,     // 可以被检索
+        FAILED     // 索引失败, 可以重试
+    }
 }
@@ -0,0 +1,45 @@
+package com.kama.jchatmind.model.entity;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * @TableName ingestion_job
+ */
+@Data
+@Builder
+public class IngestionJob {
+    private String id;
+
+    private String documentId;
+
+    private String kbId;
+
+    // 已保存的原始文件路径
+    private String filePath;
+
+    // 当前（或失败时所在的）阶段
+    private String stage;
+
+    private String status;
+
+    // 当前阶段已尝试的次数
+    private Integer attempts;
+
+    private Integer processedChunks;
+
+    private Integer totalChunks;
+
+    private String lastError;
+
+    // 认领任务的节点, 以及租约的到期时间
+    private String owner;
+
+    private LocalDateTime leaseUntil;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+}
@@ -23,6 +23,9 @@ public class KnowledgeBase {
 
     private LocalDateTime updatedAt;
 
+    // chunk 版本号, chunk 新增或删除时递增
+    private Long chunkVersion;
+
     @Override
     public boolean equals(Object that) {
         if (this == that) {
@@ -40,7 +43,8 @@ public class KnowledgeBase {
             && (this.getDescription() == null ? other.getDescription() == null : this.getDescription().equals(other.getDescription()))
             && (this.getMetadata() == null ? other.getMetadata() == null : this.getMetadata().equals(other.getMetadata()))
             && (this.getCreatedAt() == null ? other.getCreatedAt() == null : this.getCreatedAt().equals(other.getCreatedAt()))
-            && (this.getUpdatedAt() == null ? other.getUpdatedAt() == null : this.getUpdatedAt().equals(other.getUpdatedAt()));
+            && (this.getUpdatedAt() == null ? other.getUpdatedAt() == null : this.getUpdatedAt().equals(other.getUpdatedAt()))
+            && (this.getChunkVersion() == null ? other.getChunkVersion() == null : this.getChunkVersion().equals(other.getChunkVersion()));
     }
 
     @Override
@@ -53,6 +57,7 @@ public class KnowledgeBase {
         result = prime * result + ((getMetadata() == null) ? 0 : getMetadata().hashCode());
         result = prime * result + ((getCreatedAt() == null) ? 0 : getCreatedAt().hashCode());
         result = prime * result + ((getUpdatedAt() == null) ? 0 : getUpdatedAt().hashCode());
+        result = prime * result + ((getChunkVersion() == null) ? 0 : getChunkVersion().hashCode());
         return result;
     }
 
@@ -67,6 +72,7 @@ public class KnowledgeBase {
                 ", metadata=" + metadata +
                 ", createdAt=" + createdAt +
                 ", updatedAt=" + updatedAt +
+                ", chunkVersion=" + chunkVersion +
                 "]";
     }
 }
\ No newline at end of file
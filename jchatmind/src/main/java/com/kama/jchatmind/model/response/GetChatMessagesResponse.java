@@ -7,6 +7,15 @@ import lombok.Data;
 @Data
 @Builder
 public class GetChatMessagesResponse {
+    // 按时间正序排列
     private ChatMessageVO[] chatMessages;
-}
 
+    // 查询方向上是否还有更多消息
+    private Boolean hasMore;
+
+    // 本页最早一条消息的游标, 作为 before 参数加载更早的消息
+    private String prevCursor;
+
+    // 本页最新一条消息的游标, 作为 after 参数加载更新的消息
+    private String nextCursor;
+}
@@ -0,0 +1,20 @@
+package com.kama.jchatmind.model.vo;
+
+import com.kama.jchatmind.model.dto.DocumentDTO;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * 文档索引进度, 通过 SSE 推送给知识库页面
+ */
+@Data
+@Builder
+public class DocumentProgressVO {
+    private String documentId;
+    private String kbId;
+    private DocumentDTO.Status status;
+    private String stage;
+    private Integer processedChunks;
+    private Integer totalChunks;
+    private String error;
+}
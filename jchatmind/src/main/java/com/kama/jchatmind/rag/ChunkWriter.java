@@ -0,0 +1,63 @@
+package com.kama.jchatmind.rag;
+
+import com.kama.jchatmind.config.IngestionProperties;
+import com.kama.jchatmind.mapper.ChunkBgeM3Mapper;
+import com.kama.jchatmind.mapper.DocumentMapper;
+import com.kama.jchatmind.mapper.KnowledgeBaseMapper;
+import com.kama.jchatmind.model.entity.ChunkBgeM3;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * 文档 chunk 的批量写入
+ * 一个文档的所有 chunk 在同一个事务中按批次多行插入, 要么全部写入, 要么全部回滚
+ */
+@Slf4j
+@Component
+public class ChunkWriter {
+
+    private final ChunkBgeM3Mapper chunkBgeM3Mapper;
+    private final DocumentMapper documentMapper;
+    private final KnowledgeBaseMapper knowledgeBaseMapper;
+    private final IngestionProperties properties;
+
+    public ChunkWriter(ChunkBgeM3Mapper chunkBgeM3Mapper,
+                       DocumentMapper documentMapper,
+                       KnowledgeBaseMapper knowledgeBaseMapper,
+                       IngestionProperties properties) {
+        this.chunkBgeM3Mapper = chunkBgeM3Mapper;
+        this.documentMapper = documentMapper;
+        this.knowledgeBaseMapper = knowledgeBaseMapper;
+        this.properties = properties;
+    }
+
+    /**
+     * 用新的 chunk 替换文档原有的 chunk
+     * 写入前对文档加共享锁: 文档已删除时不写入, 写入过程中删除文档会等待事务提交后再删除 chunk。
+     * 知识库的 chunk 版本号在同一事务中递增, 所有节点的检索缓存在提交后失效
+     *
+     * @return 写入的 chunk 数量
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public int replaceDocumentChunks(String kbId, String docId, List<ChunkBgeM3> chunks) {
+        if (documentMapper.lockById(docId) == null) {
+            throw new DocumentIngestionPipeline.DocumentDeletedException();
+        }
+        int deleted = chunkBgeM3Mapper.deleteByDocId(docId);
+        int batchSize = properties.getWriteBatchSize();
+        int inserted = 0;
+        for (int from = 0; from < chunks.size(); from += batchSize) {
+            List<ChunkBgeM3> batch = chunks.subList(from, Math.min(from + batchSize, chunks.size()));
+            inserted += chunkBgeM3Mapper.insertBatch(batch);
+        }
+        if (inserted != chunks.size()) {
+            throw new IllegalStateException("写入 chunk 不完整: expected=" + chunks.size() + ", actual=" + inserted);
+        }
+        knowledgeBaseMapper.incrementChunkVersion(kbId);
+        log.debug("文档 chunk 写入完成: docId={}, deleted={}, inserted={}", docId, deleted, inserted);
+        return inserted;
+    }
+}
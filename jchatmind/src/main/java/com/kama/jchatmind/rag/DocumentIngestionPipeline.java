@@ -0,0 +1,424 @@
+package com.kama.jchatmind.rag;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kama.jchatmind.config.IngestionProperties;
+import com.kama.jchatmind.exception.BizException;
+import com.kama.jchatmind.mapper.DocumentMapper;
+import com.kama.jchatmind.mapper.IngestionJobMapper;
+import com.kama.jchatmind.message.SseMessage;
+import com.kama.jchatmind.model.dto.ChunkBgeM3DTO;
+import com.kama.jchatmind.model.dto.DocumentDTO;
+import com.kama.jchatmind.model.entity.ChunkBgeM3;
+import com.kama.jchatmind.model.entity.IngestionJob;
+import com.kama.jchatmind.model.vo.DocumentProgressVO;
+import com.kama.jchatmind.service.DocumentStorageService;
+import com.kama.jchatmind.service.MarkdownParserService;
+import com.kama.jchatmind.service.RagService;
+import com.kama.jchatmind.service.SseService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+/**
+ * 文档入库流水线
+ * 上传接口只负责保存文件（STORE）并登记任务, 之后的 PARSE -> CHUNK -> EMBED -> WRITE 在后台执行:
+ * 1. 任务持久化在 ingestion_job 表中, 执行前由一个节点原子地认领并持有租约, 执行期间定时续租;
+ *    节点宕机或重启后租约过期, 未完成的任务由任意节点重新认领执行
+ * 2. 每个阶段有独立的并发上限, 失败后按配置重试, 最终失败时文档标记为 FAILED, 可以手动重试
+ * 3. 状态和向量化进度通过 SSE 推送给知识库页面
+ */
+@Slf4j
+@Component
+public class DocumentIngestionPipeline implements DisposableBean {
+
+    public enum Stage {
+        PARSE,
+        CHUNK,
+        EMBED,
+        WRITE,
+    }
+
+    public enum JobStatus {
+        PENDING,
+        RUNNING,
+        SUCCEEDED,
+        FAILED,
+    }
+
+    private final IngestionProperties properties;
+    private final IngestionJobMapper ingestionJobMapper;
+    private final DocumentMapper documentMapper;
+    private final DocumentStorageService documentStorageService;
+    private final MarkdownParserService markdownParserService;
+    private final MarkdownChunker markdownChunker;
+    private final RagService ragService;
+    private final ChunkWriter chunkWriter;
+    private final VectorIndex vectorIndex;
+    private final RagCache ragCache;
+    private final SseService sseService;
+    private final ObjectMapper objectMapper;
+
+    private final ExecutorService executor;
+
+    // 续租以及扫描可认领的任务
+    private final ScheduledExecutorService leaseKeeper;
+
+    // 任务租约中记录的本节点标识
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // 已经提交到本节点线程池、还没有执行完的任务, 定时扫描时不重复提交
+    private final Set<String> scheduledJobs = ConcurrentHashMap.newKeySet();
+
+    private final Map<Stage, Semaphore> stagePermits = new EnumMap<>(Stage.class);
+
+    public DocumentIngestionPipeline(IngestionProperties properties,
+                                     IngestionJobMapper ingestionJobMapper,
+                                     DocumentMapper documentMapper,
+                                     DocumentStorageService documentStorageService,
+                                     MarkdownParserService markdownParserService,
+                                     MarkdownChunker markdownChunker,
+                                     RagService ragService,
+                                     ChunkWriter chunkWriter,
+                                     VectorIndex vectorIndex,
+                                     RagCache ragCache,
+                                     SseService sseService,
+                                     ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.ingestionJobMapper = ingestionJobMapper;
+        this.documentMapper = documentMapper;
+        this.documentStorageService = documentStorageService;
+        this.markdownParserService = markdownParserService;
+        this.markdownChunker = markdownChunker;
+        this.ragService = ragService;
+        this.chunkWriter = chunkWriter;
+        this.vectorIndex = vectorIndex;
+        this.ragCache = ragCache;
+        this.sseService = sseService;
+        this.objectMapper = objectMapper;
+
+        // 解析和切分都是 CPU 上的轻量操作, 共用一个并发上限
+        Semaphore parsePermits = new Semaphore(properties.getParseConcurrency());
+        stagePermits.put(Stage.PARSE, parsePermits);
+        stagePermits.put(Stage.CHUNK, parsePermits);
+        stagePermits.put(Stage.EMBED, new Semaphore(properties.getEmbedConcurrency()));
+        stagePermits.put(Stage.WRITE, new Semaphore(properties.getWriteConcurrency()));
+
+        this.executor = Executors.newFixedThreadPool(properties.getWorkerThreads(), runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setName("document-ingestion-" + thread.getId());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.leaseKeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "document-ingestion-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long leaseMillis = properties.getLeaseDuration().toMillis();
+        leaseKeeper.scheduleWithFixedDelay(this::renewLeases, leaseMillis / 3, leaseMillis / 3, TimeUnit.MILLISECONDS);
+        leaseKeeper.scheduleWithFixedDelay(this::claimStale, leaseMillis, leaseMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 知识库页面订阅进度使用的 SSE 通道
+     */
+    public static String progressChannel(String kbId) {
+        return "kb:" + kbId;
+    }
+
+    // 待写入的 chunk 以及用于向量化的文本（标题路径 + 内容）
+    private record PendingChunk(String text, ChunkBgeM3 chunk) {
+    }
+
+    // 阶段执行过程中文档被删除
+    static class DocumentDeletedException extends RuntimeException {
+    }
+
+    // 租约过期, 任务已被其他节点接管
+    private static class LeaseLostException extends RuntimeException {
+    }
+
+    /**
+     * 文件已保存, 登记入库任务并开始执行
+     */
+    public void submit(String documentId, String kbId, String filePath) {
+        LocalDateTime now = LocalDateTime.now();
+        IngestionJob job = IngestionJob.builder()
+                .documentId(documentId)
+                .kbId(kbId)
+                .filePath(filePath)
+                .stage(Stage.PARSE.name())
+                .status(JobStatus.PENDING.name())
+                .attempts(0)
+                .processedChunks(0)
+                .totalChunks(0)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+        ingestionJobMapper.insert(job);
+        documentMapper.updateStatus(documentId, DocumentDTO.Status.PENDING.name());
+        publish(job, DocumentDTO.Status.PENDING);
+        schedule(job.getId());
+    }
+
+    /**
+     * 重新执行文档最近一次失败的入库任务
+     */
+    public void retry(String documentId) {
+        IngestionJob job = ingestionJobMapper.selectLatestByDocumentId(documentId);
+        if (job == null) {
+            throw new BizException("文档没有入库任务: " + documentId);
+        }
+        if (!JobStatus.FAILED.name().equals(job.getStatus())) {
+            throw new BizException("只能重试失败的入库任务, 当前状态: " + job.getStatus());
+        }
+        job.setStatus(JobStatus.PENDING.name());
+        job.setAttempts(0);
+        job.setLastError(null);
+        // 不限定节点, 由下一次认领重新设置
+        job.setOwner(null);
+        ingestionJobMapper.updateById(job);
+        documentMapper.updateStatus(documentId, DocumentDTO.Status.PENDING.name());
+        publish(job, DocumentDTO.Status.PENDING);
+        schedule(job.getId());
+    }
+
+    /**
+     * 服务启动后继续执行没有节点持有的任务: 等待中的任务, 以及租约已过期的执行中任务
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinished() {
+        resume(LocalDateTime.now());
+    }
+
+    // 定时接管租约过期的任务, 以及登记后一个租约时长内都没有被认领的任务
+    private void claimStale() {
+        try {
+            resume(LocalDateTime.now().minus(properties.getLeaseDuration()));
+        } catch (Exception e) {
+            log.warn("扫描可认领的文档入库任务失败: {}", e.getMessage());
+        }
+    }
+
+    private void resume(LocalDateTime staleBefore) {
+        List<IngestionJob> jobs = ingestionJobMapper.selectClaimable(staleBefore);
+        if (!jobs.isEmpty()) {
+            log.info("恢复未完成的文档入库任务: count={}", jobs.size());
+        }
+        jobs.forEach(job -> schedule(job.getId()));
+    }
+
+    private void renewLeases() {
+        try {
+            ingestionJobMapper.renewLeases(nodeId, properties.getLeaseDuration().toSeconds());
+        } catch (Exception e) {
+            log.warn("文档入库任务续租失败: {}", e.getMessage());
+        }
+    }
+
+    private void schedule(String jobId) {
+        if (!scheduledJobs.add(jobId)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                run(jobId);
+            } finally {
+                scheduledJobs.remove(jobId);
+            }
+        });
+    }
+
+    private void run(String jobId) {
+        // 已结束或被其他节点持有的任务认领失败
+        IngestionJob job = ingestionJobMapper.claim(jobId, nodeId, properties.getLeaseDuration().toSeconds());
+        if (job == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        log.info("开始文档入库: documentId={}, jobId={}", job.getDocumentId(), jobId);
+        try {
+            job.setProcessedChunks(0);
+            updateJob(job);
+            documentMapper.updateStatus(job.getDocumentId(), DocumentDTO.Status.INDEXING.name());
+            publish(job, DocumentDTO.Status.INDEXING);
+
+            List<MarkdownParserService.MarkdownSection> sections = runStage(job, Stage.PARSE, () -> parse(job));
+            List<PendingChunk> chunks = runStage(job, Stage.CHUNK, () -> chunk(job, sections));
+            runStage(job, Stage.EMBED, () -> embed(job, chunks));
+            runStage(job, Stage.WRITE, () -> write(job, chunks));
+
+            job.setStatus(JobStatus.SUCCEEDED.name());
+            updateJob(job);
+            documentMapper.updateStatus(job.getDocumentId(), DocumentDTO.Status.READY.name());
+            publish(job, DocumentDTO.Status.READY);
+            log.info("文档入库完成: documentId={}, chunks={}, cost={}ms",
+                    job.getDocumentId(), chunks.size(), System.currentTimeMillis() - start);
+        } catch (DocumentDeletedException e) {
+            log.info("文档已删除, 停止入库: documentId={}", job.getDocumentId());
+        } catch (LeaseLostException e) {
+            log.warn("文档入库任务租约已过期, 由其他节点接管: documentId={}, jobId={}", job.getDocumentId(), jobId);
+        } catch (InterruptedException e) {
+            // 服务关闭, 任务保持 RUNNING, 租约过期后重新认领执行
+            Thread.currentThread().interrupt();
+            log.info("文档入库被中断: documentId={}, stage={}", job.getDocumentId(), job.getStage());
+        } catch (Exception e) {
+            log.error("文档入库失败: documentId={}, stage={}", job.getDocumentId(), job.getStage(), e);
+            job.setStatus(JobStatus.FAILED.name());
+            job.setLastError(e.getMessage());
+            if (ingestionJobMapper.updateById(job) == 0) {
+                log.warn("文档入库任务租约已过期, 由其他节点接管: documentId={}, jobId={}", job.getDocumentId(), jobId);
+                return;
+            }
+            documentMapper.updateStatus(job.getDocumentId(), DocumentDTO.Status.FAILED.name());
+            publish(job, DocumentDTO.Status.FAILED);
+        }
+    }
+
+    /**
+     * 在阶段并发上限内执行, 失败时按退避间隔重试
+     */
+    private <T> T runStage(IngestionJob job, Stage stage, Callable<T> work) throws Exception {
+        if (documentMapper.selectById(job.getDocumentId()) == null) {
+            throw new DocumentDeletedException();
+        }
+        job.setStage(stage.name());
+        Semaphore permits = stagePermits.get(stage);
+        for (int attempt = 1; ; attempt++) {
+            job.setAttempts(attempt);
+            updateJob(job);
+            permits.acquire();
+            try {
+                return work.call();
+            } catch (InterruptedException | DocumentDeletedException | LeaseLostException e) {
+                throw e;
+            } catch (Exception e) {
+                if (attempt >= properties.getMaxAttempts()) {
+                    throw e;
+                }
+                log.warn("文档入库阶段失败, 准备重试: documentId={}, stage={}, attempt={}, error={}",
+                        job.getDocumentId(), stage, attempt, e.getMessage());
+            } finally {
+                permits.release();
+            }
+            Thread.sleep(properties.getRetryBackoff().toMillis() * attempt);
+        }
+    }
+
+    private List<MarkdownParserService.MarkdownSection> parse(IngestionJob job) throws Exception {
+        Path path = documentStorageService.getFilePath(job.getFilePath());
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            return markdownParserService.parseMarkdown(inputStream);
+        }
+    }
+
+    private List<PendingChunk> chunk(IngestionJob job, List<MarkdownParserService.MarkdownSection> sections)
+            throws JsonProcessingException {
+        LocalDateTime now = LocalDateTime.now();
+        List<PendingChunk> chunks = new ArrayList<>();
+        for (MarkdownChunker.Chunk chunk : markdownChunker.chunk(sections)) {
+            ChunkBgeM3DTO.MetaData metadata = ChunkBgeM3DTO.MetaData.builder()
+                    .headingPath(chunk.headingPath())
+                    .startOffset(chunk.startOffset())
+                    .endOffset(chunk.endOffset())
+                    .tokens(chunk.tokens())
+                    .build();
+            chunks.add(new PendingChunk(chunk.embeddingText(), ChunkBgeM3.builder()
+                    .kbId(job.getKbId())
+                    .docId(job.getDocumentId())
+                    .content(chunk.content())
+                    .metadata(objectMapper.writeValueAsString(metadata))
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .build()));
+        }
+        if (chunks.isEmpty()) {
+            log.warn("Markdown 文档切分后没有任何内容: documentId={}", job.getDocumentId());
+        }
+        job.setTotalChunks(chunks.size());
+        updateJob(job);
+        return chunks;
+    }
+
+    private Void embed(IngestionJob job, List<PendingChunk> chunks) {
+        // 重试时跳过已经完成向量化的 chunk
+        List<PendingChunk> pending = chunks.stream()
+                .filter(pendingChunk -> pendingChunk.chunk().getEmbedding() == null)
+                .toList();
+        int batchSize = properties.getEmbedBatchSize();
+        for (int from = 0; from < pending.size(); from += batchSize) {
+            List<PendingChunk> batch = pending.subList(from, Math.min(from + batchSize, pending.size()));
+            List<float[]> embeddings = ragService.embedBatch(batch.stream().map(PendingChunk::text).toList());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).chunk().setEmbedding(embeddings.get(i));
+            }
+            job.setProcessedChunks(chunks.size() - pending.size() + from + batch.size());
+            updateJob(job);
+            publish(job, DocumentDTO.Status.INDEXING);
+        }
+        return null;
+    }
+
+    private Void write(IngestionJob job, List<PendingChunk> chunks) {
+        List<ChunkBgeM3> documentChunks = chunks.stream().map(PendingChunk::chunk).toList();
+        documentChunks.forEach(chunk -> chunk.setId(null));
+        // 旧的 chunk 在同一个事务中被替换, 保证任务可以重复执行; 文档已删除时抛出 DocumentDeletedException
+        chunkWriter.replaceDocumentChunks(job.getKbId(), job.getDocumentId(), documentChunks);
+        vectorIndex.onDocumentDeleted(job.getKbId(), job.getDocumentId());
+        vectorIndex.onChunksAdded(documentChunks);
+        ragCache.invalidateKnowledgeBase(job.getKbId());
+        return null;
+    }
+
+    private void updateJob(IngestionJob job) {
+        if (ingestionJobMapper.updateById(job) == 0) {
+            throw new LeaseLostException();
+        }
+    }
+
+    private void publish(IngestionJob job, DocumentDTO.Status status) {
+        DocumentProgressVO progress = DocumentProgressVO.builder()
+                .documentId(job.getDocumentId())
+                .kbId(job.getKbId())
+                .status(status)
+                .stage(job.getStage())
+                .processedChunks(job.getProcessedChunks())
+                .totalChunks(job.getTotalChunks())
+                .error(job.getLastError())
+                .build();
+        try {
+            sseService.send(progressChannel(job.getKbId()), SseMessage.builder()
+                    .type(SseMessage.Type.DOCUMENT_PROGRESS)
+                    .payload(SseMessage.Payload.builder()
+                            .document(progress)
+                            .done(status == DocumentDTO.Status.READY || status == DocumentDTO.Status.FAILED)
+                            .build())
+                    .build());
+        } catch (Exception e) {
+            // 没有打开知识库页面时没有订阅者, 忽略即可
+            log.debug("推送文档入库进度失败: documentId={}, error={}", job.getDocumentId(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        // 未完成的任务保留在 ingestion_job 表中, 租约过期后重新认领执行
+        leaseKeeper.shutdownNow();
+        executor.shutdownNow();
+    }
+}
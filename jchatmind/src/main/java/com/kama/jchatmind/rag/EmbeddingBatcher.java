@@ -0,0 +1,198 @@
+package com.kama.jchatmind.rag;
+
+import com.kama.jchatmind.config.EmbeddingProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 批量 Embedding 客户端
+ * 把并发调用方提交的文本在一个很短的时间窗口内（或凑满 maxBatchSize 条）合并成一次
+ * Ollama /api/embed 批量请求, 再把结果分发回各自的 Future。
+ * 同一批次中相同的文本只会计算一次。
+ * /api/embed 返回归一化后的向量, 库中早期写入的向量来自 /api/embeddings（未归一化）,
+ * 检索按余弦距离排序, 与向量长度无关, 两者可以混用
+ */
+@Slf4j
+@Component
+public class EmbeddingBatcher implements DisposableBean {
+
+    private final WebClient webClient;
+    private final EmbeddingProperties properties;
+
+    private final BlockingQueue<PendingEmbedding> queue = new LinkedBlockingQueue<>();
+
+    // 限制同时在途的批量请求数量
+    private final Semaphore inFlightBatches;
+
+    private final Thread dispatcher;
+
+    private volatile boolean running = true;
+
+    private final DistributionSummary batchSizeSummary;
+    private final Timer queueWaitTimer;
+    private final Timer requestTimer;
+
+    public EmbeddingBatcher(WebClient.Builder builder,
+                            EmbeddingProperties properties,
+                            ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.webClient = builder.baseUrl(properties.getBaseUrl()).build();
+        this.properties = properties;
+        this.inFlightBatches = new Semaphore(properties.getMaxInFlightBatches());
+
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        this.batchSizeSummary = DistributionSummary.builder("jchatmind.embedding.batch.size")
+                .description("每次批量 Embedding 请求包含的文本数量")
+                .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("jchatmind.embedding.queue.wait")
+                .description("文本从提交到被发送的等待时间")
+                .register(meterRegistry);
+        this.requestTimer = Timer.builder("jchatmind.embedding.request")
+                .description("批量 Embedding 请求耗时")
+                .register(meterRegistry);
+
+        this.dispatcher = new Thread(this::dispatchLoop, "embedding-batcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    @Data
+    private static class EmbedResponse {
+        private List<float[]> embeddings;
+    }
+
+    private record PendingEmbedding(String text, CompletableFuture<float[]> future, long enqueueNanos) {
+    }
+
+    /**
+     * 提交一条文本, 返回的 Future 在所属批次完成时完成,
+     * 超过 awaitTimeout（包含排队等待的时间）仍未完成时以 TimeoutException 失败
+     */
+    public CompletableFuture<float[]> submit(String text) {
+        CompletableFuture<float[]> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new IllegalStateException("EmbeddingBatcher 已关闭"));
+            return future;
+        }
+        queue.add(new PendingEmbedding(text, future, System.nanoTime()));
+        return future.orTimeout(properties.getAwaitTimeout().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                List<PendingEmbedding> batch = collectBatch();
+                if (!batch.isEmpty()) {
+                    inFlightBatches.acquire();
+                    try {
+                        send(batch);
+                    } catch (Exception e) {
+                        // 请求没有发出去, 归还许可并让这一批的调用方失败
+                        inFlightBatches.release();
+                        log.error("发送 Embedding 请求失败: size={}", batch.size(), e);
+                        batch.forEach(pending -> pending.future().completeExceptionally(e));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("Embedding 批处理线程异常", e);
+            }
+        }
+        // 关闭时让剩余的调用方尽快失败, 不要一直阻塞
+        List<PendingEmbedding> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.forEach(pending -> pending.future()
+                .completeExceptionally(new IllegalStateException("EmbeddingBatcher 已关闭")));
+    }
+
+    // 阻塞等待第一条文本, 然后在 maxWait 时间窗口内继续收集, 最多 maxBatchSize 条
+    private List<PendingEmbedding> collectBatch() throws InterruptedException {
+        List<PendingEmbedding> batch = new ArrayList<>();
+        PendingEmbedding first = queue.poll(1, TimeUnit.SECONDS);
+        if (first == null) {
+            return batch;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + properties.getMaxWait().toNanos();
+        while (batch.size() < properties.getMaxBatchSize()) {
+            long remaining = deadline - System.nanoTime();
+            PendingEmbedding next = remaining > 0
+                    ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                    : queue.poll();
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private void send(List<PendingEmbedding> batch) {
+        long now = System.nanoTime();
+        // 相同的文本只发送一次
+        Map<String, List<PendingEmbedding>> byText = new LinkedHashMap<>();
+        for (PendingEmbedding pending : batch) {
+            queueWaitTimer.record(now - pending.enqueueNanos(), TimeUnit.NANOSECONDS);
+            byText.computeIfAbsent(pending.text(), key -> new ArrayList<>()).add(pending);
+        }
+        List<String> inputs = new ArrayList<>(byText.keySet());
+        batchSizeSummary.record(inputs.size());
+
+        Timer.Sample sample = Timer.start();
+        webClient.post()
+                .uri("/api/embed")
+                .bodyValue(Map.of(
+                        "model", properties.getModel(),
+                        "input", inputs
+                ))
+                .retrieve()
+                .bodyToMono(EmbedResponse.class)
+                .timeout(properties.getRequestTimeout())
+                .doFinally(signal -> {
+                    sample.stop(requestTimer);
+                    inFlightBatches.release();
+                })
+                .subscribe(
+                        response -> complete(inputs, byText, response),
+                        error -> {
+                            log.error("批量 Embedding 请求失败: size={}", inputs.size(), error);
+                            batch.forEach(pending -> pending.future().completeExceptionally(error));
+                        },
+                        () -> batch.forEach(pending -> pending.future().completeExceptionally(
+                                new IllegalStateException("Embedding response cannot be null")))
+                );
+    }
+
+    private void complete(List<String> inputs, Map<String, List<PendingEmbedding>> byText, EmbedResponse response) {
+        List<float[]> embeddings = response.getEmbeddings();
+        if (embeddings == null || embeddings.size() != inputs.size()) {
+            IllegalStateException error = new IllegalStateException(
+                    "Embedding 返回数量不匹配: expected=" + inputs.size()
+                            + ", actual=" + (embeddings == null ? 0 : embeddings.size()));
+            byText.values().forEach(list -> list.forEach(pending -> pending.future().completeExceptionally(error)));
+            return;
+        }
+        for (int i = 0; i < inputs.size(); i++) {
+            float[] embedding = embeddings.get(i);
+            byText.get(inputs.get(i)).forEach(pending -> pending.future().complete(embedding));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        dispatcher.interrupt();
+    }
+}
@@ -0,0 +1,479 @@
+package com.kama.jchatmind.rag;
+
+import com.github.jelmerk.knn.DistanceFunction;
+import com.github.jelmerk.knn.DistanceFunctions;
+import com.github.jelmerk.knn.Item;
+import com.github.jelmerk.knn.SearchResult;
+import com.github.jelmerk.knn.hnsw.HnswIndex;
+import com.github.jelmerk.knn.hnsw.SizeLimitExceededException;
+import com.kama.jchatmind.config.HnswIndexProperties;
+import com.kama.jchatmind.mapper.ChunkBgeM3Mapper;
+import com.kama.jchatmind.mapper.KnowledgeBaseMapper;
+import com.kama.jchatmind.model.entity.ChunkBgeM3;
+import com.kama.jchatmind.model.entity.KnowledgeBase;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 进程内 HNSW 向量索引, 每个知识库一个索引
+ * 1. 应用启动后在后台线程中构建: 优先加载快照文件并与数据库对账, 没有快照时从 chunk_bge_m3 表分页加载
+ * 2. 本节点写入 chunk、删除文档时同步更新索引
+ * 3. 定时检查 knowledge_base.chunk_version, 版本变化（包括其他节点的写入和删除）的知识库与数据库对账,
+ *    其他节点新建的知识库同时被发现, 已删除的知识库被移除
+ * 4. 应用关闭时把有变化的索引保存为快照, 下次启动无需重新构建
+ * 某个知识库的索引尚未就绪时, 检索回退到 pgvector
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "jchatmind.rag.vector-index", havingValue = "hnsw")
+public class HnswVectorIndex implements VectorIndex, DisposableBean {
+
+    private static final String SNAPSHOT_SUFFIX = ".hnsw";
+
+    // 与 pgvector 的 <=> 一致, 按余弦距离排序, 不受向量是否归一化的影响
+    private static final DistanceFunction<float[], Float> DISTANCE_FUNCTION = DistanceFunctions.FLOAT_COSINE_DISTANCE;
+
+    private final HnswIndexProperties properties;
+    private final ChunkBgeM3Mapper chunkBgeM3Mapper;
+    private final KnowledgeBaseMapper knowledgeBaseMapper;
+
+    // 索引未就绪时使用
+    private final PgVectorIndex fallback;
+
+    private final ConcurrentMap<String, KbIndex> indexes = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService syncExecutor;
+
+    public HnswVectorIndex(HnswIndexProperties properties,
+                           ChunkBgeM3Mapper chunkBgeM3Mapper,
+                           KnowledgeBaseMapper knowledgeBaseMapper) {
+        this.properties = properties;
+        this.chunkBgeM3Mapper = chunkBgeM3Mapper;
+        this.knowledgeBaseMapper = knowledgeBaseMapper;
+        this.fallback = new PgVectorIndex(chunkBgeM3Mapper);
+        this.syncExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hnsw-index-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 索引中的一个 chunk, 只保存 id、所属文档和向量, 内容检索后再回表查询
+     */
+    record ChunkVector(String id, String docId, float[] vector) implements Item<String, float[]> {
+        @Override
+        public int dimensions() {
+            return vector.length;
+        }
+    }
+
+    /**
+     * 单个知识库的索引
+     */
+    private class KbIndex {
+        private final String kbId;
+
+        private volatile HnswIndex<String, float[], ChunkVector, Float> index;
+
+        // 写入、删除持有读锁, 替换为快照索引、保存快照时持有写锁
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        // docId -> chunkId, 删除文档时使用
+        private final ConcurrentMap<String, Set<String>> chunkIdsByDoc = new ConcurrentHashMap<>();
+
+        private volatile boolean ready;
+
+        // 上次保存快照后是否有变化
+        private volatile boolean dirty;
+
+        // 上次与数据库对账时的 chunk 版本号, -1 表示尚未对账
+        private volatile long syncedVersion = -1;
+
+        KbIndex(String kbId, HnswIndex<String, float[], ChunkVector, Float> index) {
+            this.kbId = kbId;
+            this.index = index;
+        }
+
+        void add(ChunkVector item) {
+            lock.readLock().lock();
+            try {
+                try {
+                    index.add(item);
+                } catch (SizeLimitExceededException e) {
+                    grow();
+                    index.add(item);
+                }
+                chunkIdsByDoc.computeIfAbsent(item.docId(), key -> ConcurrentHashMap.newKeySet()).add(item.id());
+                dirty = true;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * 使用快照中的索引, 构建期间已经写入的 chunk 一并迁移过去
+         */
+        void adopt(HnswIndex<String, float[], ChunkVector, Float> snapshot) {
+            lock.writeLock().lock();
+            try {
+                for (ChunkVector item : index.items()) {
+                    if (snapshot.size() >= snapshot.getMaxItemCount()) {
+                        snapshot.resize(snapshot.getMaxItemCount() * 2);
+                    }
+                    snapshot.add(item);
+                }
+                snapshot.items().forEach(item -> chunkIdsByDoc
+                        .computeIfAbsent(item.docId(), key -> ConcurrentHashMap.newKeySet())
+                        .add(item.id()));
+                index = snapshot;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private synchronized void grow() {
+            if (index.size() < index.getMaxItemCount()) {
+                return;
+            }
+            int capacity = index.getMaxItemCount() * 2;
+            index.resize(capacity);
+            log.info("HNSW 索引扩容: kbId={}, capacity={}", kbId, capacity);
+        }
+
+        void remove(String chunkId) {
+            lock.readLock().lock();
+            try {
+                index.remove(chunkId, 0);
+                dirty = true;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void removeDocument(String docId) {
+            Set<String> chunkIds = chunkIdsByDoc.remove(docId);
+            if (chunkIds != null) {
+                chunkIds.forEach(this::remove);
+            }
+        }
+
+        List<String> search(float[] embedding, int topK) {
+            return index.findNearest(embedding, topK).stream()
+                    .map(SearchResult::item)
+                    .map(ChunkVector::id)
+                    .toList();
+        }
+    }
+
+    @Override
+    public List<String> search(String kbId, float[] embedding, int topK) {
+        KbIndex kbIndex = indexes.get(kbId);
+        if (kbIndex == null || !kbIndex.ready) {
+            return fallback.search(kbId, embedding, topK);
+        }
+        List<String> ids = kbIndex.search(embedding, topK);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        // 按索引给出的顺序返回内容, 已被删除的 chunk 会被跳过
+        Map<String, String> contents = new HashMap<>();
+        chunkBgeM3Mapper.selectContentByIds(ids).forEach(chunk -> contents.put(chunk.getId(), chunk.getContent()));
+        return ids.stream()
+                .map(contents::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public void onChunksAdded(List<ChunkBgeM3> chunks) {
+        for (ChunkBgeM3 chunk : chunks) {
+            if (chunk.getId() == null || chunk.getEmbedding() == null) {
+                continue;
+            }
+            // 启动之后新建的知识库, 索引为空即可视为就绪
+            KbIndex kbIndex = indexes.computeIfAbsent(chunk.getKbId(), kbId -> {
+                KbIndex created = new KbIndex(kbId, newIndex(properties.getInitialCapacity()));
+                created.ready = true;
+                return created;
+            });
+            kbIndex.add(new ChunkVector(chunk.getId(), chunk.getDocId(), chunk.getEmbedding()));
+        }
+    }
+
+    @Override
+    public void onDocumentDeleted(String kbId, String docId) {
+        KbIndex kbIndex = indexes.get(kbId);
+        if (kbIndex != null) {
+            kbIndex.removeDocument(docId);
+        }
+    }
+
+    @Override
+    public void onKnowledgeBaseDeleted(String kbId) {
+        indexes.remove(kbId);
+        Path snapshot = snapshotPath(kbId);
+        if (snapshot != null) {
+            try {
+                Files.deleteIfExists(snapshot);
+            } catch (IOException e) {
+                log.warn("删除 HNSW 索引快照失败: kbId={}, error={}", kbId, e.getMessage());
+            }
+        }
+    }
+
+    private HnswIndex<String, float[], ChunkVector, Float> newIndex(int capacity) {
+        return HnswIndex.newBuilder(properties.getDimensions(), DISTANCE_FUNCTION, capacity)
+                .withM(properties.getM())
+                .withEfConstruction(properties.getEfConstruction())
+                .withEf(properties.getEf())
+                .withRemoveEnabled()
+                .build();
+    }
+
+    /**
+     * 应用就绪后在后台构建所有知识库的索引, 不阻塞启动
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        // 先登记所有已有的知识库, 构建完成前它们的检索都走 pgvector
+        List<KnowledgeBase> knowledgeBases = knowledgeBaseMapper.selectAll();
+        knowledgeBases.forEach(knowledgeBase -> indexes.computeIfAbsent(knowledgeBase.getId(),
+                key -> new KbIndex(key, newIndex(properties.getInitialCapacity()))));
+
+        Thread loader = new Thread(() -> {
+            for (KnowledgeBase knowledgeBase : knowledgeBases) {
+                try {
+                    build(knowledgeBase.getId(), versionOf(knowledgeBase));
+                } catch (Exception e) {
+                    log.error("构建 HNSW 索引失败, 该知识库继续使用 pgvector 检索: kbId={}", knowledgeBase.getId(), e);
+                }
+            }
+        }, "hnsw-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+
+        long intervalMillis = properties.getSyncInterval().toMillis();
+        syncExecutor.scheduleWithFixedDelay(this::sync, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 与数据库同步: chunk 版本号变化的知识库重新对账, 登记新建的知识库, 移除已删除的知识库
+     * 本节点的写入同样会使版本号变化, 对账是幂等的, 已经同步的 chunk 不会重复加入
+     */
+    private void sync() {
+        try {
+            // 先记下已有的索引再查询: 查询之后才在本节点创建的索引不能当作已删除
+            List<String> known = List.copyOf(indexes.keySet());
+            Map<String, Long> versions = new HashMap<>();
+            knowledgeBaseMapper.selectAll().forEach(knowledgeBase ->
+                    versions.put(knowledgeBase.getId(), versionOf(knowledgeBase)));
+
+            for (String kbId : known) {
+                if (!versions.containsKey(kbId)) {
+                    log.info("知识库已删除, 移除 HNSW 索引: kbId={}", kbId);
+                    onKnowledgeBaseDeleted(kbId);
+                }
+            }
+            versions.forEach((kbId, version) -> {
+                try {
+                    KbIndex kbIndex = indexes.get(kbId);
+                    if (kbIndex == null) {
+                        // 其他节点新建的知识库, 对账完成后再登记, 之前的检索走 pgvector
+                        KbIndex created = new KbIndex(kbId, newIndex(properties.getInitialCapacity()));
+                        reconcile(created);
+                        created.syncedVersion = version;
+                        created.ready = true;
+                        // 同时在本节点写入而创建的索引保留, 下次同步时对账
+                        indexes.putIfAbsent(kbId, created);
+                        return;
+                    }
+                    // 还在启动构建中的索引由构建过程负责
+                    if (!kbIndex.ready || kbIndex.syncedVersion == version) {
+                        return;
+                    }
+                    reconcile(kbIndex);
+                    kbIndex.syncedVersion = version;
+                } catch (Exception e) {
+                    log.warn("HNSW 索引对账失败, 下次同步时重试: kbId={}, error={}", kbId, e.getMessage());
+                }
+            });
+        } catch (Exception e) {
+            log.warn("HNSW 索引同步失败: error={}", e.getMessage());
+        }
+    }
+
+    private static long versionOf(KnowledgeBase knowledgeBase) {
+        return knowledgeBase.getChunkVersion() != null ? knowledgeBase.getChunkVersion() : 0;
+    }
+
+    private void build(String kbId, long chunkVersion) {
+        long start = System.currentTimeMillis();
+        KbIndex kbIndex = indexes.get(kbId);
+        if (kbIndex == null) {
+            // 构建开始前知识库已被删除
+            return;
+        }
+        HnswIndex<String, float[], ChunkVector, Float> snapshot = loadSnapshot(kbId);
+        if (snapshot != null) {
+            kbIndex.adopt(snapshot);
+            reconcile(kbIndex);
+        } else {
+            forEachPage(kbId, chunkBgeM3Mapper::selectVectorsByKbId, ChunkBgeM3::getId,
+                    page -> page.forEach(chunk -> kbIndex.add(toItem(chunk))));
+        }
+        // 版本号在加载之前读取, 加载期间提交的变更会在下一次同步时对账
+        kbIndex.syncedVersion = chunkVersion;
+        kbIndex.ready = true;
+        log.info("HNSW 索引就绪: kbId={}, size={}, fromSnapshot={}, cost={}ms",
+                kbId, kbIndex.index.size(), snapshot != null, System.currentTimeMillis() - start);
+        if (kbIndex.dirty) {
+            saveSnapshot(kbIndex);
+        }
+    }
+
+    /**
+     * 索引与数据库对账: 删除数据库中已不存在的 chunk, 补充索引中缺少的 chunk
+     */
+    private void reconcile(KbIndex kbIndex) {
+        Set<String> indexedIds = kbIndex.index.items().stream()
+                .map(ChunkVector::id)
+                .collect(Collectors.toCollection(HashSet::new));
+        List<String> missingIds = new ArrayList<>();
+        forEachPage(kbIndex.kbId, chunkBgeM3Mapper::selectIdsByKbId, Function.identity(), page -> {
+            for (String id : page) {
+                if (!indexedIds.remove(id)) {
+                    missingIds.add(id);
+                }
+            }
+        });
+        // 剩下的都是已经从数据库删除的
+        indexedIds.forEach(id -> kbIndex.index.get(id).ifPresent(item -> {
+            kbIndex.remove(id);
+            Set<String> docChunks = kbIndex.chunkIdsByDoc.get(item.docId());
+            if (docChunks != null) {
+                docChunks.remove(id);
+            }
+        }));
+        for (int from = 0; from < missingIds.size(); from += properties.getLoadPageSize()) {
+            List<String> ids = missingIds.subList(from, Math.min(from + properties.getLoadPageSize(), missingIds.size()));
+            chunkBgeM3Mapper.selectVectorsByIds(ids).forEach(chunk -> kbIndex.add(toItem(chunk)));
+        }
+        log.info("HNSW 索引对账完成: kbId={}, removed={}, added={}",
+                kbIndex.kbId, indexedIds.size(), missingIds.size());
+    }
+
+    // 按 id 做 keyset 分页, 避免一次性把整个知识库读入内存
+    private <T> void forEachPage(String kbId,
+                                 PageQuery<T> query,
+                                 Function<T, String> idExtractor,
+                                 Consumer<List<T>> consumer) {
+        String afterId = null;
+        while (true) {
+            List<T> page = query.select(kbId, afterId, properties.getLoadPageSize());
+            if (page.isEmpty()) {
+                return;
+            }
+            consumer.accept(page);
+            if (page.size() < properties.getLoadPageSize()) {
+                return;
+            }
+            afterId = idExtractor.apply(page.get(page.size() - 1));
+        }
+    }
+
+    @FunctionalInterface
+    private interface PageQuery<T> {
+        List<T> select(String kbId, String afterId, int limit);
+    }
+
+    private static ChunkVector toItem(ChunkBgeM3 chunk) {
+        return new ChunkVector(chunk.getId(), chunk.getDocId(), chunk.getEmbedding());
+    }
+
+    private Path snapshotPath(String kbId) {
+        if (!StringUtils.hasText(properties.getSnapshotDir())) {
+            return null;
+        }
+        return Paths.get(properties.getSnapshotDir()).resolve(kbId + SNAPSHOT_SUFFIX);
+    }
+
+    private HnswIndex<String, float[], ChunkVector, Float> loadSnapshot(String kbId) {
+        Path path = snapshotPath(kbId);
+        if (path == null || !Files.exists(path)) {
+            return null;
+        }
+        try {
+            HnswIndex<String, float[], ChunkVector, Float> index = HnswIndex.load(path, getClass().getClassLoader());
+            if (index.getDimensions() != properties.getDimensions()) {
+                log.warn("HNSW 索引快照维度不一致, 重新构建: kbId={}, snapshot={}, expected={}",
+                        kbId, index.getDimensions(), properties.getDimensions());
+                return null;
+            }
+            if (index.getDistanceFunction().getClass() != DISTANCE_FUNCTION.getClass()) {
+                log.warn("HNSW 索引快照的距离函数不一致, 重新构建: kbId={}, snapshot={}",
+                        kbId, index.getDistanceFunction().getClass().getSimpleName());
+                return null;
+            }
+            return index;
+        } catch (Exception e) {
+            log.warn("加载 HNSW 索引快照失败, 重新构建: kbId={}, error={}", kbId, e.getMessage());
+            return null;
+        }
+    }
+
+    private void saveSnapshot(KbIndex kbIndex) {
+        Path path = snapshotPath(kbIndex.kbId);
+        if (path == null) {
+            return;
+        }
+        // 保存期间持有写锁, 写入和删除等待保存完成, 快照中不会出现修改到一半的图
+        kbIndex.lock.writeLock().lock();
+        try {
+            Files.createDirectories(path.getParent());
+            // 先写临时文件再替换, 避免进程中断留下不完整的快照
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                kbIndex.index.save(out);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            kbIndex.dirty = false;
+            log.info("HNSW 索引快照已保存: kbId={}, size={}", kbIndex.kbId, kbIndex.index.size());
+        } catch (IOException e) {
+            log.warn("保存 HNSW 索引快照失败: kbId={}, error={}", kbIndex.kbId, e.getMessage());
+        } finally {
+            kbIndex.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        syncExecutor.shutdownNow();
+        indexes.values().stream()
+                .filter(kbIndex -> kbIndex.ready && kbIndex.dirty)
+                .forEach(this::saveSnapshot);
+    }
+}
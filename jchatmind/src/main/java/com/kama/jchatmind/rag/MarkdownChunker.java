@@ -0,0 +1,256 @@
+package com.kama.jchatmind.rag;
+
+import com.kama.jchatmind.agent.memory.TokenEstimator;
+import com.kama.jchatmind.config.IngestionProperties;
+import com.kama.jchatmind.service.MarkdownParserService;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按标题结构和大小切分 Markdown 章节
+ * 1. 每个章节单独切分, chunk 不会跨越不属于同一父标题的章节
+ * 2. 超过目标大小的章节按内容块（段落、列表）拆分, 超长的段落再按句子拆分, 相邻 chunk 之间保留一定的重叠
+ * 3. 表格和代码块作为整体保留, 即使超过目标大小也不拆分
+ * 4. 过小的章节（包括只有标题的章节）与后面同一父标题下的章节合并, 被合并章节的标题保留在内容中
+ */
+@Component
+@AllArgsConstructor
+public class MarkdownChunker {
+
+    private final IngestionProperties properties;
+
+    /**
+     * @param headingPath 标题路径, 多个章节合并时为它们共同的标题路径
+     * @param startOffset chunk 在原文中的起始偏移量
+     * @param endOffset   chunk 在原文中的结束偏移量（不包含）
+     */
+    public record Chunk(List<String> headingPath, String content, int startOffset, int endOffset, int tokens) {
+
+        /**
+         * 用于向量化的文本, 标题路径和内容一起参与检索
+         */
+        public String embeddingText() {
+            if (headingPath.isEmpty()) {
+                return content;
+            }
+            return String.join(" > ", headingPath) + "\n" + content;
+        }
+    }
+
+    // 切分的最小单位: 一个完整的内容块, 或者超长段落中的一个句子
+    private record Unit(String text, int startOffset, int endOffset, int tokens, boolean atomic, boolean blockStart) {
+    }
+
+    // 等待与后面的章节合并的 chunk, scope 为它所在章节的父标题路径, headingOnly 表示其中只有标题行
+    private record Pending(Chunk chunk, List<String> scope, boolean headingOnly) {
+    }
+
+    public List<Chunk> chunk(List<MarkdownParserService.MarkdownSection> sections) {
+        IngestionProperties.Chunking config = properties.getChunking();
+        List<Chunk> chunks = new ArrayList<>();
+        Pending pending = null;
+        for (MarkdownParserService.MarkdownSection section : sections) {
+            List<Chunk> pieces = split(section, config);
+            if (pieces.isEmpty()) {
+                // 只有标题的章节, 标题行并入后面的子章节, 不能合并时丢弃
+                Chunk heading = new Chunk(section.getHeadingPath(), headingLine(section),
+                        section.getStartOffset(), section.getEndOffset(), 0);
+                if (pending != null) {
+                    Chunk merged = merge(pending, section,
+                            heading.content(), heading.endOffset(), config);
+                    if (merged != null) {
+                        pending = new Pending(merged, pending.scope(), pending.headingOnly());
+                        continue;
+                    }
+                    flush(pending, chunks);
+                }
+                pending = new Pending(heading, parent(section.getHeadingPath()), true);
+                continue;
+            }
+            for (int i = 0; i < pieces.size(); i++) {
+                Chunk piece = pieces.get(i);
+                List<String> scope = parent(section.getHeadingPath());
+                if (pending != null) {
+                    Chunk merged = merge(pending, section,
+                            headingLine(section) + "\n" + piece.content(), piece.endOffset(), config);
+                    if (merged != null) {
+                        piece = merged;
+                        scope = pending.scope();
+                    } else {
+                        flush(pending, chunks);
+                    }
+                    pending = null;
+                }
+                if (i == pieces.size() - 1 && piece.tokens() < config.getMinTokens()) {
+                    pending = new Pending(piece, scope, false);
+                } else {
+                    chunks.add(piece);
+                }
+            }
+        }
+        if (pending != null) {
+            flush(pending, chunks);
+        }
+        return chunks;
+    }
+
+    private static void flush(Pending pending, List<Chunk> chunks) {
+        if (!pending.headingOnly()) {
+            chunks.add(pending.chunk());
+        }
+    }
+
+    private static String headingLine(MarkdownParserService.MarkdownSection section) {
+        return "#".repeat(Math.max(1, section.getLevel())) + " " + section.getTitle();
+    }
+
+    /**
+     * 合并过小的 chunk 和后面章节的第一个 chunk, 不满足条件时返回 null
+     *
+     * @param appended 追加的内容, 以后面章节的标题行开头
+     */
+    private Chunk merge(Pending pending, MarkdownParserService.MarkdownSection section,
+                        String appended, int endOffset, IngestionProperties.Chunking config) {
+        Chunk previous = pending.chunk();
+        List<String> scope = pending.scope();
+        List<String> path = section.getHeadingPath();
+        // 只合并同一父标题下的章节
+        if (path.size() <= scope.size() || !isPrefix(scope, path)) {
+            return null;
+        }
+        String content = previous.content() + "\n" + appended;
+        int tokens = TokenEstimator.estimate(content);
+        if (tokens > config.getTargetTokens()) {
+            return null;
+        }
+        // 只有上级标题时使用子章节的标题路径, 否则使用共同的标题路径
+        List<String> headingPath = pending.headingOnly() && isPrefix(previous.headingPath(), path)
+                ? path
+                : commonPrefix(previous.headingPath(), path);
+        return new Chunk(headingPath, content,
+                previous.startOffset(), endOffset, tokens);
+    }
+
+    /**
+     * 单个章节按目标大小切分, 相邻 chunk 之间重叠 overlapTokens
+     */
+    private List<Chunk> split(MarkdownParserService.MarkdownSection section, IngestionProperties.Chunking config) {
+        List<Unit> units = toUnits(section, config.getTargetTokens());
+        List<Chunk> pieces = new ArrayList<>();
+        int start = 0;
+        while (start < units.size()) {
+            int end = start;
+            int tokens = 0;
+            while (end < units.size() && (end == start || tokens + units.get(end).tokens() <= config.getTargetTokens())) {
+                tokens += units.get(end).tokens();
+                end++;
+            }
+            pieces.add(build(section.getHeadingPath(), units, start, end));
+            if (end >= units.size()) {
+                break;
+            }
+            // 从当前 chunk 末尾往前取不超过 overlapTokens 的句子或段落, 作为下一个 chunk 的开头;
+            // 重叠部分加上下一个单元超过目标大小时减少重叠, 保证每个 chunk 都包含新内容
+            int next = end;
+            int overlap = 0;
+            int budget = Math.min(config.getOverlapTokens(), config.getTargetTokens() - units.get(end).tokens());
+            while (next - 1 > start
+                    && !units.get(next - 1).atomic()
+                    && overlap + units.get(next - 1).tokens() <= budget) {
+                next--;
+                overlap += units.get(next).tokens();
+            }
+            start = next;
+        }
+        return pieces;
+    }
+
+    private static Chunk build(List<String> headingPath, List<Unit> units, int start, int end) {
+        StringBuilder content = new StringBuilder();
+        for (int i = start; i < end; i++) {
+            Unit unit = units.get(i);
+            if (i > start && unit.blockStart()) {
+                content.append("\n");
+            }
+            content.append(unit.text());
+        }
+        String text = content.toString().strip();
+        return new Chunk(headingPath, text, units.get(start).startOffset(), units.get(end - 1).endOffset(),
+                TokenEstimator.estimate(text));
+    }
+
+    private static List<Unit> toUnits(MarkdownParserService.MarkdownSection section, int targetTokens) {
+        List<Unit> units = new ArrayList<>();
+        for (MarkdownParserService.MarkdownBlock block : section.getBlocks()) {
+            int tokens = TokenEstimator.estimate(block.getContent());
+            if (block.isAtomic() || tokens <= targetTokens) {
+                units.add(new Unit(block.getContent(), block.getStartOffset(), block.getEndOffset(), tokens,
+                        block.isAtomic(), true));
+                continue;
+            }
+            boolean blockStart = true;
+            for (int[] range : sentences(block.getContent())) {
+                String sentence = block.getContent().substring(range[0], range[1]);
+                int sentenceTokens = TokenEstimator.estimate(sentence);
+                // 没有标点的超长句子按字符数硬切
+                int step = sentenceTokens <= targetTokens
+                        ? sentence.length()
+                        : Math.max(1, (int) ((long) sentence.length() * targetTokens / sentenceTokens));
+                for (int from = 0; from < sentence.length(); from += step) {
+                    int to = Math.min(sentence.length(), from + step);
+                    String text = sentence.substring(from, to);
+                    units.add(new Unit(text, block.getStartOffset() + range[0] + from, block.getStartOffset() + range[0] + to,
+                            TokenEstimator.estimate(text), false, blockStart));
+                    blockStart = false;
+                }
+            }
+        }
+        return units;
+    }
+
+    /**
+     * 按句子切分, 句末标点和换行保留在句子末尾, 拼接所有句子可以还原原文
+     */
+    static List<int[]> sentences(String text) {
+        List<int[]> ranges = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            boolean boundary = c == '\n' || "。！？；!?;".indexOf(c) >= 0
+                    || (c == '.' && (i + 1 == text.length() || Character.isWhitespace(text.charAt(i + 1))));
+            if (boundary) {
+                // 句末的空白也归入当前句子
+                int end = i + 1;
+                while (end < text.length() && text.charAt(end) == ' ') {
+                    end++;
+                }
+                ranges.add(new int[]{start, end});
+                start = end;
+                i = end - 1;
+            }
+        }
+        if (start < text.length()) {
+            ranges.add(new int[]{start, text.length()});
+        }
+        return ranges;
+    }
+
+    private static List<String> parent(List<String> headingPath) {
+        return headingPath.isEmpty() ? headingPath : headingPath.subList(0, headingPath.size() - 1);
+    }
+
+    private static boolean isPrefix(List<String> prefix, List<String> path) {
+        return prefix.size() <= path.size() && path.subList(0, prefix.size()).equals(prefix);
+    }
+
+    private static List<String> commonPrefix(List<String> a, List<String> b) {
+        int length = 0;
+        while (length < a.size() && length < b.size() && a.get(length).equals(b.get(length))) {
+            length++;
+        }
+        return List.copyOf(a.subList(0, length));
+    }
+}
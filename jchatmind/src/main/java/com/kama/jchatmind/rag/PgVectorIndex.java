@@ -0,0 +1,40 @@
+package com.kama.jchatmind.rag;
+
+import com.kama.jchatmind.mapper.ChunkBgeM3Mapper;
+import com.kama.jchatmind.model.entity.ChunkBgeM3;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 基于 pgvector 的向量检索, 数据库即索引, 增删 chunk 时无需额外维护
+ */
+@Component
+@ConditionalOnProperty(name = "jchatmind.rag.vector-index", havingValue = "pgvector", matchIfMissing = true)
+public class PgVectorIndex implements VectorIndex {
+
+    private final ChunkBgeM3Mapper chunkBgeM3Mapper;
+
+    public PgVectorIndex(ChunkBgeM3Mapper chunkBgeM3Mapper) {
+        this.chunkBgeM3Mapper = chunkBgeM3Mapper;
+    }
+
+    @Override
+    public List<String> search(String kbId, float[] embedding, int topK) {
+        List<ChunkBgeM3> chunks = chunkBgeM3Mapper.similaritySearch(kbId, embedding, topK);
+        return chunks.stream().map(ChunkBgeM3::getContent).toList();
+    }
+
+    @Override
+    public void onChunksAdded(List<ChunkBgeM3> chunks) {
+    }
+
+    @Override
+    public void onDocumentDeleted(String kbId, String docId) {
+    }
+
+    @Override
+    public void onKnowledgeBaseDeleted(String kbId) {
+    }
+}
@@ -0,0 +1,104 @@
+package com.kama.jchatmind.rag;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.kama.jchatmind.mapper.KnowledgeBaseMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * RAG 查询缓存
+ * 1. 查询文本 -> embedding, 避免相同的问题重复调用 bge-m3
+ * 2. (kbId, 查询文本, topK, 知识库版本) -> 检索结果, 避免重复扫描 pgvector
+ * 知识库版本号保存在 knowledge_base.chunk_version 中, 与 chunk 的变更在同一事务中递增,
+ * 任何节点写入或删除 chunk 后, 所有节点都不会再命中旧版本的检索结果。
+ * 每次检索读取一次版本号（按主键查询）, 远小于一次向量检索的开销
+ */
+@Slf4j
+@Component
+public class RagCache {
+
+    private final Cache<String, float[]> embeddingCache;
+
+    private final Cache<SearchKey, List<String>> searchCache;
+
+    private final KnowledgeBaseMapper knowledgeBaseMapper;
+
+    public RagCache(
+            @Value("${jchatmind.rag.cache.embedding.max-size:10000}") long embeddingMaxSize,
+            @Value("${jchatmind.rag.cache.embedding.ttl:1h}") Duration embeddingTtl,
+            @Value("${jchatmind.rag.cache.search.max-size:5000}") long searchMaxSize,
+            @Value("${jchatmind.rag.cache.search.ttl:10m}") Duration searchTtl,
+            KnowledgeBaseMapper knowledgeBaseMapper,
+            ObjectProvider<MeterRegistry> meterRegistryProvider
+    ) {
+        this.knowledgeBaseMapper = knowledgeBaseMapper;
+        this.embeddingCache = Caffeine.newBuilder()
+                .maximumSize(embeddingMaxSize)
+                .expireAfterWrite(embeddingTtl)
+                .recordStats()
+                .build();
+        this.searchCache = Caffeine.newBuilder()
+                .maximumSize(searchMaxSize)
+                .expireAfterWrite(searchTtl)
+                .recordStats()
+                .build();
+
+        // 命中率等指标: cache_gets_total{cache="rag.embedding", result="hit|miss"}
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        CaffeineCacheMetrics.monitor(meterRegistry, embeddingCache, "rag.embedding");
+        CaffeineCacheMetrics.monitor(meterRegistry, searchCache, "rag.search");
+    }
+
+    private record SearchKey(String kbId, String query, int topK, long kbVersion) {
+    }
+
+    /**
+     * 归一化查询文本: 去掉首尾空白、合并连续空白
+     * 不统一大小写: bge-m3 对大小写敏感, 缓存的向量必须来自同一段文本
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * 加载器收到的是归一化后的文本, 缓存的向量与缓存键对应的文本一致
+     */
+    public float[] getEmbedding(String text, Function<String, float[]> loader) {
+        return embeddingCache.get(normalize(text), loader);
+    }
+
+    public List<String> getSearchResult(String kbId, String query, int topK, Function<String, List<String>> loader) {
+        SearchKey key = new SearchKey(kbId, normalize(query), topK, currentVersion(kbId));
+        return searchCache.get(key, k -> List.copyOf(loader.apply(k.query())));
+    }
+
+    /**
+     * 知识库当前的版本号, 从数据库读取, 任何节点的 chunk 变化提交后递增
+     */
+    public long currentVersion(String kbId) {
+        Long version = knowledgeBaseMapper.selectChunkVersion(kbId);
+        return version != null ? version : 0;
+    }
+
+    /**
+     * 本节点写入或删除了知识库的 chunk, 立即清除本节点缓存的检索结果
+     * 版本号已经在数据库中递增, 这里只是提前释放不会再被命中的缓存
+     */
+    public void invalidateKnowledgeBase(String kbId) {
+        searchCache.asMap().keySet().removeIf(key -> key.kbId().equals(kbId));
+        log.debug("知识库检索缓存已失效: kbId={}", kbId);
+    }
+}
@@ -0,0 +1,35 @@
+package com.kama.jchatmind.rag;
+
+import com.kama.jchatmind.model.entity.ChunkBgeM3;
+
+import java.util.List;
+
+/**
+ * 向量检索后端
+ * 通过 jchatmind.rag.vector-index 选择实现:
+ * pgvector（默认, 直接在 chunk_bge_m3 表上排序）或 hnsw（进程内 HNSW 近似索引）
+ */
+public interface VectorIndex {
+
+    /**
+     * 在指定知识库中检索与 embedding 最相近的 chunk
+     *
+     * @return chunk 内容, 按相似度从高到低排列
+     */
+    List<String> search(String kbId, float[] embedding, int topK);
+
+    /**
+     * chunk 已写入 chunk_bge_m3 表（id 已回填）
+     */
+    void onChunksAdded(List<ChunkBgeM3> chunks);
+
+    /**
+     * 文档的 chunk 已从 chunk_bge_m3 表中删除
+     */
+    void onDocumentDeleted(String kbId, String docId);
+
+    /**
+     * 知识库已删除
+     */
+    void onKnowledgeBaseDeleted(String kbId);
+}
@@ -9,7 +9,10 @@ import com.kama.jchatmind.model.response.GetChatMessagesResponse;
 import java.util.List;
 
 public interface ChatMessageFacadeService {
-    GetChatMessagesResponse getChatMessagesBySessionId(String sessionId);
+    /**
+     * 按 (created_at, id) 游标分页查询会话消息, before 和 after 都为空时返回最新的一页
+     */
+    GetChatMessagesResponse getChatMessagesBySessionId(String sessionId, String before, String after, Integer limit);
 
     List<ChatMessageDTO> getChatMessagesBySessionIdRecently(String sessionId, int limit);
 
@@ -17,5 +17,8 @@ public interface DocumentFacadeService {
 
     void deleteDocument(String documentId);
 
+    // 重新执行失败的入库任务
+    void reindexDocument(String documentId);
+
     void updateDocument(String documentId, UpdateDocumentRequest request);
 }
@@ -1,6 +1,7 @@
 package com.kama.jchatmind.service;
 
 import lombok.AllArgsConstructor;
+import lombok.Builder;
 import lombok.Data;
 import lombok.ToString;
 
@@ -12,10 +13,11 @@ import java.util.List;
  */
 public interface MarkdownParserService {
     /**
-     * 解析 Markdown 文件，提取标题和对应的内容
+     * 解析 Markdown 文件，按标题切分章节
+     * 第一个标题之前的内容作为一个没有标题的章节返回
      *
      * @param inputStream Markdown 文件输入流
-     * @return 标题和内容的列表，每个元素包含标题和该标题下的内容
+     * @return 章节列表，每个元素包含标题路径和该标题下（不含子标题）的内容块
      */
     List<MarkdownSection> parseMarkdown(InputStream inputStream);
     
@@ -23,10 +25,34 @@ public interface MarkdownParserService {
      * Markdown 章节数据类
      */
     @Data
+    @Builder
     @AllArgsConstructor
     @ToString
     class MarkdownSection {
         private String title;
         private String content;
+        // 从一级标题到当前标题的路径
+        private List<String> headingPath;
+        // 标题级别, 第一个标题之前的内容为 0
+        private int level;
+        // 章节（包括标题行）在原文中的字符偏移量 [startOffset, endOffset)
+        private int startOffset;
+        private int endOffset;
+        // 按顺序排列的顶层内容块（段落、列表、表格、代码块等）
+        private List<MarkdownBlock> blocks;
+    }
+
+    /**
+     * Markdown 内容块, 内容为原文中的 Markdown 文本
+     */
+    @Data
+    @AllArgsConstructor
+    @ToString
+    class MarkdownBlock {
+        private String content;
+        private int startOffset;
+        private int endOffset;
+        // 表格和代码块不能拆分
+        private boolean atomic;
     }
 }
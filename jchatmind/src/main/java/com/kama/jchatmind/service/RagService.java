@@ -5,5 +5,8 @@ import java.util.List;
 public interface RagService {
     float[] embed(String text);
 
+    // 批量 embedding, 返回结果与 texts 顺序一致
+    List<float[]> embedBatch(List<String> texts);
+
     List<String> similaritySearch(String kbId, String title);
 }
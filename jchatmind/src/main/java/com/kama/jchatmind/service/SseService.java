@@ -5,7 +5,13 @@ import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 public interface SseService {
     // 没有用户系统，使用 chatSessionId 作为连接标识
-    SseEmitter connect(String chatSessionId);
+    default SseEmitter connect(String chatSessionId) {
+        return connect(chatSessionId, null);
+    }
 
+    // lastEventId 为浏览器重连时带上的 Last-Event-ID, 之后的事件会被补发
+    SseEmitter connect(String chatSessionId, String lastEventId);
+
+    // 没有在线的订阅者时消息只进入补发缓冲区, 不会抛出异常
     void send(String chatSessionId, SseMessage message);
 }
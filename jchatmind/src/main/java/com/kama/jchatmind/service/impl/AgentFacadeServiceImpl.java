@@ -1,6 +1,8 @@
 package com.kama.jchatmind.service.impl;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.kama.jchatmind.agent.AgentRuntimeTemplateCache;
+import com.kama.jchatmind.agent.SemanticResponseCache;
 import com.kama.jchatmind.converter.AgentConverter;
 import com.kama.jchatmind.exception.BizException;
 import com.kama.jchatmind.mapper.AgentMapper;
@@ -26,6 +28,8 @@ public class AgentFacadeServiceImpl implements AgentFacadeService {
 
     private final AgentMapper agentMapper;
     private final AgentConverter agentConverter;
+    private final AgentRuntimeTemplateCache agentRuntimeTemplateCache;
+    private final SemanticResponseCache semanticResponseCache;
 
     @Override
     public GetAgentsResponse getAgents() {
@@ -84,6 +88,8 @@ public class AgentFacadeServiceImpl implements AgentFacadeService {
         if (result <= 0) {
             throw new BizException("删除 agent 失败");
         }
+        agentRuntimeTemplateCache.invalidateAgent(agentId);
+        semanticResponseCache.invalidateAgent(agentId);
     }
 
     @Override
@@ -114,6 +120,8 @@ public class AgentFacadeServiceImpl implements AgentFacadeService {
             if (result <= 0) {
                 throw new BizException("更新 agent 失败");
             }
+            agentRuntimeTemplateCache.invalidateAgent(agentId);
+            semanticResponseCache.invalidateAgent(agentId);
         } catch (JsonProcessingException e) {
             throw new BizException("更新 agent 时发生序列化错误: " + e.getMessage());
         }
@@ -13,27 +13,61 @@ import com.kama.jchatmind.model.response.CreateChatMessageResponse;
 import com.kama.jchatmind.model.response.GetChatMessagesResponse;
 import com.kama.jchatmind.model.vo.ChatMessageVO;
 import com.kama.jchatmind.service.ChatMessageFacadeService;
+import com.kama.jchatmind.tracing.Spans;
+import io.micrometer.tracing.Tracer;
 import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 @Service
 @AllArgsConstructor
 public class ChatMessageFacadeServiceImpl implements ChatMessageFacadeService {
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
+    private static final int MAX_PAGE_SIZE = 200;
+
     private final ChatMessageMapper chatMessageMapper;
     private final ChatMessageConverter chatMessageConverter;
     private final ApplicationEventPublisher publisher;
+    private final ObjectProvider<Tracer> tracerProvider;
 
     @Override
-    public GetChatMessagesResponse getChatMessagesBySessionId(String sessionId) {
-        List<ChatMessage> chatMessages = chatMessageMapper.selectBySessionId(sessionId);
-        List<ChatMessageVO> result = new ArrayList<>();
+    public GetChatMessagesResponse getChatMessagesBySessionId(String sessionId, String before, String after, Integer limit) {
+        if (before != null && after != null) {
+            throw new BizException("before 和 after 不能同时指定");
+        }
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        // 多查一条用来判断是否还有更多
+        List<ChatMessage> chatMessages;
+        if (after != null) {
+            Cursor cursor = Cursor.decode(after);
+            chatMessages = new ArrayList<>(chatMessageMapper.selectBySessionIdAfter(
+                    sessionId, cursor.createdAt(), cursor.id(), pageSize + 1));
+        } else {
+            Cursor cursor = before != null ? Cursor.decode(before) : null;
+            chatMessages = new ArrayList<>(chatMessageMapper.selectBySessionIdBefore(
+                    sessionId,
+                    cursor != null ? cursor.createdAt() : null,
+                    cursor != null ? cursor.id() : null,
+                    pageSize + 1));
+        }
+        boolean hasMore = chatMessages.size() > pageSize;
+        if (hasMore) {
+            chatMessages.remove(chatMessages.size() - 1);
+        }
+        if (after == null) {
+            // 倒序查询的结果转回时间正序
+            Collections.reverse(chatMessages);
+        }
 
+        List<ChatMessageVO> result = new ArrayList<>();
         for (ChatMessage chatMessage : chatMessages) {
             try {
                 ChatMessageVO vo = chatMessageConverter.toVO(chatMessage);
@@ -45,9 +79,40 @@ public class ChatMessageFacadeServiceImpl implements ChatMessageFacadeService {
 
         return GetChatMessagesResponse.builder()
                 .chatMessages(result.toArray(new ChatMessageVO[0]))
+                .hasMore(hasMore)
+                .prevCursor(chatMessages.isEmpty() ? before : Cursor.of(chatMessages.get(0)).encode())
+                .nextCursor(chatMessages.isEmpty() ? after : Cursor.of(chatMessages.get(chatMessages.size() - 1)).encode())
                 .build();
     }
 
+    /**
+     * 分页游标, 对前端是不透明的字符串
+     */
+    private record Cursor(LocalDateTime createdAt, String id) {
+
+        static Cursor of(ChatMessage chatMessage) {
+            return new Cursor(chatMessage.getCreatedAt(), chatMessage.getId());
+        }
+
+        String encode() {
+            String raw = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String value) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                return new Cursor(
+                        LocalDateTime.parse(raw.substring(0, separator)),
+                        UUID.fromString(raw.substring(separator + 1)).toString()
+                );
+            } catch (RuntimeException e) {
+                throw new BizException("非法的分页游标: " + value);
+            }
+        }
+    }
+
     @Override
     public List<ChatMessageDTO> getChatMessagesBySessionIdRecently(String sessionId, int limit) {
         List<ChatMessage> chatMessages = chatMessageMapper.selectBySessionIdRecently(sessionId, limit);
@@ -65,18 +130,25 @@ public class ChatMessageFacadeServiceImpl implements ChatMessageFacadeService {
 
     @Override
     public CreateChatMessageResponse createChatMessage(CreateChatMessageRequest request) {
-        ChatMessage chatMessage = doCreateChatMessage(request);
-        // 发布聊天通知事件
-        publisher.publishEvent(new ChatEvent(
-                        request.getAgentId(),
-                        chatMessage.getSessionId(),
-                        chatMessage.getContent()
-                )
-        );
-        // 返回生成的 chatMessageId
-        return CreateChatMessageResponse.builder()
-                .chatMessageId(chatMessage.getId())
-                .build();
+        // 一条用户消息触发的 Agent 运行、模型调用和工具调用都在这个 span 下面
+        Tracer tracer = tracerProvider.getIfAvailable(() -> Tracer.NOOP);
+        return Spans.inSpan(tracer, tracer.nextSpan()
+                .name("chat.message.create")
+                .tag("agent.id", String.valueOf(request.getAgentId()))
+                .tag("chat.session.id", String.valueOf(request.getSessionId())), () -> {
+            ChatMessage chatMessage = doCreateChatMessage(request);
+            // 发布聊天通知事件
+            publisher.publishEvent(new ChatEvent(
+                            request.getAgentId(),
+                            chatMessage.getSessionId(),
+                            chatMessage.getContent()
+                    )
+            );
+            // 返回生成的 chatMessageId
+            return CreateChatMessageResponse.builder()
+                    .chatMessageId(chatMessage.getId())
+                    .build();
+        });
     }
 
     @Override
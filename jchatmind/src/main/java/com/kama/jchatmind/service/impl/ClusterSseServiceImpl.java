@@ -0,0 +1,275 @@
+package com.kama.jchatmind.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kama.jchatmind.config.SseProperties;
+import com.kama.jchatmind.message.SseMessage;
+import com.kama.jchatmind.service.SseService;
+import com.kama.jchatmind.tracing.Spans;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.regex.Pattern;
+
+/**
+ * 集群模式的 SSE 服务
+ * 浏览器的 SSE 连接可能落在任意节点, 而 Agent 在收到消息的节点上运行。
+ * 本节点产生的事件先推送给本地订阅者, 再通过 PostgreSQL NOTIFY 广播给其他节点,
+ * 其他节点 LISTEN 到之后按相同的事件 ID 投递给各自的订阅者并写入补发缓冲区,
+ * 因此客户端重连到任意节点都可以按 Last-Event-ID 补发。
+ * 超过 NOTIFY 负载上限的事件写入 sse_spill 表, 通知中只携带行 ID
+ */
+@Slf4j
+@Primary
+@Service
+@ConditionalOnProperty(name = "jchatmind.sse.cluster.enabled", havingValue = "true")
+public class ClusterSseServiceImpl implements SseService, DisposableBean {
+
+    private static final Pattern CHANNEL_PATTERN = Pattern.compile("[a-z_][a-z0-9_]*");
+
+    private static final String NOTIFY_SQL = "SELECT pg_notify(?, p) FROM unnest(?) AS p";
+
+    private static final String SPILL_INSERT_SQL = "INSERT INTO sse_spill (payload) VALUES (?) RETURNING id";
+
+    private static final String SPILL_SELECT_SQL = "SELECT payload FROM sse_spill WHERE id = ?";
+
+    private static final String SPILL_CLEAN_SQL =
+            "DELETE FROM sse_spill WHERE created_at < NOW() - ? * INTERVAL '1 second'";
+
+    private final SseServiceImpl localSseService;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final SseProperties.Cluster properties;
+
+    // 用于忽略本节点自己发出的通知
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final BlockingQueue<Envelope> outbox;
+
+    private final Thread publisher;
+    private final Thread listener;
+    private final ScheduledExecutorService spillCleaner;
+
+    private volatile boolean running = true;
+
+    private final Tracer tracer;
+
+    private final Counter spilledCounter;
+    private final Counter droppedCounter;
+
+    public ClusterSseServiceImpl(SseServiceImpl localSseService,
+                                 DataSource dataSource,
+                                 JdbcTemplate jdbcTemplate,
+                                 ObjectMapper objectMapper,
+                                 SseProperties sseProperties,
+                                 ObjectProvider<MeterRegistry> meterRegistryProvider,
+                                 ObjectProvider<Tracer> tracerProvider) {
+        this.localSseService = localSseService;
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.tracer = tracerProvider.getIfAvailable(() -> Tracer.NOOP);
+        this.properties = sseProperties.getCluster();
+        if (!CHANNEL_PATTERN.matcher(properties.getChannel()).matches()) {
+            throw new IllegalArgumentException("非法的 NOTIFY 频道名称: " + properties.getChannel());
+        }
+        this.outbox = new LinkedBlockingQueue<>(properties.getOutboxCapacity());
+
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        this.spilledCounter = Counter.builder("jchatmind.sse.cluster.spilled")
+                .description("超过 NOTIFY 负载上限而写入 sse_spill 表的事件数")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("jchatmind.sse.cluster.dropped")
+                .description("转发队列已满而没有广播到其他节点的事件数")
+                .register(meterRegistry);
+
+        this.publisher = new Thread(this::publishLoop, "sse-cluster-publisher");
+        this.publisher.setDaemon(true);
+        this.publisher.start();
+        this.listener = new Thread(this::listenLoop, "sse-cluster-listener");
+        this.listener.setDaemon(true);
+        this.listener.start();
+        this.spillCleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sse-spill-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.spillCleaner.scheduleWithFixedDelay(this::cleanSpill, 1, 1, TimeUnit.MINUTES);
+        log.info("SSE 集群模式已开启: nodeId={}, channel={}", nodeId, properties.getChannel());
+    }
+
+    /**
+     * 节点之间传递的事件, data 和 spillId 二选一
+     */
+    record Envelope(String node, String session, long id, String key, String data, Long spillId) {
+    }
+
+    @Override
+    public SseEmitter connect(String chatSessionId, String lastEventId) {
+        return localSseService.connect(chatSessionId, lastEventId);
+    }
+
+    @Override
+    public void send(String chatSessionId, SseMessage message) {
+        if (SseServiceImpl.isStreamingDelta(message)) {
+            publish(chatSessionId, message);
+            return;
+        }
+        Spans.inSpan(tracer, localSseService.sendSpan(chatSessionId, message).tag("sse.cluster", "true"),
+                () -> publish(chatSessionId, message));
+    }
+
+    private void publish(String chatSessionId, SseMessage message) {
+        String data = localSseService.serialize(message);
+        String key = SseServiceImpl.coalesceKey(message);
+        long eventId = localSseService.reserveEventId(chatSessionId);
+        // 本地订阅者不等待数据库往返
+        localSseService.deliver(chatSessionId, eventId, data, key);
+        if (!outbox.offer(new Envelope(nodeId, chatSessionId, eventId, key, data, null))) {
+            droppedCounter.increment();
+            log.warn("SSE 集群转发队列已满, 事件只推送给本节点: sessionId={}", chatSessionId);
+        }
+    }
+
+    private void publishLoop() {
+        List<Envelope> batch = new ArrayList<>();
+        while (running || !outbox.isEmpty()) {
+            try {
+                Envelope first = outbox.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                outbox.drainTo(batch, properties.getPublishBatchSize() - 1);
+                notifyAll(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("SSE 集群事件广播失败: size={}", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // 一次往返发出整批通知, 同一事务内的通知按顺序送达
+    private void notifyAll(List<Envelope> batch) throws JsonProcessingException {
+        String[] payloads = new String[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            payloads[i] = encode(batch.get(i));
+        }
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(NOTIFY_SQL)) {
+                ps.setString(1, properties.getChannel());
+                ps.setArray(2, connection.createArrayOf("text", payloads));
+                ps.executeQuery().close();
+            }
+            return null;
+        });
+    }
+
+    String encode(Envelope envelope) throws JsonProcessingException {
+        String payload = objectMapper.writeValueAsString(envelope);
+        if (payload.getBytes(StandardCharsets.UTF_8).length <= properties.getInlineMaxBytes()) {
+            return payload;
+        }
+        Long spillId = jdbcTemplate.queryForObject(SPILL_INSERT_SQL, Long.class, envelope.data());
+        spilledCounter.increment();
+        return objectMapper.writeValueAsString(new Envelope(
+                envelope.node(), envelope.session(), envelope.id(), envelope.key(), null, spillId));
+    }
+
+    // 使用一个独占的连接 LISTEN, 断开后自动重连; 断开期间的事件只能靠客户端重连到产生事件的节点补发
+    private void listenLoop() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + properties.getChannel());
+                }
+                log.info("SSE 集群监听已连接: channel={}", properties.getChannel());
+                int timeout = (int) properties.getListenPollInterval().toMillis();
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(timeout);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        receive(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("SSE 集群监听连接断开, {} 后重连: {}", properties.getReconnectBackoff(), e.getMessage());
+                try {
+                    Thread.sleep(properties.getReconnectBackoff().toMillis());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    void receive(String payload) {
+        try {
+            Envelope envelope = objectMapper.readValue(payload, Envelope.class);
+            if (nodeId.equals(envelope.node())) {
+                return;
+            }
+            String data = envelope.data();
+            if (envelope.spillId() != null) {
+                List<String> rows = jdbcTemplate.queryForList(SPILL_SELECT_SQL, String.class, envelope.spillId());
+                if (rows.isEmpty()) {
+                    log.warn("SSE 集群事件已过期: spillId={}", envelope.spillId());
+                    return;
+                }
+                data = rows.get(0);
+            }
+            localSseService.deliver(envelope.session(), envelope.id(), data, envelope.key());
+        } catch (Exception e) {
+            log.error("处理 SSE 集群事件失败", e);
+        }
+    }
+
+    private void cleanSpill() {
+        try {
+            jdbcTemplate.update(SPILL_CLEAN_SQL, properties.getSpillRetention().toSeconds());
+        } catch (Exception e) {
+            log.warn("清理 sse_spill 失败: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        spillCleaner.shutdownNow();
+        // 让已经入队的事件尽量广播出去
+        publisher.join(TimeUnit.SECONDS.toMillis(5));
+        listener.interrupt();
+    }
+}
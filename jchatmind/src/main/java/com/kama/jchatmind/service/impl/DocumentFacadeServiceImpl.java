@@ -12,20 +12,19 @@ import com.kama.jchatmind.model.response.CreateDocumentResponse;
 import com.kama.jchatmind.model.response.GetDocumentsResponse;
 import com.kama.jchatmind.model.vo.DocumentVO;
 import com.kama.jchatmind.mapper.ChunkBgeM3Mapper;
-import com.kama.jchatmind.model.entity.ChunkBgeM3;
+import com.kama.jchatmind.mapper.IngestionJobMapper;
+import com.kama.jchatmind.mapper.KnowledgeBaseMapper;
+import com.kama.jchatmind.rag.DocumentIngestionPipeline;
+import com.kama.jchatmind.rag.RagCache;
+import com.kama.jchatmind.rag.VectorIndex;
 import com.kama.jchatmind.service.DocumentFacadeService;
 import com.kama.jchatmind.service.DocumentStorageService;
-import com.kama.jchatmind.service.MarkdownParserService;
-import com.kama.jchatmind.service.RagService;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -38,9 +37,12 @@ public class DocumentFacadeServiceImpl implements DocumentFacadeService {
     private final DocumentMapper documentMapper;
     private final DocumentConverter documentConverter;
     private final DocumentStorageService documentStorageService;
-    private final MarkdownParserService markdownParserService;
-    private final RagService ragService;
     private final ChunkBgeM3Mapper chunkBgeM3Mapper;
+    private final RagCache ragCache;
+    private final VectorIndex vectorIndex;
+    private final IngestionJobMapper ingestionJobMapper;
+    private final KnowledgeBaseMapper knowledgeBaseMapper;
+    private final DocumentIngestionPipeline ingestionPipeline;
 
     @Override
     public GetDocumentsResponse getDocuments() {
@@ -116,6 +118,7 @@ public class DocumentFacadeServiceImpl implements DocumentFacadeService {
             String originalFilename = file.getOriginalFilename();
             String filetype = getFileType(originalFilename);
             long fileSize = file.getSize();
+            boolean markdown = "md".equalsIgnoreCase(filetype) || "markdown".equalsIgnoreCase(filetype);
 
             // 创建文档记录（先创建记录，获取 documentId）
             DocumentDTO documentDTO = DocumentDTO.builder()
@@ -123,6 +126,7 @@ public class DocumentFacadeServiceImpl implements DocumentFacadeService {
                     .filename(originalFilename)
                     .filetype(filetype)
                     .size(fileSize)
+                    .status(markdown ? DocumentDTO.Status.PENDING : DocumentDTO.Status.READY)
                     .build();
 
             Document document = documentConverter.toEntity(documentDTO);
@@ -158,9 +162,9 @@ public class DocumentFacadeServiceImpl implements DocumentFacadeService {
 
             log.info("文档上传成功: kbId={}, documentId={}, filename={}", kbId, documentId, originalFilename);
 
-            // 如果是 Markdown 文件，进行解析并生成 chunks
-            if ("md".equalsIgnoreCase(filetype) || "markdown".equalsIgnoreCase(filetype)) {
-                processMarkdownDocument(kbId, documentId, filePath);
+            // 如果是 Markdown 文件，交给入库流水线在后台解析并生成 chunks
+            if (markdown) {
+                ingestionPipeline.submit(documentId, kbId, filePath);
             } else {
                 // TODO: 未来可以增加其他文件类型的处理逻辑
                 log.warn("待新增处理的文件类型: {}", filetype);
@@ -194,75 +198,23 @@ public class DocumentFacadeServiceImpl implements DocumentFacadeService {
             // 即使文件删除失败，也继续删除数据库记录
         }
 
-        // 删除数据库记录
+        // 先删除文档记录: 正在写入 chunk 的入库事务持有文档的共享锁, 删除会等待它提交,
+        // 之后再删除 chunk 可以清理掉刚写入的数据; 文档删除后入库任务不会再写入
         int result = documentMapper.deleteById(documentId);
         if (result <= 0) {
             throw new BizException("删除文档失败");
         }
-    }
 
-    /**
-     * 处理 Markdown 文档，解析并生成 chunks
-     */
-    private void processMarkdownDocument(String kbId, String documentId, String filePath) {
-        try {
-            log.info("开始处理 Markdown 文档: kbId={}, documentId={}, filePath={}", kbId, documentId, filePath);
-
-            // 从保存的文件路径读取文件
-            Path path = documentStorageService.getFilePath(filePath);
-            try (InputStream inputStream = Files.newInputStream(path)) {
-                // 解析 Markdown 文件
-                List<MarkdownParserService.MarkdownSection> sections = markdownParserService.parseMarkdown(inputStream);
-
-                System.out.println(sections);
-
-                if (sections.isEmpty()) {
-                    log.warn("Markdown 文档解析后没有找到任何章节: documentId={}", documentId);
-                    return;
-                }
-
-                LocalDateTime now = LocalDateTime.now();
-                int chunkCount = 0;
-
-                // 为每个章节生成 chunk
-                for (MarkdownParserService.MarkdownSection section : sections) {
-                    String title = section.getTitle();
-                    String content = section.getContent();
-
-                    if (title == null || title.trim().isEmpty()) {
-                        continue;
-                    }
-
-                    // 对标题进行 embedding
-                    float[] embedding = ragService.embed(title);
-
-                    // 创建 ChunkBgeM3 实体
-                    ChunkBgeM3 chunk = ChunkBgeM3.builder()
-                            .kbId(kbId)
-                            .docId(documentId)
-                            .content(content != null ? content : "")
-                            .metadata(null) // 可以存储标题信息到 metadata
-                            .embedding(embedding)
-                            .createdAt(now)
-                            .updatedAt(now)
-                            .build();
-
-                    // 插入数据库
-                    int result = chunkBgeM3Mapper.insert(chunk);
-
-                    if (result > 0) {
-                        chunkCount++;
-                        log.debug("创建 chunk 成功: title={}, chunkId={}", title, chunk.getId());
-                    } else {
-                        log.warn("创建 chunk 失败: title={}", title);
-                    }
-                }
-                log.info("Markdown 文档处理完成: documentId={}, 共生成 {} 个 chunks", documentId, chunkCount);
-            }
-        } catch (Exception e) {
-            log.error("处理 Markdown 文档失败: documentId={}", documentId, e);
-            // 不抛出异常，避免影响文档上传流程
-        }
+        // 删除文档对应的入库任务和 chunks
+        ingestionJobMapper.deleteByDocumentId(documentId);
+        int chunkCount = chunkBgeM3Mapper.deleteByDocId(documentId);
+        log.info("删除文档 chunks: documentId={}, count={}", documentId, chunkCount);
+
+        // 知识库的 chunk 发生变化: chunk 删除之后再递增版本号, 其他节点按新版本重新检索;
+        // 本节点的向量索引和检索缓存立即同步
+        knowledgeBaseMapper.incrementChunkVersion(document.getKbId());
+        vectorIndex.onDocumentDeleted(document.getKbId(), documentId);
+        ragCache.invalidateKnowledgeBase(document.getKbId());
     }
 
     /**
@@ -275,6 +227,15 @@ public class DocumentFacadeServiceImpl implements DocumentFacadeService {
         return filename.substring(filename.lastIndexOf(".") + 1).toLowerCase();
     }
 
+    @Override
+    public void reindexDocument(String documentId) {
+        Document document = documentMapper.selectById(documentId);
+        if (document == null) {
+            throw new BizException("文档不存在: " + documentId);
+        }
+        ingestionPipeline.retry(documentId);
+    }
+
     @Override
     public void updateDocument(String documentId, UpdateDocumentRequest request) {
         try {
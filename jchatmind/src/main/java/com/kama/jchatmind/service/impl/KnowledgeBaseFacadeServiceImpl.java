@@ -1,6 +1,7 @@
 package com.kama.jchatmind.service.impl;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.kama.jchatmind.agent.AgentRuntimeTemplateCache;
 import com.kama.jchatmind.converter.KnowledgeBaseConverter;
 import com.kama.jchatmind.exception.BizException;
 import com.kama.jchatmind.mapper.KnowledgeBaseMapper;
@@ -11,6 +12,7 @@ import com.kama.jchatmind.model.request.UpdateKnowledgeBaseRequest;
 import com.kama.jchatmind.model.response.CreateKnowledgeBaseResponse;
 import com.kama.jchatmind.model.response.GetKnowledgeBasesResponse;
 import com.kama.jchatmind.model.vo.KnowledgeBaseVO;
+import com.kama.jchatmind.rag.VectorIndex;
 import com.kama.jchatmind.service.KnowledgeBaseFacadeService;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -25,6 +27,8 @@ public class KnowledgeBaseFacadeServiceImpl implements KnowledgeBaseFacadeServic
 
     private final KnowledgeBaseMapper knowledgeBaseMapper;
     private final KnowledgeBaseConverter knowledgeBaseConverter;
+    private final AgentRuntimeTemplateCache agentRuntimeTemplateCache;
+    private final VectorIndex vectorIndex;
 
     @Override
     public GetKnowledgeBasesResponse getKnowledgeBases() {
@@ -83,6 +87,8 @@ public class KnowledgeBaseFacadeServiceImpl implements KnowledgeBaseFacadeServic
         if (result <= 0) {
             throw new BizException("删除知识库失败");
         }
+        agentRuntimeTemplateCache.invalidateKnowledgeBase(knowledgeBaseId);
+        vectorIndex.onKnowledgeBaseDeleted(knowledgeBaseId);
     }
 
     @Override
@@ -113,6 +119,7 @@ public class KnowledgeBaseFacadeServiceImpl implements KnowledgeBaseFacadeServic
             if (result <= 0) {
                 throw new BizException("更新知识库失败");
             }
+            agentRuntimeTemplateCache.invalidateKnowledgeBase(knowledgeBaseId);
         } catch (JsonProcessingException e) {
             throw new BizException("更新知识库时发生序列化错误: " + e.getMessage());
         }
@@ -1,8 +1,11 @@
 package com.kama.jchatmind.service.impl;
 
 import com.kama.jchatmind.service.MarkdownParserService;
+import com.vladsch.flexmark.ast.FencedCodeBlock;
 import com.vladsch.flexmark.ast.Heading;
+import com.vladsch.flexmark.ast.IndentedCodeBlock;
 import com.vladsch.flexmark.ext.tables.TableBlock;
+import com.vladsch.flexmark.ext.tables.TablesExtension;
 import com.vladsch.flexmark.parser.Parser;
 import com.vladsch.flexmark.util.ast.Block;
 import com.vladsch.flexmark.util.ast.Document;
@@ -22,10 +25,11 @@ import java.util.List;
 public class MarkdownParserServiceImpl implements MarkdownParserService {
 
     private final Parser parser;
-    private String originalMarkdownContent;
 
     public MarkdownParserServiceImpl() {
         MutableDataSet options = new MutableDataSet();
+        // 开启表格扩展, 表格解析为 TableBlock 整体保留
+        options.set(Parser.EXTENSIONS, List.of(TablesExtension.create()));
         this.parser = Parser.builder(options).build();
     }
 
@@ -33,15 +37,14 @@ public class MarkdownParserServiceImpl implements MarkdownParserService {
     public List<MarkdownSection> parseMarkdown(InputStream inputStream) {
         try {
             // 读取文件内容
-            originalMarkdownContent = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
-            
+            String markdown = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+
             // 解析 Markdown
-            Document document = parser.parse(originalMarkdownContent);
-            
-            // 提取标题和内容
-            List<MarkdownSection> sections = new ArrayList<>();
-            extractSections(document, sections);
-            
+            Document document = parser.parse(markdown);
+
+            // 按标题切分章节
+            List<MarkdownSection> sections = extractSections(document);
+
             log.info("解析 Markdown 完成，共提取 {} 个章节", sections.size());
             return sections;
         } catch (Exception e) {
@@ -51,162 +54,126 @@ public class MarkdownParserServiceImpl implements MarkdownParserService {
     }
 
     /**
-     * 提取标题和内容
-     * 只遍历文档的直接子节点，遇到任何标题就停止收集当前标题的内容
+     * 按标题切分章节
+     * 只遍历文档的直接子节点，遇到任何标题就开始一个新章节，章节的标题路径由更高级别的标题组成
      */
-    private void extractSections(Document document, List<MarkdownSection> sections) {
-        // 收集文档的所有直接子节点（顶层节点）
-        List<Node> topLevelNodes = new ArrayList<>();
-        Node child = document.getFirstChild();
-        while (child != null) {
-            topLevelNodes.add(child);
-            child = child.getNext();
-        }
-        
-        // 遍历顶层节点，找到所有标题
-        for (int i = 0; i < topLevelNodes.size(); i++) {
-            Node node = topLevelNodes.get(i);
-            
-            if (node instanceof Heading) {
-                Heading heading = (Heading) node;
+    private List<MarkdownSection> extractSections(Document document) {
+        List<MarkdownSection> sections = new ArrayList<>();
+        // 当前标题路径, 以及路径中每个标题的级别
+        List<String> path = new ArrayList<>();
+        List<Integer> levels = new ArrayList<>();
+
+        SectionBuilder current = new SectionBuilder(null, List.of(), 0, 0, 0);
+        Node node = document.getFirstChild();
+        while (node != null) {
+            if (node instanceof Heading heading) {
                 String title = extractHeadingText(heading);
-                
-                if (title == null || title.trim().isEmpty()) {
-                    continue;
-                }
-                
-                // 收集当前标题到下一个标题（任何级别）之间的所有内容
-                StringBuilder contentBuilder = new StringBuilder();
-                for (int j = i + 1; j < topLevelNodes.size(); j++) {
-                    Node nextNode = topLevelNodes.get(j);
-                    
-                    // 如果遇到任何标题，停止收集
-                    if (nextNode instanceof Heading) {
-                        break;
-                    }
-                    
-                    // 提取节点内容
-                    String content = extractNodeContent(nextNode);
-                    if (content != null && !content.trim().isEmpty()) {
-                        if (contentBuilder.length() > 0) {
-                            contentBuilder.append("\n");
-                        }
-                        contentBuilder.append(content);
+                if (!title.isEmpty()) {
+                    current.build(sections);
+                    while (!levels.isEmpty() && levels.get(levels.size() - 1) >= heading.getLevel()) {
+                        levels.remove(levels.size() - 1);
+                        path.remove(path.size() - 1);
                     }
+                    path.add(title);
+                    levels.add(heading.getLevel());
+                    current = new SectionBuilder(title, List.copyOf(path), heading.getLevel(),
+                            heading.getStartOffset(), heading.getEndOffset());
+                }
+            } else {
+                MarkdownBlock block = toBlock(node);
+                if (block != null) {
+                    current.blocks.add(block);
                 }
-                
-                String content = contentBuilder.toString().trim();
-                sections.add(new MarkdownSection(title, content));
             }
+            node = node.getNext();
         }
+        current.build(sections);
+        return sections;
     }
 
-    /**
-     * 提取标题文本
-     */
-    private String extractHeadingText(Heading heading) {
-        StringBuilder text = new StringBuilder();
-        Node child = heading.getFirstChild();
-        while (child != null) {
-            String childText = extractPlainText(child);
-            if (childText != null && !childText.trim().isEmpty()) {
-                if (text.length() > 0) {
-                    text.append(" ");
+    private static class SectionBuilder {
+        private final String title;
+        private final List<String> headingPath;
+        private final int level;
+        // 标题行的偏移量
+        private final int headingStart;
+        private final int headingEnd;
+        private final List<MarkdownBlock> blocks = new ArrayList<>();
+
+        private SectionBuilder(String title, List<String> headingPath, int level, int headingStart, int headingEnd) {
+            this.title = title;
+            this.headingPath = headingPath;
+            this.level = level;
+            this.headingStart = headingStart;
+            this.headingEnd = headingEnd;
+        }
+
+        // 第一个标题之前没有内容时不生成章节
+        private void build(List<MarkdownSection> sections) {
+            if (title == null && blocks.isEmpty()) {
+                return;
+            }
+            StringBuilder content = new StringBuilder();
+            for (MarkdownBlock block : blocks) {
+                if (!content.isEmpty()) {
+                    content.append("\n");
                 }
-                text.append(childText);
+                content.append(block.getContent());
             }
-            child = child.getNext();
+            sections.add(MarkdownSection.builder()
+                    .title(title != null ? title : "")
+                    .content(content.toString())
+                    .headingPath(headingPath)
+                    .level(level)
+                    .startOffset(title != null ? headingStart : blocks.get(0).getStartOffset())
+                    .endOffset(blocks.isEmpty() ? headingEnd : blocks.get(blocks.size() - 1).getEndOffset())
+                    .blocks(List.copyOf(blocks))
+                    .build());
         }
-        return text.toString().trim();
     }
 
     /**
-     * 提取节点内容（保留格式，特别是表格）
+     * 顶层节点转换为内容块, 保留原文中的 Markdown 格式（表格、列表、代码块等）
      */
-    private String extractNodeContent(Node node) {
-        if (node == null) {
+    private MarkdownBlock toBlock(Node node) {
+        BasedSequence chars = node.getChars();
+        if (chars == null || chars.isBlank()) {
             return null;
         }
-        
-        // 对于表格，保留原始 Markdown 格式
-        if (node instanceof TableBlock) {
-            return extractTableMarkdown(node);
-        }
-        
-        // 对于其他节点，提取文本内容
-        return extractPlainText(node);
-    }
-
-    /**
-     * 提取表格的原始 Markdown 格式
-     */
-    private String extractTableMarkdown(Node tableNode) {
-        if (originalMarkdownContent == null) {
-            return extractPlainText(tableNode);
-        }
-        
-        try {
-            // 获取表格节点在原始文档中的位置
-            BasedSequence chars = tableNode.getChars();
-            if (chars != null && chars.length() > 0) {
-                int startOffset = chars.getStartOffset();
-                int endOffset = chars.getEndOffset();
-                
-                // 从原始 Markdown 中提取表格内容
-                if (startOffset >= 0 && endOffset <= originalMarkdownContent.length() && startOffset < endOffset) {
-                    String tableMarkdown = originalMarkdownContent.substring(startOffset, endOffset);
-                    return tableMarkdown.trim();
-                }
-            }
-            
-            // 如果无法从原始内容提取，尝试从节点本身提取
-            return extractPlainText(tableNode);
-        } catch (Exception e) {
-            log.warn("提取表格 Markdown 失败，使用文本提取: {}", e.getMessage());
-            return extractPlainText(tableNode);
-        }
+        BasedSequence trimmed = chars.trim();
+        boolean atomic = node instanceof TableBlock
+                || node instanceof FencedCodeBlock
+                || node instanceof IndentedCodeBlock;
+        return new MarkdownBlock(trimmed.toString(), trimmed.getStartOffset(), trimmed.getEndOffset(), atomic);
     }
 
     /**
-     * 提取节点的纯文本内容
+     * 提取标题文本
      */
-    private String extractPlainText(Node node) {
-        if (node == null) {
-            return null;
-        }
-        
+    private String extractHeadingText(Heading heading) {
         StringBuilder text = new StringBuilder();
-        extractTextRecursive(node, text);
-        return text.length() > 0 ? text.toString().trim() : null;
+        Node child = heading.getFirstChild();
+        while (child != null) {
+            extractTextRecursive(child, text);
+            child = child.getNext();
+        }
+        return text.toString().trim();
     }
 
     /**
      * 递归提取文本
      */
     private void extractTextRecursive(Node node, StringBuilder text) {
-        if (node == null) {
-            return;
-        }
-        
-        // 跳过标题节点（标题已经在 extractSections 中单独处理）
-        if (node instanceof Heading) {
-            return;
-        }
-        
-        // 对于有子节点的节点，递归处理子节点
         Node child = node.getFirstChild();
         if (child != null) {
             boolean isFirstChild = true;
             while (child != null) {
                 // 在子节点之间添加适当的分隔符
-                if (!isFirstChild && text.length() > 0) {
-                    // 检查是否需要换行
+                if (!isFirstChild && !text.isEmpty()) {
                     if (child instanceof Block) {
-                        if (!text.toString().endsWith("\n")) {
-                            text.append("\n");
-                        }
+                        appendIfAbsent(text, '\n');
                     } else {
-                        text.append(" ");
+                        text.append(' ');
                     }
                 }
                 extractTextRecursive(child, text);
@@ -214,22 +181,20 @@ public class MarkdownParserServiceImpl implements MarkdownParserService {
                 isFirstChild = false;
             }
         } else {
-            // 叶子节点，尝试提取文本
-            try {
-                BasedSequence chars = node.getChars();
-                if (chars != null && chars.length() > 0) {
-                    String nodeText = chars.toString().trim();
-                    if (!nodeText.isEmpty()) {
-                        if (text.length() > 0 && !text.toString().endsWith("\n")) {
-                            text.append(" ");
-                        }
-                        text.append(nodeText);
-                    }
+            // 叶子节点
+            String nodeText = node.getChars().toString().trim();
+            if (!nodeText.isEmpty()) {
+                if (!text.isEmpty() && text.charAt(text.length() - 1) != '\n') {
+                    appendIfAbsent(text, ' ');
                 }
-            } catch (Exception e) {
-                // 忽略，继续处理
+                text.append(nodeText);
             }
         }
     }
-}
 
+    private static void appendIfAbsent(StringBuilder text, char separator) {
+        if (text.isEmpty() || text.charAt(text.length() - 1) != separator) {
+            text.append(separator);
+        }
+    }
+}
@@ -1,66 +1,109 @@
 package com.kama.jchatmind.service.impl;
 
-import com.kama.jchatmind.mapper.ChunkBgeM3Mapper;
-import com.kama.jchatmind.model.entity.ChunkBgeM3;
+import com.kama.jchatmind.rag.EmbeddingBatcher;
+import com.kama.jchatmind.rag.RagCache;
+import com.kama.jchatmind.rag.VectorIndex;
 import com.kama.jchatmind.service.RagService;
-import lombok.Data;
+import com.kama.jchatmind.tracing.Spans;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
-import org.springframework.web.reactive.function.client.WebClient;
 
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class RagServiceImpl implements RagService {
 
-    // 封装本地的模型调用
-    private final WebClient webClient;
-    private final ChunkBgeM3Mapper chunkBgeM3Mapper;
+    // 默认返回最相关的 chunk 数量
+    private static final int DEFAULT_TOP_K = 3;
 
-    public RagServiceImpl(WebClient.Builder builder, ChunkBgeM3Mapper chunkBgeM3Mapper) {
-        this.webClient = builder.baseUrl("http://localhost:11434").build();
-        this.chunkBgeM3Mapper = chunkBgeM3Mapper;
-    }
+    // 批量合并对本地 Embedding 模型的调用
+    private final EmbeddingBatcher embeddingBatcher;
+    // pgvector 或进程内 HNSW 索引, 由配置决定
+    private final VectorIndex vectorIndex;
+    private final RagCache ragCache;
+    private final MeterRegistry meterRegistry;
+    private final Tracer tracer;
 
-    @Data
-    private static class EmbeddingResponse {
-        private float[] embedding;
+    public RagServiceImpl(EmbeddingBatcher embeddingBatcher,
+                          VectorIndex vectorIndex,
+                          RagCache ragCache,
+                          ObjectProvider<MeterRegistry> meterRegistryProvider,
+                          ObjectProvider<Tracer> tracerProvider) {
+        this.embeddingBatcher = embeddingBatcher;
+        this.vectorIndex = vectorIndex;
+        this.ragCache = ragCache;
+        this.meterRegistry = meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        this.tracer = tracerProvider.getIfAvailable(() -> Tracer.NOOP);
     }
 
+    // span 包含在 EmbeddingBatcher 中排队等待合并的时间
     private float[] doEmbed(String text) {
-        EmbeddingResponse resp = webClient.post()
-                .uri("/api/embeddings")
-                .bodyValue(Map.of(
-                        "model", "bge-m3",
-                        "prompt", text
-                ))
-                .retrieve()
-                .bodyToMono(EmbeddingResponse.class)
-                .block();
-        Assert.notNull(resp, "Embedding response cannot be null");
-        return resp.getEmbedding();
+        return Spans.inSpan(tracer, tracer.nextSpan()
+                        .name("rag.embed")
+                        .tag("rag.text.length", text.length()),
+                () -> join(embeddingBatcher.submit(text)));
+    }
+
+    private float[] join(CompletableFuture<float[]> future) {
+        try {
+            float[] embedding = future.join();
+            Assert.notNull(embedding, "Embedding response cannot be null");
+            return embedding;
+        } catch (CompletionException e) {
+            // EmbeddingBatcher 返回的 Future 自带超时, 这里不会无限等待
+            if (e.getCause() instanceof TimeoutException) {
+                throw new IllegalStateException("Embedding 超时", e.getCause());
+            }
+            throw new IllegalStateException("Embedding 失败: " + e.getCause().getMessage(), e.getCause());
+        }
     }
 
+    // 查询文本的 embedding 会被缓存, 文档入库使用 embedBatch, 不经过缓存
     @Override
     public float[] embed(String text) {
-        return doEmbed(text);
+        return ragCache.getEmbedding(text, this::doEmbed);
     }
 
     @Override
-    public List<String> similaritySearch(String kbId, String title) {
-        String queryEmbedding = toPgVector(doEmbed(title));
-        List<ChunkBgeM3> chunks = chunkBgeM3Mapper.similaritySearch(kbId, queryEmbedding, 3);
-        return chunks.stream().map(ChunkBgeM3::getContent).toList();
+    public List<float[]> embedBatch(List<String> texts) {
+        return Spans.inSpan(tracer, tracer.nextSpan()
+                .name("rag.embed.batch")
+                .tag("rag.texts", texts.size()), () -> {
+            // 先全部提交, 让它们尽量落在同一个批次里
+            List<CompletableFuture<float[]>> futures = texts.stream()
+                    .map(embeddingBatcher::submit)
+                    .toList();
+            return futures.stream()
+                    .map(this::join)
+                    .toList();
+        });
     }
 
-    private String toPgVector(float[] v) {
-        StringBuilder sb = new StringBuilder("[");
-        for (int i = 0; i < v.length; i++) {
-            sb.append(v[i]);
-            if (i < v.length - 1) sb.append(",");
-        }
-        sb.append("]");
-        return sb.toString();
+    @Override
+    public List<String> similaritySearch(String kbId, String title) {
+        Span span = tracer.nextSpan()
+                .name("rag.search")
+                .tag("kb.id", kbId)
+                .tag("rag.cache.hit", "true");
+        return Spans.inSpan(tracer, span, () -> ragCache.getSearchResult(kbId, title, DEFAULT_TOP_K, query -> {
+            span.tag("rag.cache.hit", "false");
+            float[] embedding = embed(query);
+            // 只统计向量检索本身, 缓存命中和 embedding 不计入
+            return Timer.builder("jchatmind.rag.search")
+                    .description("知识库向量检索耗时")
+                    .tags("kb", kbId, "index", vectorIndex.getClass().getSimpleName())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(() -> vectorIndex.search(kbId, embedding, DEFAULT_TOP_K));
+        }));
     }
 }
@@ -1,27 +1,338 @@
 package com.kama.jchatmind.service.impl;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kama.jchatmind.config.SseProperties;
 import com.kama.jchatmind.message.SseMessage;
 import com.kama.jchatmind.service.SseService;
-import lombok.AllArgsConstructor;
+import com.kama.jchatmind.tracing.Spans;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
+/**
+ * SSE 会话中心
+ * 1. 一个会话可以有多个订阅者（多个浏览器标签页）, 消息会推送给所有订阅者
+ * 2. 每个会话保留最近的事件, 事件 ID 以时钟为基准单调递增（服务重启后也不会回退）, 重连时按 Last-Event-ID 补发断线期间的事件
+ * 3. send 只把事件放入每个订阅者的有界队列, 由独立的写线程负责写 socket,
+ * 慢客户端不会拖慢 Agent; 队列写满时按配置丢弃、合并或断开（断开后客户端重连补发）
+ */
+@Slf4j
 @Service
-@AllArgsConstructor
-public class SseServiceImpl implements SseService {
+public class SseServiceImpl implements SseService, DisposableBean {
+
+    // 写线程每次最多连续发送的事件数, 之后让出线程给其他订阅者
+    private static final int MAX_EVENTS_PER_DRAIN = 64;
+
+    // 事件 ID = 毫秒时间戳 * 1000 + 序号, 服务重启后以及在不同节点之间都保持递增,
+    // 客户端带着重启前的 Last-Event-ID 重连时不会漏掉新事件
+    private static final long EVENT_ID_SCALE = 1000;
 
-    private final ConcurrentMap<String, SseEmitter> clients = new ConcurrentHashMap<>();
     private final ObjectMapper objectMapper;
+    private final SseProperties properties;
+
+    private final ConcurrentMap<String, SseSession> sessions = new ConcurrentHashMap<>();
+
+    private final ExecutorService writers;
+
+    // 定期清理长时间没有订阅者的会话
+    private final ScheduledExecutorService cleaner;
+
+    private final Tracer tracer;
+
+    private final Timer sendTimer;
+    private final Counter droppedCounter;
+    private final Counter coalescedCounter;
+    private final Counter overflowDisconnectCounter;
+
+    public SseServiceImpl(ObjectMapper objectMapper,
+                          SseProperties properties,
+                          ObjectProvider<MeterRegistry> meterRegistryProvider,
+                          ObjectProvider<Tracer> tracerProvider) {
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.tracer = tracerProvider.getIfAvailable(() -> Tracer.NOOP);
+        this.writers = Executors.newFixedThreadPool(properties.getWriterThreads(), runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setName("sse-writer-" + thread.getId());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.cleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sse-session-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.cleaner.scheduleWithFixedDelay(this::evictIdleSessions, 1, 1, TimeUnit.MINUTES);
+
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        Gauge.builder("jchatmind.sse.queue.depth", this, SseServiceImpl::totalQueueDepth)
+                .description("所有订阅者待发送的事件总数")
+                .register(meterRegistry);
+        Gauge.builder("jchatmind.sse.queue.depth.max", this, SseServiceImpl::maxQueueDepth)
+                .description("单个订阅者待发送事件数的最大值")
+                .register(meterRegistry);
+        Gauge.builder("jchatmind.sse.subscribers", this, SseServiceImpl::subscriberCount)
+                .description("在线的 SSE 订阅者数量")
+                .register(meterRegistry);
+        this.sendTimer = Timer.builder("jchatmind.sse.send")
+                .description("单个事件写入 SseEmitter 的耗时")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("jchatmind.sse.overflow")
+                .tag("action", "drop")
+                .register(meterRegistry);
+        this.coalescedCounter = Counter.builder("jchatmind.sse.overflow")
+                .tag("action", "coalesce")
+                .register(meterRegistry);
+        this.overflowDisconnectCounter = Counter.builder("jchatmind.sse.overflow")
+                .tag("action", "disconnect")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param coalesceKey 相同 key 的事件只需要最新的一条, 为 null 时不能合并
+     */
+    private record BufferedEvent(long id, String data, String coalesceKey) {
+    }
+
+    /**
+     * 单个订阅者, 持有待发送队列
+     */
+    private class Subscriber {
+        private final String sessionId;
+        private final SseEmitter emitter;
+        private final Deque<BufferedEvent> queue = new ArrayDeque<>();
+        // 是否已经有写线程在处理这个订阅者
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean closed;
+
+        Subscriber(String sessionId, SseEmitter emitter) {
+            this.sessionId = sessionId;
+            this.emitter = emitter;
+        }
+
+        /**
+         * 放入队列, 不会阻塞
+         *
+         * @return false 表示队列溢出, 需要断开
+         */
+        boolean enqueue(BufferedEvent event, boolean bypassCapacity) {
+            if (closed) {
+                return true;
+            }
+            synchronized (queue) {
+                if (!bypassCapacity && queue.size() >= properties.getClientQueueCapacity()
+                        && !makeRoom(event)) {
+                    return false;
+                }
+                queue.addLast(event);
+            }
+            scheduleDrain();
+            return true;
+        }
+
+        // 队列已满, 按溢出策略腾出位置
+        private boolean makeRoom(BufferedEvent event) {
+            switch (properties.getOverflowPolicy()) {
+                case DROP_OLDEST -> {
+                    queue.removeFirst();
+                    droppedCounter.increment();
+                    return true;
+                }
+                case COALESCE -> {
+                    if (event.coalesceKey() != null) {
+                        Iterator<BufferedEvent> iterator = queue.iterator();
+                        while (iterator.hasNext()) {
+                            if (event.coalesceKey().equals(iterator.next().coalesceKey())) {
+                                iterator.remove();
+                                coalescedCounter.increment();
+                                return true;
+                            }
+                        }
+                    }
+                    return false;
+                }
+                default -> {
+                    return false;
+                }
+            }
+        }
+
+        int depth() {
+            synchronized (queue) {
+                return queue.size();
+            }
+        }
+
+        private void scheduleDrain() {
+            if (!closed && scheduled.compareAndSet(false, true)) {
+                try {
+                    writers.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                for (int i = 0; i < MAX_EVENTS_PER_DRAIN && !closed; i++) {
+                    BufferedEvent event;
+                    synchronized (queue) {
+                        event = queue.pollFirst();
+                    }
+                    if (event == null) {
+                        break;
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        emitter.send(toEvent(event));
+                    } finally {
+                        sendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                // 客户端已断开, 等待它带着 Last-Event-ID 重连
+                log.debug("SSE 推送失败, 移除订阅者: sessionId={}, error={}", sessionId, e.getMessage());
+                close(e);
+            } finally {
+                scheduled.set(false);
+            }
+            // 发送期间又有新事件进来
+            if (depth() > 0) {
+                scheduleDrain();
+            }
+        }
+
+        void close(Throwable error) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            synchronized (queue) {
+                queue.clear();
+            }
+            SseSession session = sessions.get(sessionId);
+            if (session != null) {
+                session.unsubscribe(this);
+            }
+            try {
+                if (error != null) {
+                    emitter.completeWithError(error);
+                } else {
+                    emitter.complete();
+                }
+            } catch (Exception ignored) {
+                // 连接已经不可用
+            }
+        }
+    }
+
+    /**
+     * 单个会话的订阅者和最近事件
+     */
+    private class SseSession {
+        private final String sessionId;
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        private final Deque<BufferedEvent> buffer = new ArrayDeque<>();
+        private long lastEventId;
+        private volatile long lastActiveAt = System.currentTimeMillis();
+
+        SseSession(String sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        synchronized void subscribe(Subscriber subscriber, Long replayAfter) {
+            // 在锁内放入补发事件并加入订阅者, 保证补发和后续的新事件之间不丢不重
+            if (replayAfter != null) {
+                for (BufferedEvent event : buffer) {
+                    if (event.id() > replayAfter) {
+                        subscriber.enqueue(event, true);
+                    }
+                }
+            }
+            subscribers.add(subscriber);
+            lastActiveAt = System.currentTimeMillis();
+        }
+
+        void publish(String data, String coalesceKey) {
+            synchronized (this) {
+                publish(reserveEventId(), data, coalesceKey);
+            }
+        }
+
+        // 集群模式下事件 ID 由产生事件的节点分配, 各节点的缓冲区使用相同的 ID
+        synchronized long reserveEventId() {
+            lastEventId = Math.max(lastEventId + 1, System.currentTimeMillis() * EVENT_ID_SCALE);
+            return lastEventId;
+        }
+
+        void publish(long eventId, String data, String coalesceKey) {
+            BufferedEvent event;
+            synchronized (this) {
+                lastEventId = Math.max(lastEventId, eventId);
+                event = new BufferedEvent(eventId, data, coalesceKey);
+                buffer.addLast(event);
+                while (buffer.size() > properties.getReplayBufferSize()) {
+                    buffer.removeFirst();
+                }
+                lastActiveAt = System.currentTimeMillis();
+                for (Subscriber subscriber : subscribers) {
+                    if (!subscriber.enqueue(event, false)) {
+                        subscribers.remove(subscriber);
+                        overflowDisconnectCounter.increment();
+                        log.warn("SSE 订阅者队列已满, 断开连接等待重连: sessionId={}", sessionId);
+                        // 在写线程中关闭, 不占用发送方线程
+                        writers.execute(() -> subscriber.close(null));
+                    }
+                }
+            }
+        }
+
+        void unsubscribe(Subscriber subscriber) {
+            subscribers.remove(subscriber);
+            lastActiveAt = System.currentTimeMillis();
+        }
+
+        boolean isIdle(long now) {
+            return subscribers.isEmpty() && now - lastActiveAt > properties.getSessionIdleTtl().toMillis();
+        }
+    }
+
+    private static SseEmitter.SseEventBuilder toEvent(BufferedEvent event) {
+        return SseEmitter.event()
+                .id(String.valueOf(event.id()))
+                .name("message")
+                .data(event.data());
+    }
+
+    private SseSession session(String chatSessionId) {
+        return sessions.computeIfAbsent(chatSessionId, SseSession::new);
+    }
 
     @Override
-    public SseEmitter connect(String chatSessionId) {
-        SseEmitter emitter = new SseEmitter(30 * 60 * 1000L);
-        clients.put(chatSessionId, emitter);
+    public SseEmitter connect(String chatSessionId, String lastEventId) {
+        SseEmitter emitter = createEmitter();
+        Subscriber subscriber = new Subscriber(chatSessionId, emitter);
+
+        emitter.onCompletion(() -> subscriber.close(null));
+        emitter.onTimeout(() -> subscriber.close(null));
+        emitter.onError(subscriber::close);
 
         try {
             emitter.send(SseEmitter.event()
@@ -31,33 +342,123 @@ public class SseServiceImpl implements SseService {
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        session(chatSessionId).subscribe(subscriber, parseEventId(lastEventId));
+        return emitter;
+    }
 
-        emitter.onCompletion(() -> {
-            clients.remove(chatSessionId);
-        });
-        emitter.onTimeout(() -> clients.remove(chatSessionId));
-        emitter.onError((error) -> clients.remove(chatSessionId));
+    SseEmitter createEmitter() {
+        return new SseEmitter(properties.getEmitterTimeout().toMillis());
+    }
 
-        return emitter;
+    private static Long parseEventId(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     @Override
     public void send(String chatSessionId, SseMessage message) {
-        SseEmitter emitter = clients.get(chatSessionId);
+        Runnable publish = () -> session(chatSessionId).publish(serialize(message), coalesceKey(message));
+        if (isStreamingDelta(message)) {
+            publish.run();
+            return;
+        }
+        // 只包含序列化和放入订阅者队列, 写入连接的耗时见 jchatmind.sse.send
+        Spans.inSpan(tracer, sendSpan(chatSessionId, message), publish);
+    }
 
-        if (emitter != null) {
-            try {
-                // 将消息转换为字符串
-                String sseMessageStr = objectMapper.writeValueAsString(message);
-                emitter.send(SseEmitter.event()
-                        .name("message")
-                        .data(sseMessageStr)
-                );
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        } else {
-            throw new RuntimeException("No client found for chatSessionId: " + chatSessionId);
+    // 流式输出的片段数量很多, 不单独创建 span
+    static boolean isStreamingDelta(SseMessage message) {
+        return message.getMetadata() != null
+                && message.getMetadata().getStreamId() != null
+                && message.getPayload() != null
+                && Boolean.FALSE.equals(message.getPayload().getDone());
+    }
+
+    Span sendSpan(String chatSessionId, SseMessage message) {
+        SseSession session = sessions.get(chatSessionId);
+        return tracer.nextSpan()
+                .name("sse.send")
+                .tag("chat.session.id", chatSessionId)
+                .tag("sse.type", String.valueOf(message.getType()))
+                .tag("sse.subscribers", session != null ? session.subscribers.size() : 0);
+    }
+
+    /**
+     * 将消息转换为字符串, 所有订阅者共用
+     */
+    String serialize(SseMessage message) {
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
         }
     }
+
+    /**
+     * 为本节点产生的事件分配集群内递增的事件 ID
+     */
+    long reserveEventId(String chatSessionId) {
+        return session(chatSessionId).reserveEventId();
+    }
+
+    /**
+     * 按指定的事件 ID 投递到本节点的订阅者, 用于集群模式
+     */
+    void deliver(String chatSessionId, long eventId, String data, String coalesceKey) {
+        session(chatSessionId).publish(eventId, data, coalesceKey);
+    }
+
+    // 只有"最新值才有意义"的消息可以合并, 流式内容片段和完整消息不能丢
+    static String coalesceKey(SseMessage message) {
+        if (message.getType() == null) {
+            return null;
+        }
+        return switch (message.getType()) {
+            case AI_PLANNING, AI_THINKING, AI_EXECUTING -> "status";
+            case DOCUMENT_PROGRESS -> message.getPayload() != null && message.getPayload().getDocument() != null
+                    ? "document:" + message.getPayload().getDocument().getDocumentId()
+                    : null;
+            default -> null;
+        };
+    }
+
+    private double totalQueueDepth() {
+        return allSubscribers().mapToInt(Subscriber::depth).sum();
+    }
+
+    private double maxQueueDepth() {
+        return allSubscribers().mapToInt(Subscriber::depth).max().orElse(0);
+    }
+
+    private double subscriberCount() {
+        return allSubscribers().count();
+    }
+
+    private Stream<Subscriber> allSubscribers() {
+        return sessions.values().stream().flatMap(session -> session.subscribers.stream());
+    }
+
+    private void evictIdleSessions() {
+        long now = System.currentTimeMillis();
+        List<String> idle = new ArrayList<>();
+        sessions.forEach((sessionId, session) -> {
+            if (session.isIdle(now)) {
+                idle.add(sessionId);
+            }
+        });
+        idle.forEach(sessionId -> sessions.computeIfPresent(sessionId,
+                (key, session) -> session.isIdle(now) ? null : session));
+    }
+
+    @Override
+    public void destroy() {
+        cleaner.shutdownNow();
+        writers.shutdown();
+    }
 }
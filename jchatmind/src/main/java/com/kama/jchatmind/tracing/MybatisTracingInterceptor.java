@@ -0,0 +1,59 @@
+package com.kama.jchatmind.tracing;
+
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * 为每条 MyBatis 语句创建一个 span, 名称为 Mapper 方法名（如 ChatMessageMapper.insertBatch）
+ * 只在已有 span 的线程中创建, 后台线程（批量写入、索引构建等）的语句不会产生孤立的 trace
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "update",
+                args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class})
+})
+public class MybatisTracingInterceptor implements Interceptor {
+
+    private final Tracer tracer;
+
+    public MybatisTracingInterceptor(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        if (tracer.currentSpan() == null) {
+            return invocation.proceed();
+        }
+        MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+        String id = statement.getId();
+        int classStart = id.lastIndexOf('.', id.lastIndexOf('.') - 1) + 1;
+        Span span = tracer.nextSpan()
+                .name("db " + id.substring(classStart))
+                .tag("db.system", "postgresql")
+                .tag("db.operation", statement.getSqlCommandType().name())
+                .tag("db.statement.id", id)
+                .start();
+        try (Tracer.SpanInScope ignored = tracer.withSpan(span)) {
+            return invocation.proceed();
+        } catch (Throwable e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+}
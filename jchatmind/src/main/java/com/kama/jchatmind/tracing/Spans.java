@@ -0,0 +1,34 @@
+package com.kama.jchatmind.tracing;
+
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+
+import java.util.function.Supplier;
+
+/**
+ * 在 span 中执行一段逻辑: 开始 span 并设为当前 span, 异常时记录错误, 结束后关闭
+ */
+public final class Spans {
+
+    private Spans() {
+    }
+
+    public static <T> T inSpan(Tracer tracer, Span span, Supplier<T> action) {
+        span.start();
+        try (Tracer.SpanInScope ignored = tracer.withSpan(span)) {
+            return action.get();
+        } catch (RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    public static void inSpan(Tracer tracer, Span span, Runnable action) {
+        inSpan(tracer, span, () -> {
+            action.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,169 @@
+package com.kama.jchatmind.typehandler;
+
+import org.postgresql.util.PGBinaryObject;
+import org.postgresql.util.PGobject;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * pgvector 的 vector 类型
+ * 同时支持文本格式 "[1,2,3]" 和二进制格式:
+ * int16 维度 + int16 保留位 + 维度个 float32, 均为大端序（与 pgvector 的 vector_send / vector_recv 一致）。
+ * 连接开启了 vector 的二进制传输时, 驱动直接调用 toBytes 写入发送缓冲区, 不再生成文本
+ */
+public class PgVector extends PGobject implements PGBinaryObject {
+
+    public static final String TYPE = "vector";
+
+    private static final int HEADER_BYTES = 4;
+
+    // 文本编码复用的缓冲区, 1024 维向量的文本约 10KB
+    private static final ThreadLocal<StringBuilder> TEXT_BUFFER =
+            ThreadLocal.withInitial(() -> new StringBuilder(16 * 1024));
+
+    private float[] vector;
+
+    public PgVector() {
+        this.type = TYPE;
+    }
+
+    public PgVector(float[] vector) {
+        this();
+        this.vector = vector;
+    }
+
+    public float[] toArray() {
+        return vector;
+    }
+
+    @Override
+    public String getValue() {
+        return vector == null ? null : toText(vector);
+    }
+
+    // 父类通过 getValue 判断, 会在二进制传输时也生成一次文本
+    @Override
+    public boolean isNull() {
+        return vector == null;
+    }
+
+    @Override
+    public void setValue(String value) throws SQLException {
+        this.vector = value == null ? null : parseText(value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public int lengthInBytes() {
+        return vector == null ? 0 : HEADER_BYTES + vector.length * Float.BYTES;
+    }
+
+    @Override
+    public void toBytes(byte[] bytes, int offset) {
+        writeBinary(vector, bytes, offset);
+    }
+
+    @Override
+    public void setByteValue(byte[] value, int offset) throws SQLException {
+        this.vector = readBinary(value, offset);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof PgVector other && Arrays.equals(vector, other.vector);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(vector);
+    }
+
+    /**
+     * 解码数据库返回的原始字节, 根据首字节区分文本和二进制格式
+     * 二进制格式首字节是维度的高位, pgvector 最多 16000 维, 不会等于 '['
+     */
+    public static float[] decode(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        if (bytes.length > 0 && bytes[0] == '[') {
+            return parseText(bytes);
+        }
+        return readBinary(bytes, 0);
+    }
+
+    public static void writeBinary(float[] vector, byte[] bytes, int offset) {
+        int dimensions = vector.length;
+        bytes[offset] = (byte) (dimensions >>> 8);
+        bytes[offset + 1] = (byte) dimensions;
+        bytes[offset + 2] = 0;
+        bytes[offset + 3] = 0;
+        int pos = offset + HEADER_BYTES;
+        for (float value : vector) {
+            int bits = Float.floatToIntBits(value);
+            bytes[pos] = (byte) (bits >>> 24);
+            bytes[pos + 1] = (byte) (bits >>> 16);
+            bytes[pos + 2] = (byte) (bits >>> 8);
+            bytes[pos + 3] = (byte) bits;
+            pos += Float.BYTES;
+        }
+    }
+
+    public static float[] readBinary(byte[] bytes, int offset) {
+        int dimensions = ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+        float[] vector = new float[dimensions];
+        int pos = offset + HEADER_BYTES;
+        for (int i = 0; i < dimensions; i++) {
+            int bits = ((bytes[pos] & 0xFF) << 24)
+                    | ((bytes[pos + 1] & 0xFF) << 16)
+                    | ((bytes[pos + 2] & 0xFF) << 8)
+                    | (bytes[pos + 3] & 0xFF);
+            vector[i] = Float.intBitsToFloat(bits);
+            pos += Float.BYTES;
+        }
+        return vector;
+    }
+
+    public static String toText(float[] vector) {
+        StringBuilder sb = TEXT_BUFFER.get();
+        sb.setLength(0);
+        sb.append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(vector[i]);
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+
+    /**
+     * 直接在字节上切分 "[a,b,c]", 不再对整段文本做 replace / split
+     */
+    public static float[] parseText(byte[] text) {
+        int start = 0;
+        int end = text.length;
+        while (start < end && text[start] != '[') start++;
+        while (end > start && text[end - 1] != ']') end--;
+        start++;
+        end--;
+        if (start >= end) {
+            return new float[0];
+        }
+        int dimensions = 1;
+        for (int i = start; i < end; i++) {
+            if (text[i] == ',') dimensions++;
+        }
+        float[] vector = new float[dimensions];
+        int index = 0;
+        int tokenStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || text[i] == ',') {
+                vector[index++] = Float.parseFloat(
+                        new String(text, tokenStart, i - tokenStart, StandardCharsets.US_ASCII).trim());
+                tokenStart = i + 1;
+            }
+        }
+        return vector;
+    }
+}
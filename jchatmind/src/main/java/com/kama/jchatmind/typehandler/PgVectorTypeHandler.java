@@ -1,53 +1,78 @@
 package com.kama.jchatmind.typehandler;
 
+import lombok.extern.slf4j.Slf4j;
 import org.apache.ibatis.type.BaseTypeHandler;
 import org.apache.ibatis.type.JdbcType;
 import org.apache.ibatis.type.MappedJdbcTypes;
 import org.apache.ibatis.type.MappedTypes;
+import org.postgresql.core.BaseConnection;
+import org.postgresql.core.Oid;
+import org.postgresql.core.QueryExecutor;
 
 import java.sql.*;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
 
+/**
+ * float[] <-> pgvector vector
+ * 写入时以 PgVector 传参, 读取时直接解码驱动返回的原始字节。
+ * 首次在某个物理连接上使用时为 vector 类型开启二进制传输, 避免 1024 维向量与文本之间的来回转换;
+ * 开启失败时退回文本格式
+ */
+@Slf4j
 @MappedJdbcTypes(JdbcType.OTHER)
 @MappedTypes(float[].class)
 public class PgVectorTypeHandler extends BaseTypeHandler<float[]> {
 
+    // 已开启二进制传输的物理连接
+    private static final Map<BaseConnection, Boolean> BINARY_CONNECTIONS =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static volatile boolean binaryTransferSupported = true;
+
     @Override
     public void setNonNullParameter(PreparedStatement ps, int i, float[] parameter, JdbcType jdbcType) throws SQLException {
-        StringBuilder sb = new StringBuilder();
-        sb.append('[');
-        for (int j = 0; j < parameter.length; j++) {
-            sb.append(parameter[j]);
-            if (j < parameter.length - 1) sb.append(',');
-        }
-        sb.append(']');
-        ps.setObject(i, sb.toString(), Types.OTHER);
+        enableBinaryTransfer(ps.getConnection());
+        ps.setObject(i, new PgVector(parameter));
     }
 
     @Override
     public float[] getNullableResult(ResultSet rs, String columnName) throws SQLException {
-        return parse(rs.getString(columnName));
+        return PgVector.decode(rs.getBytes(columnName));
     }
 
     @Override
     public float[] getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
-        return parse(rs.getString(columnIndex));
+        return PgVector.decode(rs.getBytes(columnIndex));
     }
 
     @Override
     public float[] getNullableResult(CallableStatement cs, int columnIndex) throws SQLException {
-        return parse(cs.getString(columnIndex));
+        return PgVector.decode(cs.getBytes(columnIndex));
     }
 
-    private float[] parse(String vectorText) {
-        if (vectorText == null) return null;
-        // 去掉 "[ ]"
-        vectorText = vectorText.replace("[", "").replace("]", "");
-        if (vectorText.isBlank()) return new float[0];
-        String[] parts = vectorText.split(",");
-        float[] arr = new float[parts.length];
-        for (int i = 0; i < parts.length; i++) {
-            arr[i] = Float.parseFloat(parts[i]);
+    private static void enableBinaryTransfer(Connection connection) {
+        if (!binaryTransferSupported) {
+            return;
+        }
+        try {
+            BaseConnection pgConnection = connection.unwrap(BaseConnection.class);
+            if (BINARY_CONNECTIONS.containsKey(pgConnection)) {
+                return;
+            }
+            int oid = pgConnection.getTypeInfo().getPGType(PgVector.TYPE);
+            if (oid == Oid.UNSPECIFIED) {
+                return;
+            }
+            // 服务端预编译（默认执行 5 次之后）的语句, 结果中的 vector 列也会以二进制返回
+            QueryExecutor queryExecutor = pgConnection.getQueryExecutor();
+            queryExecutor.addBinarySendOid(oid);
+            queryExecutor.addBinaryReceiveOid(oid);
+            BINARY_CONNECTIONS.put(pgConnection, Boolean.TRUE);
+        } catch (SQLException e) {
+            binaryTransferSupported = false;
+            log.warn("vector 类型无法开启二进制传输, 使用文本格式: {}", e.getMessage());
         }
-        return arr;
     }
 }
@@ -0,0 +1,52 @@
+package com.kama.jchatmind.util;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+
+/**
+ * UUIDv7 生成器（RFC 9562）
+ * 高 48 位是毫秒时间戳, 同一毫秒内用 12 位计数器保证单调递增,
+ * 按 ID 排序即按生成顺序排序, 也不会像随机 UUID 那样打散主键索引
+ */
+public final class UuidV7 {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final int MAX_COUNTER = 0xFFF;
+
+    private static long lastTimestamp = -1;
+
+    private static int counter;
+
+    private UuidV7() {
+    }
+
+    public static UUID randomUUID() {
+        long timestamp;
+        int sequence;
+        synchronized (UuidV7.class) {
+            timestamp = Math.max(System.currentTimeMillis(), lastTimestamp);
+            if (timestamp == lastTimestamp) {
+                if (counter == MAX_COUNTER) {
+                    // 同一毫秒内的计数器用完, 借用下一毫秒
+                    timestamp++;
+                    counter = RANDOM.nextInt(MAX_COUNTER / 2);
+                } else {
+                    counter++;
+                }
+            } else {
+                // 新的毫秒从随机值开始, 只使用低半区, 给递增留出空间
+                counter = RANDOM.nextInt(MAX_COUNTER / 2);
+            }
+            lastTimestamp = timestamp;
+            sequence = counter;
+        }
+        long msb = (timestamp << 16) | (0x7L << 12) | sequence;
+        long lsb = (RANDOM.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+
+    public static String randomId() {
+        return randomUUID().toString();
+    }
+}
@@ -0,0 +1,3 @@
+-- 按会话倒序读取最近的消息, 以及按 (created_at, id) 游标分页
+CREATE INDEX IF NOT EXISTS idx_chat_message_session_created
+    ON chat_message (session_id, created_at DESC, id DESC);
@@ -0,0 +1,3 @@
+-- 检索按余弦距离排序 (<=>), 向量索引使用 vector_cosine_ops; 之前按 L2 (vector_l2_ops) 建过的索引不会被使用, 需要删除
+CREATE INDEX IF NOT EXISTS idx_chunk_bge_m3_embedding_cosine
+    ON chunk_bge_m3 USING hnsw (embedding vector_cosine_ops);
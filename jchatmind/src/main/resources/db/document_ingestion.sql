@@ -0,0 +1,29 @@
+-- 文档索引状态: PENDING / INDEXING / READY / FAILED
+ALTER TABLE document
+    ADD COLUMN IF NOT EXISTS status VARCHAR(16) NOT NULL DEFAULT 'READY';
+
+-- 文档入库任务, 服务重启后未完成的任务会继续执行
+CREATE TABLE IF NOT EXISTS ingestion_job
+(
+    id               UUID PRIMARY KEY     DEFAULT gen_random_uuid(),
+    document_id      UUID        NOT NULL,
+    kb_id            UUID        NOT NULL,
+    file_path        TEXT        NOT NULL,
+    stage            VARCHAR(16) NOT NULL,
+    status           VARCHAR(16) NOT NULL,
+    attempts         INT         NOT NULL DEFAULT 0,
+    processed_chunks INT         NOT NULL DEFAULT 0,
+    total_chunks     INT         NOT NULL DEFAULT 0,
+    last_error       TEXT,
+    created_at       TIMESTAMP   NOT NULL DEFAULT NOW(),
+    updated_at       TIMESTAMP   NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS idx_ingestion_job_document_id ON ingestion_job (document_id);
+CREATE INDEX IF NOT EXISTS idx_ingestion_job_status ON ingestion_job (status);
+
+-- 多节点部署时任务由一个节点认领执行, 执行期间定时续租; 租约过期（节点宕机）后其他节点可以重新认领
+ALTER TABLE ingestion_job
+    ADD COLUMN IF NOT EXISTS owner VARCHAR(64);
+ALTER TABLE ingestion_job
+    ADD COLUMN IF NOT EXISTS lease_until TIMESTAMP;
@@ -0,0 +1,3 @@
+-- 知识库 chunk 版本号, 与 chunk 的写入/删除在同一事务中递增; 各节点的检索缓存和语义缓存按它判断是否过期
+ALTER TABLE knowledge_base
+    ADD COLUMN IF NOT EXISTS chunk_version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,9 @@
+-- 集群模式下超过 NOTIFY 负载上限的 SSE 事件, 通知中只携带行 ID, 由各节点按 ID 读取
+CREATE TABLE IF NOT EXISTS sse_spill
+(
+    id         BIGSERIAL PRIMARY KEY,
+    payload    TEXT      NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS idx_sse_spill_created_at ON sse_spill (created_at);
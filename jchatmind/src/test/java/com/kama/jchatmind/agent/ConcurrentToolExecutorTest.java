@@ -0,0 +1,151 @@
+package com.kama.jchatmind.agent;
+
+import com.kama.jchatmind.config.ToolExecutionProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ConcurrentToolExecutor 测试类
+ * 测试工具调用的并发执行、结果顺序、超时和线程池满时的拒绝
+ */
+public class ConcurrentToolExecutorTest {
+
+    private ThreadPoolTaskExecutor taskExecutor;
+    private ConcurrentToolExecutor toolExecutor;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        ToolExecutionProperties properties = new ToolExecutionProperties();
+        properties.setDefaultTimeout(Duration.ofSeconds(5));
+        properties.setTimeouts(Map.of("slow", Duration.ofMillis(200)));
+
+        taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(4);
+        taskExecutor.initialize();
+
+        meterRegistry = new SimpleMeterRegistry();
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory(Map.of("meterRegistry", meterRegistry));
+        toolExecutor = new ConcurrentToolExecutor(taskExecutor, properties,
+                beanFactory.getBeanProvider(MeterRegistry.class),
+                beanFactory.getBeanProvider(Tracer.class));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        taskExecutor.shutdown();
+    }
+
+    @Test
+    public void testResultsKeepToolCallOrder() {
+        List<ToolCallback> callbacks = List.of(
+                sleepingTool("first", 300, "A"),
+                sleepingTool("second", 100, "B")
+        );
+        List<AssistantMessage.ToolCall> toolCalls = List.of(
+                new AssistantMessage.ToolCall("1", "function", "first", "{}"),
+                new AssistantMessage.ToolCall("2", "function", "second", "{}")
+        );
+
+        long start = System.currentTimeMillis();
+        ToolResponseMessage message = toolExecutor.execute(toolCalls, callbacks);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals("A", message.getResponses().get(0).responseData());
+        assertEquals("B", message.getResponses().get(1).responseData());
+        // 并发执行时总耗时接近最慢的调用, 而不是两者之和
+        assertTrue(elapsed < 400, "elapsed = " + elapsed);
+        assertTrue(message.getMetadata().containsKey(ConcurrentToolExecutor.METADATA_TOOL_LATENCIES));
+    }
+
+    @Test
+    public void testTimeoutAndUnknownTool() {
+        List<ToolCallback> callbacks = List.of(sleepingTool("slow", 2000, "never"));
+        List<AssistantMessage.ToolCall> toolCalls = List.of(
+                new AssistantMessage.ToolCall("1", "function", "slow", "{}"),
+                new AssistantMessage.ToolCall("2", "function", "missing", "{}")
+        );
+
+        ToolResponseMessage message = toolExecutor.execute(toolCalls, callbacks);
+
+        assertTrue(message.getResponses().get(0).responseData().contains("超时"));
+        assertTrue(message.getResponses().get(1).responseData().contains("未找到工具"));
+        assertEquals(1, meterRegistry.get("jchatmind.tool.call").tags("tool", "slow", "outcome", "timeout").timer().count());
+        assertEquals(1, meterRegistry.get("jchatmind.tool.call").tags("tool", "missing", "outcome", "not_found").timer().count());
+    }
+
+    @Test
+    public void testRejectedWhenPoolSaturated() {
+        ThreadPoolTaskExecutor saturated = new ThreadPoolTaskExecutor();
+        saturated.setCorePoolSize(1);
+        saturated.setMaxPoolSize(1);
+        saturated.setQueueCapacity(0);
+        saturated.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        saturated.initialize();
+        ToolExecutionProperties properties = new ToolExecutionProperties();
+        properties.setDefaultTimeout(Duration.ofSeconds(5));
+        ConcurrentToolExecutor executor = new ConcurrentToolExecutor(saturated, properties,
+                new StaticListableBeanFactory(Map.of("meterRegistry", meterRegistry)).getBeanProvider(MeterRegistry.class),
+                new StaticListableBeanFactory().getBeanProvider(Tracer.class));
+        try {
+            List<ToolCallback> callbacks = List.of(sleepingTool("busy", 200, "done"));
+            List<AssistantMessage.ToolCall> toolCalls = List.of(
+                    new AssistantMessage.ToolCall("1", "function", "busy", "{}"),
+                    new AssistantMessage.ToolCall("2", "function", "busy", "{}")
+            );
+
+            ToolResponseMessage message = executor.execute(toolCalls, callbacks);
+
+            // 第二个调用被拒绝, 不在调用线程上执行, 返回的错误说明工具未执行而不是超时
+            assertEquals("done", message.getResponses().get(0).responseData());
+            String rejected = message.getResponses().get(1).responseData();
+            assertTrue(rejected.contains("未执行"), rejected);
+            assertFalse(rejected.contains("超时"), rejected);
+            assertEquals(1, meterRegistry.get("jchatmind.tool.call").tags("tool", "busy", "outcome", "rejected").timer().count());
+        } finally {
+            saturated.shutdown();
+        }
+    }
+
+    private ToolCallback sleepingTool(String name, long sleepMillis, String result) {
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return ToolDefinition.builder()
+                        .name(name)
+                        .description(name)
+                        .inputSchema("{}")
+                        .build();
+            }
+
+            @Override
+            public String call(String toolInput) {
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return result;
+            }
+        };
+    }
+}
@@ -0,0 +1,135 @@
+package com.kama.jchatmind.agent;
+
+import com.kama.jchatmind.config.SemanticCacheProperties;
+import com.kama.jchatmind.model.dto.AgentDTO;
+import com.kama.jchatmind.model.dto.KnowledgeBaseDTO;
+import com.kama.jchatmind.rag.InMemoryKnowledgeBaseMapper;
+import com.kama.jchatmind.rag.RagCache;
+import com.kama.jchatmind.service.RagService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SemanticResponseCache 测试类
+ * 测试相似度阈值、过期时间、知识库变化后失效, 以及只对可缓存 Agent 的首轮问题生效
+ */
+public class SemanticResponseCacheTest {
+
+    private static final List<KnowledgeBaseDTO> KNOWLEDGE_BASES = List.of(KnowledgeBaseDTO.builder().id("kb1").build());
+
+    private SemanticCacheProperties properties;
+    private InMemoryKnowledgeBaseMapper knowledgeBaseMapper;
+    private SemanticResponseCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        properties = new SemanticCacheProperties();
+        properties.setEnabled(true);
+        properties.setSimilarityThreshold(0.9);
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        knowledgeBaseMapper = new InMemoryKnowledgeBaseMapper();
+        RagCache ragCache = new RagCache(100, Duration.ofMinutes(1), 100, Duration.ofMinutes(1), knowledgeBaseMapper,
+                beanFactory.getBeanProvider(MeterRegistry.class));
+        cache = new SemanticResponseCache(new FixedRagService(), ragCache, properties,
+                beanFactory.getBeanProvider(MeterRegistry.class));
+    }
+
+    @Test
+    public void testSimilarityThreshold() {
+        String version = cache.knowledgeVersion(KNOWLEDGE_BASES);
+        cache.put("a1", version, "如何重置密码", cache.embed("x"), "在设置页面重置");
+
+        // cos = 0.8 / 1.0, 分别低于和高于阈值
+        assertNull(cache.lookup("a1", version, cache.embed("far")));
+        assertEquals("在设置页面重置", cache.lookup("a1", version, cache.embed("near")));
+        // 其他 Agent 的缓存互不影响
+        assertNull(cache.lookup("a2", version, cache.embed("x")));
+    }
+
+    @Test
+    public void testExpiredEntryIsNotReturned() {
+        properties.setTtl(Duration.ofMillis(-1));
+        String version = cache.knowledgeVersion(KNOWLEDGE_BASES);
+        cache.put("a1", version, "问题", cache.embed("x"), "回答");
+
+        assertNull(cache.lookup("a1", version, cache.embed("x")));
+    }
+
+    @Test
+    public void testKnowledgeBaseChangeInvalidatesEntries() {
+        String version = cache.knowledgeVersion(KNOWLEDGE_BASES);
+        cache.put("a1", version, "问题", cache.embed("x"), "回答");
+        assertEquals("回答", cache.lookup("a1", version, cache.embed("x")));
+
+        // 任意节点的文档入库完成或删除后知识库版本递增, 旧的回答不再命中
+        knowledgeBaseMapper.incrementChunkVersion("kb1");
+        String changed = cache.knowledgeVersion(KNOWLEDGE_BASES);
+        assertNotEquals(version, changed);
+        assertNull(cache.lookup("a1", changed, cache.embed("x")));
+
+        // 其他知识库的变化不影响
+        cache.put("a1", changed, "问题", cache.embed("x"), "新回答");
+        knowledgeBaseMapper.incrementChunkVersion("kb2");
+        assertEquals("新回答", cache.lookup("a1", cache.knowledgeVersion(KNOWLEDGE_BASES), cache.embed("x")));
+    }
+
+    @Test
+    public void testIsApplicable() {
+        AgentRuntimeTemplate cacheable = template("a1", true);
+        AgentRuntimeTemplate notCacheable = template("a1", false);
+        List<Message> firstTurn = List.of(new UserMessage("问题"));
+        List<Message> secondTurn = List.of(new UserMessage("问题"), new AssistantMessage("回答"), new UserMessage("追问"));
+
+        assertTrue(cache.isApplicable(cacheable, firstTurn));
+        // 有副作用或实时数据工具的 Agent 不使用缓存
+        assertFalse(cache.isApplicable(notCacheable, firstTurn));
+        // 默认只对首轮问题生效
+        assertFalse(cache.isApplicable(cacheable, secondTurn));
+        properties.setFirstTurnOnly(false);
+        assertTrue(cache.isApplicable(cacheable, secondTurn));
+
+        // 按 Agent 单独关闭
+        SemanticCacheProperties.AgentOptions options = new SemanticCacheProperties.AgentOptions();
+        options.setEnabled(false);
+        properties.setAgents(Map.of("a1", options));
+        assertFalse(cache.isApplicable(cacheable, firstTurn));
+    }
+
+    private static AgentRuntimeTemplate template(String agentId, boolean cacheable) {
+        return new AgentRuntimeTemplate(AgentDTO.builder().id(agentId).build(),
+                KNOWLEDGE_BASES, List.of(), null, cacheable);
+    }
+
+    // "x" 为 (1, 0), "near" 与它的余弦相似度为 0.95, "far" 为 0.8
+    private static class FixedRagService implements RagService {
+        @Override
+        public float[] embed(String text) {
+            return switch (text) {
+                case "near" -> new float[]{0.95f, (float) Math.sqrt(1 - 0.95 * 0.95)};
+                case "far" -> new float[]{0.8f, 0.6f};
+                default -> new float[]{1f, 0f};
+            };
+        }
+
+        @Override
+        public List<float[]> embedBatch(List<String> texts) {
+            return texts.stream().map(this::embed).toList();
+        }
+
+        @Override
+        public List<String> similaritySearch(String kbId, String title) {
+            return List.of();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.kama.jchatmind.agent;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * StreamingResponseAssembler 测试类
+ * 测试文本片段的拼接, 以及按 ID 合并、无 ID 续传的工具调用片段
+ */
+public class StreamingResponseAssemblerTest {
+
+    @Test
+    public void testTextDeltas() {
+        StreamingResponseAssembler assembler = new StreamingResponseAssembler();
+
+        assertEquals("你好", assembler.append(chunk("你好")));
+        assertEquals("", assembler.append(chunk("")));
+        assertEquals("", assembler.append(null));
+        assertEquals("，世界", assembler.append(chunk("，世界")));
+
+        AssistantMessage output = assembler.build().getResult().getOutput();
+        assertEquals("你好，世界", output.getText());
+        assertTrue(output.getToolCalls().isEmpty());
+    }
+
+    @Test
+    public void testSplitToolCalls() {
+        StreamingResponseAssembler assembler = new StreamingResponseAssembler();
+
+        assembler.append(chunk("先查询数据库"));
+        assembler.append(chunk(new AssistantMessage.ToolCall("call_1", "function", "databaseQuery", "{\"sql\":")));
+        // 没有 ID 的片段拼接到上一个工具调用
+        assembler.append(chunk(new AssistantMessage.ToolCall("", "", "", "\"SELECT 1\"}")));
+        assembler.append(chunk(new AssistantMessage.ToolCall("call_2", "", "sendEmail", "{\"to\":")));
+        assembler.append(chunk(new AssistantMessage.ToolCall(null, null, null, "\"a@b.c\"}")));
+        // 携带已有 ID 的片段合并到同一个工具调用
+        assembler.append(chunk(new AssistantMessage.ToolCall("call_1", null, null, "")));
+        // 只有名称没有参数的调用
+        assembler.append(chunk(new AssistantMessage.ToolCall("call_3", "function", "now", null)));
+
+        AssistantMessage output = assembler.build().getResult().getOutput();
+        assertEquals("先查询数据库", output.getText());
+        assertEquals(List.of(
+                new AssistantMessage.ToolCall("call_1", "function", "databaseQuery", "{\"sql\":\"SELECT 1\"}"),
+                new AssistantMessage.ToolCall("call_2", "function", "sendEmail", "{\"to\":\"a@b.c\"}"),
+                new AssistantMessage.ToolCall("call_3", "function", "now", "{}")
+        ), output.getToolCalls());
+    }
+
+    @Test
+    public void testOrphanFragmentIsIgnored() {
+        StreamingResponseAssembler assembler = new StreamingResponseAssembler();
+
+        // 第一个工具调用片段之前收到的无 ID 片段无法归属, 直接丢弃
+        assembler.append(chunk(new AssistantMessage.ToolCall(null, null, null, "{}")));
+
+        assertTrue(assembler.build().getResult().getOutput().getToolCalls().isEmpty());
+    }
+
+    private static ChatResponse chunk(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+
+    private static ChatResponse chunk(AssistantMessage.ToolCall toolCall) {
+        AssistantMessage message = AssistantMessage.builder()
+                .content("")
+                .toolCalls(List.of(toolCall))
+                .build();
+        return new ChatResponse(List.of(new Generation(message)));
+    }
+}
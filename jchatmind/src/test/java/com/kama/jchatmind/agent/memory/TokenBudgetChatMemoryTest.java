@@ -0,0 +1,97 @@
+package com.kama.jchatmind.agent.memory;
+
+import com.kama.jchatmind.config.AgentMemoryProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.*;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TokenBudgetChatMemory 测试类
+ * 测试 token 预算裁剪、工具调用组的完整性以及工具返回结果截断
+ */
+public class TokenBudgetChatMemoryTest {
+
+    private static final String SESSION = "session";
+
+    private static TokenBudgetChatMemory memory(int maxMessages, int maxPromptTokens, int maxToolResponseTokens) {
+        AgentMemoryProperties properties = new AgentMemoryProperties();
+        properties.setMaxPromptTokens(maxPromptTokens);
+        properties.setMaxToolResponseTokens(maxToolResponseTokens);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        return new TokenBudgetChatMemory(maxMessages, properties, new TokenBudgetChatMemory.Metrics(
+                DistributionSummary.builder("tokens").register(registry),
+                DistributionSummary.builder("messages").register(registry),
+                Counter.builder("truncated").register(registry)
+        ));
+    }
+
+    private static AssistantMessage toolCall(String id) {
+        return AssistantMessage.builder()
+                .content("")
+                .toolCalls(List.of(new AssistantMessage.ToolCall(id, "function", "databaseQuery", "{}")))
+                .build();
+    }
+
+    private static ToolResponseMessage toolResponse(String id, String data) {
+        return ToolResponseMessage.builder()
+                .responses(List.of(new ToolResponseMessage.ToolResponse(id, "databaseQuery", data)))
+                .build();
+    }
+
+    @Test
+    public void testKeepsToolCallGroupsIntact() {
+        TokenBudgetChatMemory memory = memory(3, 100_000, 100_000);
+        memory.add(SESSION, List.of(
+                new UserMessage("问题"),
+                toolCall("1"),
+                toolResponse("1", "结果"),
+                new UserMessage("继续")
+        ));
+        memory.add(SESSION, new SystemMessage("系统提示词"));
+
+        List<Message> messages = memory.get(SESSION);
+
+        // 最多 3 条: 工具调用组（2 条）和最后一条用户消息, 不能只留下工具结果
+        assertEquals(4, messages.size());
+        assertInstanceOf(SystemMessage.class, messages.get(0));
+        assertInstanceOf(AssistantMessage.class, messages.get(1));
+        assertInstanceOf(ToolResponseMessage.class, messages.get(2));
+        assertEquals("继续", messages.get(3).getText());
+    }
+
+    @Test
+    public void testDropsOldestMessagesOverBudget() {
+        TokenBudgetChatMemory memory = memory(100, 30, 100_000);
+        memory.add(SESSION, List.of(
+                new UserMessage("第一个问题第一个问题第一个问题"),
+                new AssistantMessage("第一个回答第一个回答第一个回答"),
+                new UserMessage("第二个问题")
+        ));
+
+        List<Message> messages = memory.get(SESSION);
+
+        assertEquals(2, messages.size());
+        assertEquals("第二个问题", messages.get(1).getText());
+    }
+
+    @Test
+    public void testTruncatesOversizedToolResponse() {
+        TokenBudgetChatMemory memory = memory(100, 100_000, 100);
+        String data = "a".repeat(5000) + "END";
+        memory.add(SESSION, List.of(toolCall("1"), toolResponse("1", data)));
+
+        ToolResponseMessage message = (ToolResponseMessage) memory.get(SESSION).get(1);
+        String truncated = message.getResponses().get(0).responseData();
+
+        assertTrue(TokenEstimator.estimate(truncated) < 150);
+        assertTrue(truncated.startsWith("aaa"));
+        assertTrue(truncated.endsWith("END"));
+        assertTrue(truncated.contains("已省略"));
+    }
+}
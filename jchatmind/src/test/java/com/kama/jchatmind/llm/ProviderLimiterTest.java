@@ -0,0 +1,73 @@
+package com.kama.jchatmind.llm;
+
+import com.kama.jchatmind.config.LlmRateLimitProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ProviderLimiter 测试类
+ */
+class ProviderLimiterTest {
+
+    private record Granted(String name, ProviderLimiter.Permit permit) {
+    }
+
+    private static ProviderLimiter limiter(int requestsPerMinute, int maxInFlight) {
+        LlmRateLimitProperties.Quota quota = new LlmRateLimitProperties.Quota();
+        quota.setRequestsPerMinute(requestsPerMinute);
+        quota.setMaxInFlight(maxInFlight);
+        return new ProviderLimiter(quota);
+    }
+
+    @Test
+    void timesOutWhenQuotaIsExhausted() throws InterruptedException {
+        ProviderLimiter limiter = limiter(1, 0);
+        limiter.acquire("a", 0, 1, TimeUnit.SECONDS).release(-1);
+
+        assertThrows(RateLimitedException.class, () -> limiter.acquire("a", 0, 50, TimeUnit.MILLISECONDS));
+        assertEquals(0, limiter.waiting());
+    }
+
+    @Test
+    void servesAgentsRoundRobin() throws Exception {
+        ProviderLimiter limiter = limiter(0, 1);
+        ProviderLimiter.Permit running = limiter.acquire("a", 0, 1, TimeUnit.SECONDS);
+
+        BlockingQueue<Granted> granted = new LinkedBlockingQueue<>();
+        String[][] waiters = {{"a", "a1"}, {"a", "a2"}, {"b", "b1"}};
+        for (String[] waiter : waiters) {
+            int expected = limiter.waiting() + 1;
+            Thread thread = new Thread(() -> {
+                try {
+                    granted.add(new Granted(waiter[1], limiter.acquire(waiter[0], 0, 10, TimeUnit.SECONDS)));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+            while (limiter.waiting() < expected) {
+                Thread.sleep(5);
+            }
+        }
+
+        // a 组获得配额后排到 b 组后面
+        List<String> order = new ArrayList<>();
+        running.release(-1);
+        for (int i = 0; i < waiters.length; i++) {
+            Granted next = granted.poll(5, TimeUnit.SECONDS);
+            assertNotNull(next);
+            assertEquals(1, limiter.inFlight());
+            order.add(next.name());
+            next.permit().release(-1);
+        }
+        assertEquals(List.of("a1", "b1", "a2"), order);
+    }
+}
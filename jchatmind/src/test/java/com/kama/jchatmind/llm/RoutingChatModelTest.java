@@ -0,0 +1,83 @@
+package com.kama.jchatmind.llm;
+
+import com.kama.jchatmind.config.LlmRateLimitProperties;
+import com.kama.jchatmind.config.ModelRoutingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * RoutingChatModel 测试类
+ */
+class RoutingChatModelTest {
+
+    private static ChatModel reply(String text) {
+        return new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                return response(text);
+            }
+
+            @Override
+            public Flux<ChatResponse> stream(Prompt prompt) {
+                return Flux.just(response(text));
+            }
+        };
+    }
+
+    private static ChatModel failing() {
+        return new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                throw new IllegalStateException("服务不可用");
+            }
+
+            @Override
+            public Flux<ChatResponse> stream(Prompt prompt) {
+                return Flux.error(new IllegalStateException("服务不可用"));
+            }
+        };
+    }
+
+    private static ChatResponse response(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+
+    private static ModelRouter router(ChatModel primary, ChatModel fallback) {
+        ModelRoutingProperties properties = new ModelRoutingProperties();
+        ModelRoutingProperties.Route route = new ModelRoutingProperties.Route();
+        route.setFallbacks(List.of("fallback"));
+        properties.getRoutes().put("primary", route);
+        return new ModelRouter(Map.of("primary", primary, "fallback", fallback),
+                properties, new LlmRateLimitProperties(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void failsOverToFallbackModel() {
+        ChatModel model = router(failing(), reply("备用")).chatModel("primary");
+
+        assertEquals("备用", model.call(new Prompt("你好")).getResult().getOutput().getText());
+        assertEquals("备用", model.stream(new Prompt("你好")).blockLast().getResult().getOutput().getText());
+    }
+
+    @Test
+    void unhealthyPrimaryIsTriedLast() {
+        ModelRouter router = router(reply("首选"), reply("备用"));
+        for (int i = 0; i < 10; i++) {
+            router.stats("primary").recordFailure();
+        }
+
+        assertEquals(List.of("fallback", "primary"), router.candidates("primary"));
+        assertEquals("备用", router.chatModel("primary").call(new Prompt("你好")).getResult().getOutput().getText());
+    }
+}
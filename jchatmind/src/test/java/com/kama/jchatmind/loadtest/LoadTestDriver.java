@@ -0,0 +1,291 @@
+package com.kama.jchatmind.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * 端到端压测驱动
+ * 打开 N 个 SSE 会话, 每个会话通过 ChatMessageController 依次发送 M 条消息, 等待 Agent 回复完成后再发下一条,
+ * 最后输出吞吐、TTFB（发送消息到收到第一条 Agent 事件）和完成耗时的 p50 / p99。
+ * 服务端以 loadtest profile 启动（模型和 Embedding 都是本地桩）, 然后运行 main 方法, 不属于单元测试:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.kama.jchatmind.loadtest.LoadTestDriver \
+ *     -Dexec.args="--sessions=200 --messages=5"
+ * </pre>
+ * 参数: --base-url（默认 http://localhost:8080）、--agent-id（不指定时创建一个只开启 dataBaseTool 的 Agent）、
+ * --sessions、--messages、--think-time（两条消息之间的间隔, 毫秒）、--timeout（单条消息的超时, 秒）
+ */
+public class LoadTestDriver {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    // 每个 SSE 连接占用一个读线程
+    private final ExecutorService readers = Executors.newCachedThreadPool();
+
+    private final String baseUrl;
+    private final int sessions;
+    private final int messages;
+    private final long thinkTimeMillis;
+    private final long timeoutNanos;
+
+    private final List<Long> postNanos = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> ttfbNanos = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> completeNanos = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
+    private final AtomicInteger timeouts = new AtomicInteger();
+    private final AtomicInteger events = new AtomicInteger();
+
+    private LoadTestDriver(Map<String, String> options) {
+        this.baseUrl = options.getOrDefault("base-url", "http://localhost:8080");
+        this.sessions = Integer.parseInt(options.getOrDefault("sessions", "50"));
+        this.messages = Integer.parseInt(options.getOrDefault("messages", "5"));
+        this.thinkTimeMillis = Long.parseLong(options.getOrDefault("think-time", "0"));
+        this.timeoutNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("timeout", "120")));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        LoadTestDriver driver = new LoadTestDriver(options);
+        String agentId = options.containsKey("agent-id") ? options.get("agent-id") : driver.createAgent();
+        driver.run(agentId);
+    }
+
+    /**
+     * SSE 事件
+     *
+     * @param receivedNanos 收到事件的时间
+     */
+    private record Event(long receivedNanos, String name, JsonNode data) {
+    }
+
+    private void run(String agentId) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(sessions);
+        CountDownLatch done = new CountDownLatch(sessions);
+        long start = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            int index = i;
+            executor.execute(() -> {
+                try {
+                    runSession(agentId, index);
+                } catch (Exception e) {
+                    errors.incrementAndGet();
+                    System.err.println("会话 " + index + " 失败: " + e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        executor.shutdownNow();
+        readers.shutdownNow();
+        report(elapsed);
+    }
+
+    private void runSession(String agentId, int index) throws Exception {
+        String sessionId = post("/api/chat-sessions", Map.of(
+                "agentId", agentId,
+                "title", "压测会话 " + index
+        )).path("data").path("chatSessionId").asText();
+
+        BlockingQueue<Event> queue = new LinkedBlockingQueue<>();
+        Stream<String> sse = openSse(sessionId, queue);
+        try {
+            // 收到 init 事件后订阅已经生效
+            Event init = queue.poll(10, TimeUnit.SECONDS);
+            if (init == null || !"init".equals(init.name())) {
+                throw new IllegalStateException("SSE 连接失败: " + sessionId);
+            }
+            for (int i = 0; i < messages; i++) {
+                if (i > 0 && thinkTimeMillis > 0) {
+                    Thread.sleep(thinkTimeMillis);
+                }
+                sendMessage(agentId, sessionId, "压测问题 " + index + "-" + i, queue);
+            }
+        } finally {
+            sse.close();
+        }
+    }
+
+    private void sendMessage(String agentId, String sessionId, String content, BlockingQueue<Event> queue) throws Exception {
+        queue.clear();
+        long start = System.nanoTime();
+        post("/api/chat-messages", Map.of(
+                "agentId", agentId,
+                "sessionId", sessionId,
+                "role", "user",
+                "content", content
+        ));
+        postNanos.add(System.nanoTime() - start);
+
+        long deadline = start + timeoutNanos;
+        boolean firstEvent = true;
+        while (true) {
+            Event event = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (event == null) {
+                timeouts.incrementAndGet();
+                return;
+            }
+            String type = event.data().path("type").asText();
+            JsonNode message = event.data().path("payload").path("message");
+            if ("user".equals(message.path("role").asText())) {
+                continue;
+            }
+            if (firstEvent) {
+                ttfbNanos.add(event.receivedNanos() - start);
+                firstEvent = false;
+            }
+            if ("AI_ERROR".equals(type)) {
+                errors.incrementAndGet();
+                return;
+            }
+            if (isFinalAnswer(event.data())) {
+                completeNanos.add(event.receivedNanos() - start);
+                completed.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    // 已经落库（带 chatMessageId）且没有工具调用的 assistant 消息是本轮的最终回答
+    private static boolean isFinalAnswer(JsonNode data) {
+        JsonNode message = data.path("payload").path("message");
+        JsonNode toolCalls = message.path("metadata").path("toolCalls");
+        return "AI_GENERATED_CONTENT".equals(data.path("type").asText())
+                && "assistant".equals(message.path("role").asText())
+                && !data.path("metadata").path("chatMessageId").isMissingNode()
+                && !data.path("metadata").path("chatMessageId").isNull()
+                && (toolCalls.isMissingNode() || toolCalls.isNull() || toolCalls.isEmpty());
+    }
+
+    // 响应头返回后在读线程上逐行解析事件, 关闭返回的 Stream 即断开连接
+    private Stream<String> openSse(String sessionId, BlockingQueue<Event> queue) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/sse/connect/" + sessionId))
+                .header("Accept", "text/event-stream")
+                .GET()
+                .build();
+        HttpResponse<Stream<String>> response = httpClient.send(request, HttpResponse.BodyHandlers.ofLines());
+        Stream<String> lines = response.body();
+        readers.execute(() -> {
+            String name = null;
+            StringBuilder data = new StringBuilder();
+            try {
+                for (String line : (Iterable<String>) lines::iterator) {
+                    if (line.isEmpty()) {
+                        if (!data.isEmpty()) {
+                            queue.add(new Event(System.nanoTime(), name, parse(data.toString())));
+                            events.incrementAndGet();
+                        }
+                        name = null;
+                        data.setLength(0);
+                    } else if (line.startsWith("event:")) {
+                        name = line.substring(6).trim();
+                    } else if (line.startsWith("data:")) {
+                        if (!data.isEmpty()) {
+                            data.append('\n');
+                        }
+                        data.append(line.substring(5).trim());
+                    }
+                }
+            } catch (UncheckedIOException e) {
+                // 连接被关闭
+            }
+        });
+        return lines;
+    }
+
+    private static JsonNode parse(String data) {
+        try {
+            return OBJECT_MAPPER.readTree(data);
+        } catch (IOException e) {
+            // init 事件的数据不是 JSON
+            return OBJECT_MAPPER.getNodeFactory().textNode(data);
+        }
+    }
+
+    private String createAgent() throws Exception {
+        JsonNode response = post("/api/agents", Map.of(
+                "name", "压测 Agent",
+                "description", "压测驱动创建的 Agent",
+                "systemPrompt", "你是一个用于压测的助手",
+                "model", "deepseek-chat",
+                "allowedTools", List.of("dataBaseTool"),
+                "allowedKbs", List.of(),
+                "chatOptions", Map.of("temperature", 0.7, "topP", 1.0, "messageLength", 10)
+        ));
+        String agentId = response.path("data").path("agentId").asText();
+        System.out.println("已创建压测 Agent: " + agentId);
+        return agentId;
+    }
+
+    private JsonNode post(String path, Object body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(OBJECT_MAPPER.writeValueAsString(body)))
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("请求失败: " + path + ", status=" + response.statusCode() + ", body=" + response.body());
+        }
+        return OBJECT_MAPPER.readTree(response.body());
+    }
+
+    private void report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%n会话数: %d, 每个会话消息数: %d, 耗时: %.1fs%n", sessions, messages, seconds);
+        System.out.printf("完成: %d, 失败: %d, 超时: %d, SSE 事件: %d%n",
+                completed.get(), errors.get(), timeouts.get(), events.get());
+        System.out.printf("吞吐: %.2f 条消息/s, %.1f 个 SSE 事件/s%n", completed.get() / seconds, events.get() / seconds);
+        System.out.printf("%-10s %10s %10s %10s%n", "", "p50(ms)", "p99(ms)", "max(ms)");
+        printLatency("发送消息", postNanos);
+        printLatency("TTFB", ttfbNanos);
+        printLatency("完成", completeNanos);
+    }
+
+    private static void printLatency(String name, List<Long> samples) {
+        List<Long> sorted;
+        synchronized (samples) {
+            sorted = new ArrayList<>(samples);
+        }
+        if (sorted.isEmpty()) {
+            System.out.printf("%-10s %10s %10s %10s%n", name, "-", "-", "-");
+            return;
+        }
+        Collections.sort(sorted);
+        System.out.printf("%-10s %10.1f %10.1f %10.1f%n", name,
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6, sorted.get(sorted.size() - 1) / 1e6);
+    }
+
+    private static long percentile(List<Long> sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+}
@@ -0,0 +1,90 @@
+package com.kama.jchatmind.loadtest;
+
+import com.kama.jchatmind.agent.StreamingResponseAssembler;
+import com.kama.jchatmind.config.LoadTestProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StubChatModel 测试类
+ */
+class StubChatModelTest {
+
+    private static LoadTestProperties.Chat properties() {
+        LoadTestProperties.Chat properties = new LoadTestProperties.Chat();
+        properties.setFirstTokenLatency(Duration.ZERO);
+        properties.setTokensPerSecond(0);
+        properties.setResponseTokens(10);
+        LoadTestProperties.ScriptedToolCall databaseQuery = new LoadTestProperties.ScriptedToolCall();
+        databaseQuery.setName("databaseQuery");
+        databaseQuery.setArguments("{\"sql\": \"SELECT 1\"}");
+        LoadTestProperties.ScriptedToolCall missing = new LoadTestProperties.ScriptedToolCall();
+        missing.setName("sendEmail");
+        properties.setToolCalls(List.of(databaseQuery, missing));
+        return properties;
+    }
+
+    private static Prompt prompt(List<Message> messages) {
+        return Prompt.builder()
+                .messages(messages)
+                .chatOptions(ToolCallingChatOptions.builder()
+                        .toolNames(Set.of("databaseQuery"))
+                        .build())
+                .build();
+    }
+
+    @Test
+    void runsScriptedToolCallsBeforeAnswering() {
+        StubChatModel model = new StubChatModel("deepseek-chat", properties());
+        List<Message> messages = new ArrayList<>(List.of(new UserMessage("你好")));
+
+        AssistantMessage first = model.call(prompt(messages)).getResult().getOutput();
+        assertEquals(1, first.getToolCalls().size());
+        assertEquals("databaseQuery", first.getToolCalls().get(0).name());
+
+        // 没有开启的工具被跳过, 脚本执行完后返回最终回答
+        messages.add(first);
+        messages.add(ToolResponseMessage.builder()
+                .responses(List.of(new ToolResponseMessage.ToolResponse(
+                        first.getToolCalls().get(0).id(), "databaseQuery", "id\n1")))
+                .build());
+        AssistantMessage second = model.call(prompt(messages)).getResult().getOutput();
+        assertTrue(second.getToolCalls().isEmpty());
+        assertEquals(10, second.getText().length());
+
+        // 新一轮对话重新执行脚本
+        messages.add(second);
+        messages.add(new UserMessage("再来一次"));
+        assertFalse(model.call(prompt(messages)).getResult().getOutput().getToolCalls().isEmpty());
+    }
+
+    @Test
+    void streamsOneChunkPerToken() {
+        LoadTestProperties.Chat properties = properties();
+        properties.setToolCalls(List.of());
+        StubChatModel model = new StubChatModel("deepseek-chat", properties);
+
+        List<ChatResponse> chunks = model.stream(prompt(List.of(new UserMessage("你好")))).collectList().block();
+        assertNotNull(chunks);
+        assertEquals(10, chunks.size());
+
+        StreamingResponseAssembler assembler = new StreamingResponseAssembler();
+        chunks.forEach(assembler::append);
+        ChatResponse response = assembler.build();
+        assertEquals(10, response.getResult().getOutput().getText().length());
+        assertEquals(10, response.getMetadata().getUsage().getCompletionTokens());
+    }
+}
@@ -0,0 +1,115 @@
+package com.kama.jchatmind.rag;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kama.jchatmind.config.EmbeddingProperties;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EmbeddingBatcher 测试类
+ * 使用本地的桩 HTTP 服务模拟 Ollama /api/embed, 测试批次合并、去重和错误传递
+ */
+public class EmbeddingBatcherTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private HttpServer server;
+    private EmbeddingBatcher batcher;
+    private SimpleMeterRegistry meterRegistry;
+
+    // 服务端收到的每次请求的 input
+    private final List<List<String>> requests = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/embed", this::handle);
+        server.start();
+
+        EmbeddingProperties properties = new EmbeddingProperties();
+        properties.setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort());
+        properties.setMaxBatchSize(8);
+        properties.setMaxWait(Duration.ofMillis(200));
+        properties.setRequestTimeout(Duration.ofSeconds(5));
+
+        meterRegistry = new SimpleMeterRegistry();
+        batcher = new EmbeddingBatcher(WebClient.builder(), properties,
+                new StaticListableBeanFactory(Map.of("meterRegistry", meterRegistry)).getBeanProvider(MeterRegistry.class));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        batcher.destroy();
+        server.stop(0);
+    }
+
+    // 向量的第一个分量是文本长度, input 中包含 "fail" 时整个请求返回 500
+    private void handle(HttpExchange exchange) throws IOException {
+        JsonNode request = OBJECT_MAPPER.readTree(exchange.getRequestBody());
+        List<String> input = new ArrayList<>();
+        request.path("input").forEach(text -> input.add(text.asText()));
+        requests.add(input);
+        int status = input.contains("fail") ? 500 : 200;
+        byte[] body = status == 200
+                ? OBJECT_MAPPER.writeValueAsBytes(Map.of("embeddings",
+                        input.stream().map(text -> new float[]{text.length(), 1f}).toList()))
+                : "error".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+
+    @Test
+    public void testBatchDeduplicatesTexts() throws Exception {
+        CompletableFuture<float[]> first = batcher.submit("ab");
+        CompletableFuture<float[]> second = batcher.submit("abc");
+        CompletableFuture<float[]> duplicate = batcher.submit("ab");
+
+        assertArrayEquals(new float[]{2f, 1f}, first.get(5, TimeUnit.SECONDS));
+        assertArrayEquals(new float[]{3f, 1f}, second.get(5, TimeUnit.SECONDS));
+        assertArrayEquals(new float[]{2f, 1f}, duplicate.get(5, TimeUnit.SECONDS));
+        // 三次提交合并成一次请求, 相同的文本只计算一次
+        assertEquals(List.of(List.of("ab", "abc")), requests);
+        assertEquals(1, meterRegistry.get("jchatmind.embedding.batch.size").summary().count());
+        assertEquals(2.0, meterRegistry.get("jchatmind.embedding.batch.size").summary().totalAmount());
+    }
+
+    @Test
+    public void testErrorFailsWholeBatch() throws Exception {
+        CompletableFuture<float[]> failed = batcher.submit("fail");
+        CompletableFuture<float[]> sameBatch = batcher.submit("ok");
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertNotNull(error.getCause());
+        assertThrows(ExecutionException.class, () -> sameBatch.get(5, TimeUnit.SECONDS));
+
+        // 失败的批次归还了许可, 后续提交仍然可以完成
+        for (int i = 0; i < 10; i++) {
+            assertThrows(ExecutionException.class, () -> batcher.submit("fail").get(5, TimeUnit.SECONDS));
+        }
+        assertArrayEquals(new float[]{4f, 1f}, batcher.submit("next").get(5, TimeUnit.SECONDS));
+    }
+}
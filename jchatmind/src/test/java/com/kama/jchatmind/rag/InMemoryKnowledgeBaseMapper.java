@@ -0,0 +1,58 @@
+package com.kama.jchatmind.rag;
+
+import com.kama.jchatmind.mapper.KnowledgeBaseMapper;
+import com.kama.jchatmind.model.entity.KnowledgeBase;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 只保存 chunk 版本号的 KnowledgeBaseMapper, 测试中代替数据库
+ * incrementChunkVersion 相当于任意节点提交了 chunk 的变更
+ */
+public class InMemoryKnowledgeBaseMapper implements KnowledgeBaseMapper {
+
+    private final Map<String, Long> chunkVersions = new ConcurrentHashMap<>();
+
+    @Override
+    public Long selectChunkVersion(String id) {
+        return chunkVersions.getOrDefault(id, 0L);
+    }
+
+    @Override
+    public int incrementChunkVersion(String id) {
+        chunkVersions.merge(id, 1L, Long::sum);
+        return 1;
+    }
+
+    @Override
+    public int insert(KnowledgeBase knowledgeBase) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public KnowledgeBase selectById(String id) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<KnowledgeBase> selectAll() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<KnowledgeBase> selectByIdBatch(List<String> ids) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int deleteById(String id) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int updateById(KnowledgeBase knowledgeBase) {
+        throw new UnsupportedOperationException();
+    }
+}
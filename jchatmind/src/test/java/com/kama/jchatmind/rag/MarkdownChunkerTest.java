@@ -0,0 +1,91 @@
+package com.kama.jchatmind.rag;
+
+import com.kama.jchatmind.config.IngestionProperties;
+import com.kama.jchatmind.service.impl.MarkdownParserServiceImpl;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MarkdownChunker 测试类
+ */
+class MarkdownChunkerTest {
+
+    private static List<MarkdownChunker.Chunk> chunk(String markdown, int targetTokens, int overlapTokens, int minTokens) {
+        IngestionProperties properties = new IngestionProperties();
+        properties.getChunking().setTargetTokens(targetTokens);
+        properties.getChunking().setOverlapTokens(overlapTokens);
+        properties.getChunking().setMinTokens(minTokens);
+        return new MarkdownChunker(properties).chunk(new MarkdownParserServiceImpl()
+                .parseMarkdown(new ByteArrayInputStream(markdown.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void splitsLargeSectionWithOverlapAndKeepsTablesIntact() {
+        String table = """
+                | 参数 | 默认值 |
+                |------|--------|
+                | target-tokens | 512 |
+                | overlap-tokens | 64 |""";
+        String markdown = "# 手册\n\n## 配置\n\n"
+                + "第一句说明配置的作用。".repeat(10) + "\n\n"
+                + table + "\n\n"
+                + "第二段继续说明。".repeat(10) + "\n";
+
+        List<MarkdownChunker.Chunk> chunks = chunk(markdown, 40, 12, 0);
+
+        assertTrue(chunks.size() > 2);
+        assertTrue(chunks.stream().anyMatch(chunk -> chunk.content().contains(table)));
+        for (MarkdownChunker.Chunk chunk : chunks) {
+            assertEquals(List.of("手册", "配置"), chunk.headingPath());
+            if (!chunk.content().contains("|")) {
+                assertTrue(chunk.tokens() <= 40, chunk.content());
+            }
+        }
+        // 同一段落拆出的相邻 chunk 有重叠
+        assertTrue(chunks.get(1).content().startsWith("第一句说明配置的作用。"));
+        assertTrue(chunks.get(1).startOffset() < chunks.get(0).endOffset());
+        assertEquals(markdown.substring(chunks.get(1).startOffset(), chunks.get(1).endOffset()),
+                chunks.get(1).content());
+    }
+
+    @Test
+    void mergesTinySectionsUnderSameParent() {
+        String markdown = """
+                # 第一章
+
+                第一章介绍安装和启动的步骤。第一章介绍安装和启动的步骤。第一章介绍安装和启动的步骤。
+
+                ## 安装
+
+                ### 下载
+
+                下载安装包。
+
+                ## 启动
+
+                运行启动脚本。
+
+                # 第二章
+
+                第二章的内容。
+                """;
+
+        List<MarkdownChunker.Chunk> chunks = chunk(markdown, 512, 64, 20);
+
+        assertEquals(3, chunks.size());
+        assertEquals(List.of("第一章"), chunks.get(0).headingPath());
+        // 只有标题的章节和过小的章节合并到一起, 标题保留在内容中
+        assertEquals(List.of("第一章"), chunks.get(1).headingPath());
+        assertEquals("## 安装\n### 下载\n下载安装包。\n## 启动\n运行启动脚本。", chunks.get(1).content());
+        assertEquals(markdown.indexOf("## 安装"), chunks.get(1).startOffset());
+        // 不跨越一级标题合并
+        assertEquals(List.of("第二章"), chunks.get(2).headingPath());
+        assertEquals("第二章的内容。", chunks.get(2).content());
+        assertEquals("第二章\n第二章的内容。", chunks.get(2).embeddingText());
+    }
+}
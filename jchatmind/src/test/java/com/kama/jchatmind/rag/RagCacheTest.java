@@ -0,0 +1,73 @@
+package com.kama.jchatmind.rag;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RagCache 测试类
+ * 测试查询文本的归一化, 以及检索结果按数据库中的知识库版本失效
+ */
+public class RagCacheTest {
+
+    private InMemoryKnowledgeBaseMapper knowledgeBaseMapper;
+    private RagCache ragCache;
+
+    // 加载器收到的文本
+    private final List<String> loaded = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        knowledgeBaseMapper = new InMemoryKnowledgeBaseMapper();
+        ragCache = new RagCache(100, Duration.ofMinutes(1), 100, Duration.ofMinutes(1), knowledgeBaseMapper,
+                new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+    }
+
+    @Test
+    public void testEmbeddingKeyKeepsCase() {
+        float[] upper = ragCache.getEmbedding("  Java \n 并发 ", this::embed);
+        float[] same = ragCache.getEmbedding("Java 并发", this::embed);
+        float[] lower = ragCache.getEmbedding("java 并发", this::embed);
+
+        // 只合并空白, 大小写不同的文本分别计算; 加载器收到的是归一化后的文本
+        assertSame(upper, same);
+        assertNotSame(upper, lower);
+        assertEquals(List.of("Java 并发", "java 并发"), loaded);
+    }
+
+    @Test
+    public void testSearchResultFollowsDatabaseVersion() {
+        assertEquals(List.of("v0"), search());
+        assertEquals(List.of("v0"), search());
+        assertEquals(1, loaded.size());
+
+        // 其他节点提交了 chunk 变更, 本节点没有收到任何通知也不再命中旧结果
+        knowledgeBaseMapper.incrementChunkVersion("kb1");
+        assertEquals(List.of("v1"), search());
+        assertEquals(2, loaded.size());
+
+        // 其他知识库的变化不影响
+        knowledgeBaseMapper.incrementChunkVersion("kb2");
+        assertEquals(List.of("v1"), search());
+        assertEquals(2, loaded.size());
+    }
+
+    private List<String> search() {
+        return ragCache.getSearchResult("kb1", "问题", 3, query -> {
+            loaded.add(query);
+            return List.of("v" + knowledgeBaseMapper.selectChunkVersion("kb1"));
+        });
+    }
+
+    private float[] embed(String text) {
+        loaded.add(text);
+        return new float[]{text.length()};
+    }
+}
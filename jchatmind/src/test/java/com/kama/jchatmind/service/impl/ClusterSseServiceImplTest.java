@@ -0,0 +1,139 @@
+package com.kama.jchatmind.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kama.jchatmind.config.SseProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ClusterSseServiceImpl 测试类
+ * 不连接数据库, 测试节点之间传递的事件编码、超过 NOTIFY 上限时写入 sse_spill 再读回的过程
+ */
+public class ClusterSseServiceImplTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private SseServiceImpl localSseService;
+    private ClusterSseServiceImpl clusterSseService;
+    private RecordingSseEmitter emitter;
+
+    // 内存中的 sse_spill 表
+    private final Map<Long, String> spill = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    public void setUp() {
+        SseProperties properties = new SseProperties();
+        properties.getCluster().setEnabled(true);
+        properties.getCluster().setInlineMaxBytes(300);
+        // 监听连接拿不到数据库连接, 不要频繁重试
+        properties.getCluster().setReconnectBackoff(Duration.ofMinutes(1));
+
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory(
+                Map.of("meterRegistry", new SimpleMeterRegistry()));
+        ObjectProvider<MeterRegistry> meterRegistryProvider = beanFactory.getBeanProvider(MeterRegistry.class);
+        ObjectProvider<Tracer> tracerProvider = beanFactory.getBeanProvider(Tracer.class);
+
+        emitter = new RecordingSseEmitter(false);
+        localSseService = new SseServiceImpl(OBJECT_MAPPER, properties, meterRegistryProvider, tracerProvider) {
+            @Override
+            SseEmitter createEmitter() {
+                return emitter;
+            }
+        };
+        clusterSseService = new ClusterSseServiceImpl(localSseService, new UnavailableDataSource(),
+                new SpillJdbcTemplate(), OBJECT_MAPPER, properties, meterRegistryProvider, tracerProvider);
+        localSseService.connect("s1", null);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        clusterSseService.destroy();
+        localSseService.destroy();
+    }
+
+    @Test
+    public void testInlineEnvelopeRoundTrip() throws Exception {
+        String data = "{\"type\":\"AI_THINKING\"}";
+        String payload = clusterSseService.encode(
+                new ClusterSseServiceImpl.Envelope("other-node", "s1", 42L, "status", data, null));
+
+        JsonNode json = OBJECT_MAPPER.readTree(payload);
+        assertEquals(data, json.path("data").asText());
+        assertTrue(json.path("spillId").isNull());
+        assertTrue(spill.isEmpty());
+
+        clusterSseService.receive(payload);
+        assertEquals(List.of(new RecordingSseEmitter.Event(42L, data)), emitter.await(1));
+    }
+
+    @Test
+    public void testSpilledEnvelopeRoundTrip() throws Exception {
+        String data = "{\"content\":\"" + "很长的内容".repeat(100) + "\"}";
+        String payload = clusterSseService.encode(
+                new ClusterSseServiceImpl.Envelope("other-node", "s1", 43L, null, data, null));
+
+        // 超过 NOTIFY 上限, 通知中只携带 spill 行 ID
+        JsonNode json = OBJECT_MAPPER.readTree(payload);
+        assertTrue(json.path("data").isNull());
+        assertEquals(data, spill.get(json.path("spillId").asLong()));
+
+        clusterSseService.receive(payload);
+        assertEquals(List.of(new RecordingSseEmitter.Event(43L, data)), emitter.await(1));
+
+        // spill 行已经被清理时丢弃该事件
+        spill.clear();
+        clusterSseService.receive(payload.replace("\"id\":43", "\"id\":44"));
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertEquals(1, emitter.events().size());
+    }
+
+    private class SpillJdbcTemplate extends JdbcTemplate {
+        private final AtomicLong sequence = new AtomicLong();
+
+        @Override
+        public <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+            long id = sequence.incrementAndGet();
+            spill.put(id, (String) args[0]);
+            return requiredType.cast(id);
+        }
+
+        @Override
+        public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+            String payload = spill.get((Long) args[0]);
+            return payload == null ? List.of() : List.of(elementType.cast(payload));
+        }
+    }
+
+    private static class UnavailableDataSource extends AbstractDataSource {
+        @Override
+        public Connection getConnection() throws SQLException {
+            throw new SQLException("no database");
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            throw new SQLException("no database");
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.kama.jchatmind.service.impl;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 记录发送内容的 SseEmitter, 不需要 Servlet 容器
+ * 可以让第一条 message 事件阻塞在写线程中, 模拟慢客户端
+ */
+class RecordingSseEmitter extends SseEmitter {
+
+    private static final Pattern ID = Pattern.compile("^id:(\\d+)$", Pattern.MULTILINE);
+    private static final Pattern DATA = Pattern.compile("^data:(.*)$", Pattern.MULTILINE);
+
+    record Event(long id, String data) {
+    }
+
+    private final List<Event> events = new ArrayList<>();
+
+    // 第一条 message 事件开始发送
+    final CountDownLatch entered = new CountDownLatch(1);
+    // 放行被阻塞的发送
+    final CountDownLatch release;
+
+    RecordingSseEmitter(boolean blockFirst) {
+        this.release = new CountDownLatch(blockFirst ? 1 : 0);
+    }
+
+    @Override
+    public void send(SseEventBuilder builder) throws IOException {
+        StringBuilder text = new StringBuilder();
+        builder.build().forEach(part -> text.append(part.getData()));
+        Matcher id = ID.matcher(text);
+        if (!id.find()) {
+            // init 事件没有 ID
+            return;
+        }
+        entered.countDown();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        Matcher data = DATA.matcher(text);
+        synchronized (events) {
+            events.add(new Event(Long.parseLong(id.group(1)), data.find() ? data.group(1) : null));
+        }
+    }
+
+    List<Event> events() {
+        synchronized (events) {
+            return List.copyOf(events);
+        }
+    }
+
+    // 等待收到至少 count 条事件
+    List<Event> await(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (events().size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return events();
+    }
+}
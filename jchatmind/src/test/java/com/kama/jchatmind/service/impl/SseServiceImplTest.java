@@ -0,0 +1,192 @@
+package com.kama.jchatmind.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kama.jchatmind.config.SseProperties;
+import com.kama.jchatmind.message.SseMessage;
+import com.kama.jchatmind.model.vo.DocumentProgressVO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SseServiceImpl 测试类
+ * 测试事件 ID、按 Last-Event-ID 补发, 以及订阅者队列写满时的各个溢出策略
+ */
+public class SseServiceImplTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<SseServiceImpl> services = new ArrayList<>();
+
+    // connect 时依次使用的 emitter
+    private final List<RecordingSseEmitter> emitters = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        emitters.forEach(emitter -> emitter.release.countDown());
+        services.forEach(SseServiceImpl::destroy);
+    }
+
+    private SseServiceImpl service(SseProperties properties) {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory(Map.of("meterRegistry", meterRegistry));
+        SseServiceImpl service = new SseServiceImpl(OBJECT_MAPPER, properties,
+                beanFactory.getBeanProvider(MeterRegistry.class),
+                beanFactory.getBeanProvider(Tracer.class)) {
+            @Override
+            SseEmitter createEmitter() {
+                return emitters.remove(0);
+            }
+        };
+        services.add(service);
+        return service;
+    }
+
+    private RecordingSseEmitter connect(SseServiceImpl service, String lastEventId, boolean blockFirst) {
+        RecordingSseEmitter emitter = new RecordingSseEmitter(blockFirst);
+        emitters.add(emitter);
+        service.connect("s1", lastEventId);
+        return emitter;
+    }
+
+    private static SseMessage message(SseMessage.Type type, String text) {
+        return SseMessage.builder()
+                .type(type)
+                .payload(SseMessage.Payload.builder().statusText(text).build())
+                .build();
+    }
+
+    private static List<String> texts(List<RecordingSseEmitter.Event> events) throws Exception {
+        List<String> texts = new ArrayList<>();
+        for (RecordingSseEmitter.Event event : events) {
+            texts.add(OBJECT_MAPPER.readTree(event.data()).path("payload").path("statusText").asText());
+        }
+        return texts;
+    }
+
+    private double overflow(String action) {
+        return meterRegistry.get("jchatmind.sse.overflow").tag("action", action).counter().count();
+    }
+
+    @Test
+    public void testReplayAfterLastEventId() throws Exception {
+        SseServiceImpl service = service(new SseProperties());
+        long start = System.currentTimeMillis() * 1000;
+        RecordingSseEmitter first = connect(service, null, false);
+        for (int i = 1; i <= 5; i++) {
+            service.send("s1", message(SseMessage.Type.AI_GENERATED_CONTENT, "e" + i));
+        }
+        List<RecordingSseEmitter.Event> events = first.await(5);
+        assertEquals(List.of("e1", "e2", "e3", "e4", "e5"), texts(events));
+        // 事件 ID 以时钟为基准, 严格递增
+        assertTrue(events.get(0).id() >= start);
+        for (int i = 1; i < events.size(); i++) {
+            assertTrue(events.get(i).id() > events.get(i - 1).id());
+        }
+
+        // 从 e2 之后重连, 补发的事件和新事件之间不丢不重
+        RecordingSseEmitter second = connect(service, String.valueOf(events.get(1).id()), false);
+        service.send("s1", message(SseMessage.Type.AI_GENERATED_CONTENT, "e6"));
+        assertEquals(List.of("e3", "e4", "e5", "e6"), texts(second.await(4)));
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertEquals(4, second.events().size());
+
+        // 服务重启后新事件的 ID 仍然大于重启前的 ID
+        SseServiceImpl restarted = service(new SseProperties());
+        RecordingSseEmitter third = connect(restarted, String.valueOf(events.get(4).id()), false);
+        restarted.send("s1", message(SseMessage.Type.AI_GENERATED_CONTENT, "e7"));
+        assertTrue(third.await(1).get(0).id() > events.get(4).id());
+    }
+
+    @Test
+    public void testDropOldest() throws Exception {
+        SseProperties properties = new SseProperties();
+        properties.setClientQueueCapacity(2);
+        properties.setOverflowPolicy(SseProperties.OverflowPolicy.DROP_OLDEST);
+        SseServiceImpl service = service(properties);
+        RecordingSseEmitter emitter = connect(service, null, true);
+
+        service.send("s1", message(SseMessage.Type.AI_GENERATED_CONTENT, "e1"));
+        assertTrue(emitter.entered.await(5, TimeUnit.SECONDS));
+        for (int i = 2; i <= 4; i++) {
+            service.send("s1", message(SseMessage.Type.AI_GENERATED_CONTENT, "e" + i));
+        }
+        emitter.release.countDown();
+
+        assertEquals(List.of("e1", "e3", "e4"), texts(emitter.await(3)));
+        assertEquals(1, overflow("drop"));
+    }
+
+    @Test
+    public void testCoalesceReplacesSameKey() throws Exception {
+        SseProperties properties = new SseProperties();
+        properties.setClientQueueCapacity(2);
+        properties.setOverflowPolicy(SseProperties.OverflowPolicy.COALESCE);
+        SseServiceImpl service = service(properties);
+        RecordingSseEmitter emitter = connect(service, null, true);
+
+        service.send("s1", message(SseMessage.Type.AI_THINKING, "s1"));
+        assertTrue(emitter.entered.await(5, TimeUnit.SECONDS));
+        service.send("s1", message(SseMessage.Type.AI_GENERATED_CONTENT, "c1"));
+        service.send("s1", message(SseMessage.Type.AI_PLANNING, "s2"));
+        // 队列已满, 新的状态事件替换队列中旧的状态事件
+        service.send("s1", message(SseMessage.Type.AI_EXECUTING, "s3"));
+        emitter.release.countDown();
+
+        assertEquals(List.of("s1", "c1", "s3"), texts(emitter.await(3)));
+        assertEquals(1, overflow("coalesce"));
+        assertEquals(0, overflow("disconnect"));
+    }
+
+    @Test
+    public void testDisconnectThenReplay() throws Exception {
+        SseProperties properties = new SseProperties();
+        properties.setClientQueueCapacity(2);
+        properties.setOverflowPolicy(SseProperties.OverflowPolicy.COALESCE);
+        SseServiceImpl service = service(properties);
+        RecordingSseEmitter emitter = connect(service, null, true);
+
+        service.send("s1", message(SseMessage.Type.AI_GENERATED_CONTENT, "e1"));
+        assertTrue(emitter.entered.await(5, TimeUnit.SECONDS));
+        // 内容片段不能合并, 队列写满后断开
+        for (int i = 2; i <= 4; i++) {
+            service.send("s1", message(SseMessage.Type.AI_GENERATED_CONTENT, "e" + i));
+        }
+        assertEquals(1, overflow("disconnect"));
+        assertEquals(0.0, meterRegistry.get("jchatmind.sse.subscribers").gauge().value());
+        emitter.release.countDown();
+        long lastReceived = emitter.await(1).get(0).id();
+
+        // 客户端带着最后收到的 ID 重连, 从补发缓冲区拿到断开期间的事件
+        RecordingSseEmitter reconnected = connect(service, String.valueOf(lastReceived), false);
+        assertEquals(List.of("e2", "e3", "e4"), texts(reconnected.await(3)));
+    }
+
+    @Test
+    public void testCoalesceKey() {
+        assertEquals("status", SseServiceImpl.coalesceKey(message(SseMessage.Type.AI_THINKING, "")));
+        assertEquals("status", SseServiceImpl.coalesceKey(message(SseMessage.Type.AI_EXECUTING, "")));
+        assertNull(SseServiceImpl.coalesceKey(message(SseMessage.Type.AI_GENERATED_CONTENT, "")));
+        assertNull(SseServiceImpl.coalesceKey(message(SseMessage.Type.AI_DONE, "")));
+        assertNull(SseServiceImpl.coalesceKey(message(SseMessage.Type.DOCUMENT_PROGRESS, "")));
+
+        SseMessage progress = SseMessage.builder()
+                .type(SseMessage.Type.DOCUMENT_PROGRESS)
+                .payload(SseMessage.Payload.builder()
+                        .document(DocumentProgressVO.builder().documentId("d1").build())
+                        .build())
+                .build();
+        assertEquals("document:d1", SseServiceImpl.coalesceKey(progress));
+    }
+}
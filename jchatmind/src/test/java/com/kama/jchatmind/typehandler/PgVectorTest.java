@@ -0,0 +1,44 @@
+package com.kama.jchatmind.typehandler;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * PgVector 测试类
+ * 测试 vector 类型文本格式和二进制格式的编解码
+ */
+public class PgVectorTest {
+
+    private static final float[] VECTOR = {0.123f, -1.5f, 1.0E-5f, 0f, Float.MAX_VALUE};
+
+    @Test
+    public void testBinaryRoundTrip() {
+        PgVector pgVector = new PgVector(VECTOR);
+        byte[] bytes = new byte[pgVector.lengthInBytes() + 2];
+        pgVector.toBytes(bytes, 2);
+
+        assertEquals(4 + VECTOR.length * 4, pgVector.lengthInBytes());
+        assertArrayEquals(VECTOR, PgVector.readBinary(bytes, 2));
+    }
+
+    @Test
+    public void testTextRoundTrip() {
+        String text = PgVector.toText(VECTOR);
+
+        assertArrayEquals(VECTOR, PgVector.decode(text.getBytes(StandardCharsets.US_ASCII)));
+        assertArrayEquals(new float[]{1f, 2.5f, -3f}, PgVector.parseText("[1, 2.5,-3]".getBytes(StandardCharsets.US_ASCII)));
+        assertArrayEquals(new float[0], PgVector.parseText("[]".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void testDecodeBinary() {
+        byte[] bytes = new byte[new PgVector(VECTOR).lengthInBytes()];
+        PgVector.writeBinary(VECTOR, bytes, 0);
+
+        assertArrayEquals(VECTOR, PgVector.decode(bytes));
+    }
+}
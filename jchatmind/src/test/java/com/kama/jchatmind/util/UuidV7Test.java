@@ -0,0 +1,37 @@
+package com.kama.jchatmind.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * UuidV7 测试类
+ * 测试版本位、时间戳以及连续生成时的单调递增
+ */
+public class UuidV7Test {
+
+    @Test
+    public void testVersionAndTimestamp() {
+        long before = System.currentTimeMillis();
+        UUID uuid = UuidV7.randomUUID();
+
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        long timestamp = uuid.getMostSignificantBits() >>> 16;
+        assertTrue(timestamp >= before && timestamp <= System.currentTimeMillis() + 1);
+    }
+
+    @Test
+    public void testMonotonic() {
+        UUID previous = UuidV7.randomUUID();
+        for (int i = 0; i < 100_000; i++) {
+            UUID next = UuidV7.randomUUID();
+            // 按字符串排序即按生成顺序排序
+            assertTrue(next.toString().compareTo(previous.toString()) > 0);
+            previous = next;
+        }
+    }
+}
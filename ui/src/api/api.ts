@@ -1,5 +1,5 @@
 import { get, post, patch, del, BASE_URL } from "./http.ts";
-import type { ChatMessageVO, MessageType } from "../types";
+import type { ChatMessageVO, DocumentStatus, MessageType } from "../types";
 
 // 类型定义
 export interface ChatOptions {
@@ -174,6 +174,15 @@ export interface MetaData {
 
 export interface GetChatMessagesResponse {
   chatMessages: ChatMessageVO[];
+  hasMore: boolean;
+  prevCursor?: string;
+  nextCursor?: string;
+}
+
+export interface GetChatMessagesParams {
+  before?: string;
+  after?: string;
+  limit?: number;
 }
 
 export interface CreateChatMessageRequest {
@@ -194,12 +203,16 @@ export interface UpdateChatMessageRequest {
 }
 
 /**
- * 根据 sessionId 获取聊天消息
+ * 根据 sessionId 分页获取聊天消息，不传游标时返回最新的一页
  */
 export async function getChatMessagesBySessionId(
   sessionId: string,
+  params?: GetChatMessagesParams,
 ): Promise<GetChatMessagesResponse> {
-  return get<GetChatMessagesResponse>(`/chat-messages/session/${sessionId}`);
+  return get<GetChatMessagesResponse>(
+    `/chat-messages/session/${sessionId}`,
+    { ...params },
+  );
 }
 
 /**
@@ -299,6 +312,7 @@ export interface DocumentVO {
   filename: string;
   filetype: string;
   size: number;
+  status: DocumentStatus;
 }
 
 export interface GetDocumentsResponse {
@@ -346,6 +360,13 @@ export async function uploadDocument(
   return apiResponse.data;
 }
 
+/**
+ * 重新索引入库失败的文档
+ */
+export async function reindexDocument(documentId: string): Promise<void> {
+  return post<void>(`/documents/${documentId}/reindex`);
+}
+
 /**
  * 删除文档
  */
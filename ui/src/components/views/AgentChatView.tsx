@@ -28,14 +28,49 @@ const AgentChatView: React.FC = () => {
     setMessages((prevMessages) => [...prevMessages, message]);
   };
 
+  // 流式输出的片段：以 streamId 作为临时 id，将片段追加到同一条消息上
+  const appendStreamDelta = (streamId: string, delta: ChatMessageVO) => {
+    setMessages((prevMessages) => {
+      const index = prevMessages.findIndex((m) => m.id === streamId);
+      if (index === -1) {
+        return [...prevMessages, { ...delta, id: streamId }];
+      }
+      const next = [...prevMessages];
+      next[index] = {
+        ...next[index],
+        content: next[index].content + delta.content,
+      };
+      return next;
+    });
+  };
+
+  // 流式输出结束：用持久化后的完整消息替换临时消息
+  const finishStreamMessage = (streamId: string, message: ChatMessageVO) => {
+    setMessages((prevMessages) => {
+      const index = prevMessages.findIndex((m) => m.id === streamId);
+      if (index === -1) {
+        return [...prevMessages, message];
+      }
+      const next = [...prevMessages];
+      next[index] = message;
+      return next;
+    });
+  };
+
   const [agentId, setAgentId] = useState<string>("");
 
+  // 分页：更早消息的游标，以及是否还有更早的消息
+  const [prevCursor, setPrevCursor] = useState<string | undefined>(undefined);
+  const [hasMore, setHasMore] = useState(false);
+
   const getChatMessages = useCallback(async () => {
     if (!chatSessionId) {
       return;
     }
     const resp = await getChatMessagesBySessionId(chatSessionId);
     setMessages(resp.chatMessages);
+    setPrevCursor(resp.prevCursor);
+    setHasMore(resp.hasMore);
 
     const fetchData = async () => {
       const resp = await getChatSession(chatSessionId);
@@ -52,6 +87,19 @@ const AgentChatView: React.FC = () => {
     getChatMessages().then();
   }, [chatSessionId, getChatMessages]);
 
+  // 加载更早的一页消息，插入到列表开头
+  const loadEarlierMessages = useCallback(async () => {
+    if (!chatSessionId || !prevCursor) {
+      return;
+    }
+    const resp = await getChatMessagesBySessionId(chatSessionId, {
+      before: prevCursor,
+    });
+    setMessages((prevMessages) => [...resp.chatMessages, ...prevMessages]);
+    setPrevCursor(resp.prevCursor);
+    setHasMore(resp.hasMore);
+  }, [chatSessionId, prevCursor]);
+
   const handleSendMessage = async (value: string | { text: string }) => {
     // 处理 Sender 组件可能传递的不同格式
     const message = typeof value === "string" ? value : value.text;
@@ -136,8 +184,15 @@ const AgentChatView: React.FC = () => {
       // 解析 JSON
       const message = JSON.parse(event.data) as SseMessage;
       if (message.type === "AI_GENERATED_CONTENT") {
-        // 将 AI 生成的内容存到 messages 中
-        addMessage(message.payload.message);
+        const streamId = message.metadata?.streamId;
+        if (streamId && message.payload.done === false) {
+          appendStreamDelta(streamId, message.payload.message);
+        } else if (streamId) {
+          finishStreamMessage(streamId, message.payload.message);
+        } else {
+          // 将 AI 生成的内容存到 messages 中
+          addMessage(message.payload.message);
+        }
       } else if (message.type === "AI_PLANNING") {
         setDisplayAgentStatus(true);
         setAgentStatusText(message.payload.statusText);
@@ -154,6 +209,11 @@ const AgentChatView: React.FC = () => {
         setDisplayAgentStatus(false);
         setAgentStatusText("");
         setAgentStatusType(undefined);
+      } else if (message.type === "AI_ERROR") {
+        setDisplayAgentStatus(false);
+        setAgentStatusText("");
+        setAgentStatusType(undefined);
+        antdMessage.error(message.payload.statusText);
       } else {
         throw new Error(`Unknown message type: ${message.type}`);
       }
@@ -185,6 +245,8 @@ const AgentChatView: React.FC = () => {
     <div className="flex flex-col h-full">
       <AgentChatHistory
         messages={messages}
+        hasMore={hasMore}
+        onLoadMore={loadEarlierMessages}
         displayAgentStatus={displayAgentStatus}
         agentStatusText={agentStatusText}
         agentStatusType={agentStatusType}
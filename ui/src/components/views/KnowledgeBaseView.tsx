@@ -1,4 +1,4 @@
-import React, { useMemo, useState } from "react";
+import React, { useEffect, useMemo, useState } from "react";
 import { useParams } from "react-router-dom";
 import {
   Card,
@@ -10,17 +10,36 @@ import {
   Space,
   message,
   Empty,
+  Tag,
+  Tooltip,
 } from "antd";
 import {
   BookOutlined,
   UploadOutlined,
   DeleteOutlined,
   FileOutlined,
+  ReloadOutlined,
 } from "@ant-design/icons";
 import type { UploadProps } from "antd";
 import { useKnowledgeBases } from "../../hooks/useKnowledgeBases.ts";
 import { useDocuments } from "../../hooks/useDocuments.ts";
-import { uploadDocument, type DocumentVO } from "../../api/api.ts";
+import {
+  reindexDocument,
+  uploadDocument,
+  type DocumentVO,
+} from "../../api/api.ts";
+import type {
+  DocumentProgressVO,
+  DocumentStatus,
+  SseMessage,
+} from "../../types";
+
+const STATUS_TAGS: Record<DocumentStatus, { color: string; text: string }> = {
+  PENDING: { color: "default", text: "等待索引" },
+  INDEXING: { color: "processing", text: "索引中" },
+  READY: { color: "success", text: "已就绪" },
+  FAILED: { color: "error", text: "索引失败" },
+};
 
 const { Title, Text, Paragraph } = Typography;
 
@@ -31,6 +50,49 @@ const KnowledgeBaseView: React.FC = () => {
     useDocuments(knowledgeBaseId);
 
   const [uploading, setUploading] = useState(false);
+  // 文档入库进度, 由 SSE 推送
+  const [progress, setProgress] = useState<Record<string, DocumentProgressVO>>(
+    {},
+  );
+
+  useEffect(() => {
+    if (!knowledgeBaseId) {
+      return;
+    }
+    setProgress({});
+    const es = new EventSource(
+      `http://localhost:8080/sse/knowledge-bases/${knowledgeBaseId}`,
+    );
+    es.addEventListener("message", (event) => {
+      const sseMessage = JSON.parse(event.data) as SseMessage;
+      const documentProgress = sseMessage.payload.document;
+      if (sseMessage.type !== "DOCUMENT_PROGRESS" || !documentProgress) {
+        return;
+      }
+      setProgress((prev) => ({
+        ...prev,
+        [documentProgress.documentId]: documentProgress,
+      }));
+      if (sseMessage.payload.done) {
+        refreshDocuments();
+      }
+    });
+    es.onerror = (error) => {
+      console.error("SSE error:", error);
+    };
+    return () => {
+      es.close();
+    };
+  }, [knowledgeBaseId, refreshDocuments]);
+
+  const handleReindex = async (documentId: string) => {
+    try {
+      await reindexDocument(documentId);
+      message.success("已重新提交索引");
+    } catch (error) {
+      message.error(error instanceof Error ? error.message : "重试失败");
+    }
+  };
 
   // 查找当前知识库的详细信息
   const currentKnowledgeBase = useMemo(() => {
@@ -54,7 +116,7 @@ const KnowledgeBaseView: React.FC = () => {
 
     try {
       await uploadDocument(knowledgeBaseId, file as File);
-      message.success("文档上传成功");
+      message.success("文档上传成功，正在后台索引");
       await refreshDocuments();
       onSuccess?.(file);
     } catch (error) {
@@ -100,22 +162,53 @@ const KnowledgeBaseView: React.FC = () => {
       width: 120,
       render: (size: number) => formatFileSize(size),
     },
+    {
+      title: "状态",
+      key: "status",
+      width: 160,
+      render: (_: unknown, record: DocumentVO) => {
+        const current = progress[record.id];
+        const status = current?.status ?? record.status ?? "READY";
+        const tag = STATUS_TAGS[status];
+        const text =
+          status === "INDEXING" && current && current.totalChunks > 0
+            ? `${tag.text} ${current.processedChunks}/${current.totalChunks}`
+            : tag.text;
+        return (
+          <Tooltip title={status === "FAILED" ? current?.error : undefined}>
+            <Tag color={tag.color}>{text}</Tag>
+          </Tooltip>
+        );
+      },
+    },
     {
       title: "操作",
       key: "action",
-      width: 100,
+      width: 180,
       render: (_: unknown, record: DocumentVO) => (
-        <Popconfirm
-          title="确定要删除这个文档吗？"
-          description="删除后将无法恢复"
-          onConfirm={() => deleteDocument(record.id)}
-          okText="确定"
-          cancelText="取消"
-        >
-          <Button type="text" danger icon={<DeleteOutlined />} size="small">
-            删除
-          </Button>
-        </Popconfirm>
+        <Space>
+          {(progress[record.id]?.status ?? record.status) === "FAILED" && (
+            <Button
+              type="text"
+              icon={<ReloadOutlined />}
+              size="small"
+              onClick={() => handleReindex(record.id)}
+            >
+              重试
+            </Button>
+          )}
+          <Popconfirm
+            title="确定要删除这个文档吗？"
+            description="删除后将无法恢复"
+            onConfirm={() => deleteDocument(record.id)}
+            okText="确定"
+            cancelText="取消"
+          >
+            <Button type="text" danger icon={<DeleteOutlined />} size="small">
+              删除
+            </Button>
+          </Popconfirm>
+        </Space>
       ),
     },
   ];
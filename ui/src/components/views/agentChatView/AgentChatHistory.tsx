@@ -12,6 +12,9 @@ import type { ChatMessageVO, SseMessageType, ToolCall, ToolResponse } from "../.
 
 interface AgentChatHistoryProps {
   messages: ChatMessageVO[];
+  // 是否还有更早的消息
+  hasMore?: boolean;
+  onLoadMore?: () => void;
   displayAgentStatus?: boolean;
   agentStatusText?: string;
   agentStatusType?: SseMessageType;
@@ -103,6 +106,8 @@ const ToolResponseDisplay: React.FC<{ toolResponse: ToolResponse }> = ({
 
 const AgentChatHistory: React.FC<AgentChatHistoryProps> = ({
   messages,
+  hasMore = false,
+  onLoadMore,
   displayAgentStatus = false,
   agentStatusText = "",
   agentStatusType,
@@ -200,6 +205,16 @@ const AgentChatHistory: React.FC<AgentChatHistoryProps> = ({
       ref={scrollContainerRef}
       className="flex-1 px-16 pt-4 overflow-y-scroll"
     >
+      {hasMore && onLoadMore && (
+        <div className="mb-4 text-center">
+          <button
+            className="text-xs text-gray-400 hover:text-blue-500"
+            onClick={onLoadMore}
+          >
+            加载更早的消息
+          </button>
+        </div>
+      )}
       {messages.map((message) => {
         return (
           <div className="mb-4" key={message.id}>
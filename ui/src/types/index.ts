@@ -37,16 +37,32 @@ export type SseMessageType =
   | "AI_PLANNING"
   | "AI_THINKING"
   | "AI_EXECUTING"
-  | "AI_DONE";
+  | "AI_DONE"
+  | "AI_ERROR"
+  | "DOCUMENT_PROGRESS";
+
+export type DocumentStatus = "PENDING" | "INDEXING" | "READY" | "FAILED";
+
+export interface DocumentProgressVO {
+  documentId: string;
+  kbId: string;
+  status: DocumentStatus;
+  stage: string;
+  processedChunks: number;
+  totalChunks: number;
+  error?: string;
+}
 
 export interface SseMessagePayload {
   message: ChatMessageVO;
   statusText: string;
   done: boolean;
+  document?: DocumentProgressVO;
 }
 
 export interface SseMessageMetadata {
   chatMessageId: string;
+  streamId?: string;
 }
 
 export interface SseMessage {